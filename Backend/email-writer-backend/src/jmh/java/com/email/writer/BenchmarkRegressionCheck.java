@@ -0,0 +1,76 @@
+package com.email.writer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON results and fails when a benchmark got slower.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec@compare -Djmh.baseline=path/to/old-result.json
+ *
+ * Benchmarks are matched by name and parameters. A benchmark counts as a
+ * regression when it is more than jmh.threshold percent (default 10) worse
+ * than the baseline AND the two scores' error intervals do not overlap, so
+ * noisy one-fork runs don't fail on jitter. Throughput is better when
+ * higher, every other mode when lower. Exit code 1 on any regression.
+ */
+public final class BenchmarkRegressionCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[0].isBlank()) {
+            System.err.println("Usage: BenchmarkRegressionCheck <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 && !args[2].isBlank() ? Double.parseDouble(args[2]) : 10;
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(mapper.readTree(new File(args[0])));
+        Map<String, JsonNode> current  = index(mapper.readTree(new File(args[1])));
+
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) continue;
+            JsonNode now = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+            double oldScore = score(before), newScore = score(now);
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) * 100.0 / oldScore;
+            double worse = higherIsBetter ? -change : change;
+            boolean separated = higherIsBetter
+                    ? newScore + error(now) < oldScore - error(before)
+                    : newScore - error(now) > oldScore + error(before);
+            boolean regression = worse > threshold && separated;
+            if (regression) regressions++;
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), oldScore, newScore, change,
+                    regression ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regression(s) beyond %.0f%%%n", regressions, threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.email.writer.", ""));
+            result.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
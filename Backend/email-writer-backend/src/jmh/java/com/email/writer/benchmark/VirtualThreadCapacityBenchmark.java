@@ -0,0 +1,210 @@
+package com.email.writer.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent-request capacity of a Gemini-bound endpoint: platform vs virtual
+ * Tomcat handler threads.
+ *
+ * Reproduces the shape of /api/v1/email/generate without the database or the
+ * real API: an embedded Tomcat servlet makes a blocking RestTemplate call
+ * (Apache HttpClient 5 pool, as in production) to a local stub that answers
+ * after a fixed "Gemini" latency. N requests are fired at once and we report
+ * wall time, throughput, latency percentiles and the peak number of requests
+ * the server was handling simultaneously.
+ *
+ * Not a JMH benchmark but a plain main(), built with the others by the
+ * benchmark profile. Run it explicitly; the execution fixes the heap at
+ * 256 MB so both modes are compared at the same memory footprint:
+ *
+ *   mvn -Pbenchmark test-compile exec:exec@capacity -Dcapacity.args="platform 1000 2000"
+ *
+ * Arguments: mode (platform|virtual), concurrent requests, upstream latency ms,
+ * Tomcat max threads for platform mode (default 200, the Spring Boot default).
+ * virtual mode requires a Java 21+ runtime.
+ */
+public final class VirtualThreadCapacityBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode        = args.length > 0 ? args[0] : "platform";
+        int    concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long   latencyMs   = args.length > 2 ? Long.parseLong(args[2])   : 2000;
+        int    maxThreads  = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        if (mode.equals("virtual") && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("virtual mode needs Java 21+, running " + Runtime.version());
+        }
+
+        // The JDK stub server otherwise closes idle keep-alive connections beyond 200,
+        // which the pooled client would then see as NoHttpResponseException.
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(concurrency * 2));
+        HttpServer stub = startStub(latencyMs);
+        String stubUrl = "http://127.0.0.1:" + stub.getAddress().getPort() + "/generate";
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak     = new AtomicInteger();
+        Tomcat tomcat = startTomcat(mode, maxThreads, concurrency, stubUrl, inFlight, peak);
+        int port = tomcat.getConnector().getLocalPort();
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/v1/email/generate"))
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+
+        // Warm-up round: opens the client, Tomcat and pool connections so the
+        // measured round compares thread models, not TCP connection setup.
+        fire(client, request, concurrency);
+        peak.set(0);
+
+        long[] latencies = new long[concurrency];
+        long start = System.nanoTime();
+        int errors = fire(client, request, latencies);
+        long wallNs = System.nanoTime() - start;
+
+        Runtime rt = Runtime.getRuntime();
+        Arrays.sort(latencies);
+        System.out.printf("mode=%s java=%d concurrency=%d upstreamLatencyMs=%d maxHeapMb=%d%n",
+                mode, Runtime.version().feature(), concurrency, latencyMs, rt.maxMemory() / (1024 * 1024));
+        System.out.printf("wall=%.2fs throughput=%.1f req/s peakInFlight=%d errors=%d%n",
+                wallNs / 1e9, concurrency / (wallNs / 1e9), peak.get(), errors);
+        System.out.printf("latency p50=%dms p90=%dms p99=%dms max=%dms heapUsed=%dMB liveThreads=%d%n",
+                pct(latencies, 0.50), pct(latencies, 0.90), pct(latencies, 0.99), latencies[concurrency - 1] / 1_000_000,
+                (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024), Thread.activeCount());
+
+        tomcat.stop();
+        tomcat.destroy();
+        stub.stop(0);
+        System.exit(0);
+    }
+
+    private static int fire(HttpClient client, HttpRequest request, int concurrency) {
+        return fire(client, request, new long[concurrency]);
+    }
+
+    /** Send latencies.length requests at once; fills latencies (ns) and returns the error count. */
+    private static int fire(HttpClient client, HttpRequest request, long[] latencies) {
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(latencies.length);
+        for (int i = 0; i < latencies.length; i++) {
+            final int idx = i;
+            final long sent = System.nanoTime();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((resp, ex) -> {
+                        latencies[idx] = System.nanoTime() - sent;
+                        if (ex != null || resp.statusCode() != 200) errors.incrementAndGet();
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return errors.get();
+    }
+
+    private static HttpServer startStub(long latencyMs) throws IOException {
+        byte[] body = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"SUMMARY: ok\"}]}}]}"
+                .getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/generate", exchange -> {
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(latencyMs);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static Tomcat startTomcat(String mode, int maxThreads, int concurrency, String stubUrl,
+                                      AtomicInteger inFlight, AtomicInteger peak) throws Exception {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom()
+                        .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                .setMaxConnTotal(concurrency)
+                                .setMaxConnPerRoute(concurrency)
+                                .build())
+                        .build()));
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("vt-bench").toString());
+        Connector connector = new Connector();
+        connector.setPort(0);
+        AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+        protocol.setMaxKeepAliveRequests(-1);   // don't recycle client connections mid-run
+        protocol.setKeepAliveTimeout(60_000);
+        protocol.setMaxConnections(concurrency * 2);
+        protocol.setAcceptCount(concurrency);
+        if (mode.equals("virtual")) {
+            // Same executor Spring Boot installs when spring.threads.virtual.enabled=true
+            protocol.setExecutor(new VirtualThreadExecutor("tomcat-handler-"));
+        } else {
+            protocol.setMaxThreads(maxThreads);
+        }
+        tomcat.setConnector(connector);
+
+        Context ctx = tomcat.addContext("", null);
+        Tomcat.addServlet(ctx, "generate", new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                int now = inFlight.incrementAndGet();
+                peak.accumulateAndGet(now, Math::max);
+                try {
+                    String raw = restTemplate.postForObject(stubUrl, "{}", String.class);
+                    resp.setContentType("application/json");
+                    resp.getWriter().write(raw == null ? "{}" : raw);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        ctx.addServletMappingDecoded("/api/v1/email/generate", "generate");
+        tomcat.start();
+        return tomcat;
+    }
+
+    private static long pct(long[] sorted, double p) {
+        int idx = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[idx] / 1_000_000;
+    }
+}
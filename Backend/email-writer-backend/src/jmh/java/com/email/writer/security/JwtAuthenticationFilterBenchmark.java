@@ -0,0 +1,85 @@
+package com.email.writer.security;
+
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of JwtAuthenticationFilter, with the user lookup stubbed
+ * out (in production that is a database query on top of these numbers).
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="JwtAuthenticationFilterBenchmark"
+ *
+ *   anonymous    — no Authorization header, the floor
+ *   validToken   — parse, load user, validate, build the Authentication
+ *   invalidToken — signature check fails, exception logged and swallowed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private String validHeader;
+    private String invalidHeader;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = JwtUtilBenchmark.jwtUtil();
+        UserDetails user = new User("priya.sharma", "unused", List.of());
+        filter = new JwtAuthenticationFilter(jwtUtil, username -> user);
+        String token = jwtUtil.generateToken(user);
+        validHeader = "Bearer " + token;
+        // Flip one signature character
+        char last = token.charAt(token.length() - 2);
+        invalidHeader = "Bearer " + token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A')
+                + token.charAt(token.length() - 1);
+    }
+
+    @Benchmark
+    public Object anonymous() throws ServletException, IOException {
+        return run(null);
+    }
+
+    @Benchmark
+    public Object validToken() throws ServletException, IOException {
+        return run(validHeader);
+    }
+
+    @Benchmark
+    public Object invalidToken() throws ServletException, IOException {
+        return run(invalidHeader);
+    }
+
+    private Object run(String authorization) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/replies/history");
+        if (authorization != null) request.addHeader("Authorization", authorization);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.email.writer.service;
+
+import com.email.writer.entity.SavedReply;
+import com.email.writer.repository.SavedReplyRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SavedReplyService.exportUserRepliesToCsv with the repository stubbed:
+ * CSV escaping, truncation and date formatting only.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="CsvExportBenchmark"
+ *
+ * rows ~ a new user vs. a heavy one. quoted=true gives every text field a
+ * comma, quote or newline, so each one takes the quote-and-replace path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvExportBenchmark {
+
+    @Param({"20", "2000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean quoted;
+
+    private SavedReplyService service;
+
+    @Setup
+    public void setUp() {
+        List<SavedReply> replies = new ArrayList<>(rows);
+        String punct = quoted ? ", \"as discussed\"\n" : " as discussed ";
+        for (int i = 0; i < rows; i++) {
+            SavedReply reply = new SavedReply();
+            reply.setId((long) i);
+            reply.setEmailSubject("Q3 budget review" + punct + i);
+            reply.setTone("professional");
+            reply.setLanguage("en");
+            reply.setCreatedAt(LocalDateTime.of(2024, 5, 1, 9, 30).plusMinutes(i));
+            reply.setIsFavorite(i % 7 == 0);
+            reply.setSummary("Priya asks to move the review" + punct + "to Friday afternoon.");
+            reply.setReplyText(("Hi Priya, Friday works for me" + punct + "I'll move the invite. ").repeat(6));
+            replies.add(reply);
+        }
+        SavedReplyRepository repo = Mockito.mock(SavedReplyRepository.class);
+        Mockito.when(repo.findByUserIdOrderByCreatedAtDesc(1L)).thenReturn(replies);
+        service = new SavedReplyService(repo, new ReplyChangeTracker());
+    }
+
+    @Benchmark
+    public String export() {
+        return service.exportUserRepliesToCsv(1L);
+    }
+}
@@ -0,0 +1,151 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.repository.TokenUsageRepository;
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * EmailGeneratorService without the network: prompt building, response
+ * decoding + parsing, and the whole generateMultipleEmailReplies path
+ * (prompt selection, cache key, coalescer, call guard, retry policy,
+ * parsing, metrics) against an LlmProvider that answers instantly.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="EmailGenerationBenchmark"
+ *
+ * The generation cache and near-duplicate index are disabled so every call
+ * takes the full path; emailChars ~ a short email vs. a long thread pasted
+ * in full. fitInput runs InputBudgetPolicy with a 1000-token budget, so
+ * the long thread is condensed and the short one only estimated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailGenerationBenchmark {
+
+    private static final String OUTPUT = """
+            SUMMARY: Priya asks whether the Q3 budget review can move from Thursday to Friday.
+            REPLY 1: Hi Priya, Friday afternoon works for me. I'll move the invite to 2pm and update the agenda.
+            REPLY 2: Hi Priya, thanks for the heads-up. Could we do Monday morning instead? I'll circulate the numbers.
+            REPLY 3: Hello Priya, no problem at all. Please pick whichever Friday slot suits the travellers best.""";
+
+    @Param({"600", "12000"})
+    public int emailChars;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ThreadPoolTaskExecutor hedgeExecutor;
+    private EmailGeneratorService service;
+    private InputBudgetPolicy inputBudget;
+    private PromptLibrary.PromptSet prompts;
+    private GeminiResponseReader reader;
+    private EmailRequest request;
+    private byte[] responseJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < emailChars) {
+            content.append("Hi team, following up on the \"Q3 budget\" — can we move the review to Friday?\n");
+        }
+        request = new EmailRequest();
+        request.setSubject("Q3 budget review");
+        request.setEmailContent(content.toString());
+        request.setTone("professional");
+        request.setLanguage("en");
+
+        GeminiResponse canned = new GeminiResponse(OUTPUT, "STOP", 900, 120, 1020);
+        LlmProvider provider = new LlmProvider() {
+            @Override public String name() { return "benchmark"; }
+            @Override public GeminiResponse generate(GenerationConfig config, String prompt) { return canned; }
+            @Override public GeminiResponse stream(GenerationConfig config, String prompt, Consumer<String> onText) {
+                onText.accept(OUTPUT);
+                return canned;
+            }
+        };
+
+        GenerationCacheService cache = new GenerationCacheService();
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        GeminiCallGuard guard = new GeminiCallGuard();
+        guard.init();
+        hedgeExecutor = new ThreadPoolTaskExecutor();
+        hedgeExecutor.initialize();
+        GeminiRetryPolicy retryPolicy = new GeminiRetryPolicy(hedgeExecutor, new SimpleMeterRegistry());
+        retryPolicy.init();
+        PromptLibrary library = new PromptLibrary("v1", "", 0);
+        // Accounting stays on, the quotas would stop a tight loop after a few hundred calls
+        TokenUsageService tokenUsage = new TokenUsageService(Mockito.mock(TokenUsageRepository.class));
+        ReflectionTestUtils.setField(tokenUsage, "tokensPerMinute", 0L);
+        ReflectionTestUtils.setField(tokenUsage, "tokensPerDay", 0L);
+
+        // No key limits configured — the scheduler passes every call straight through
+        GeminiScheduler scheduler = new GeminiScheduler(new SimpleMeterRegistry());
+        scheduler.init();
+        NearDuplicateCacheService nearDuplicates = new NearDuplicateCacheService();
+        ReflectionTestUtils.setField(nearDuplicates, "enabled", false);
+        service = new EmailGeneratorService(cache, nearDuplicates, new VariationPoolService(),
+                new InFlightRequestCoalescer(), library,
+                new EmailPreprocessor(new SimpleMeterRegistry()), new InputBudgetPolicy(new SimpleMeterRegistry()),
+                guard, scheduler, retryPolicy, provider, tokenUsage, new SimpleMeterRegistry());
+        prompts = library.select(request.getEmailContent());
+        inputBudget = new InputBudgetPolicy(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(inputBudget, "maxInputTokens", 1000);
+        reader = new GeminiResponseReader(mapper);
+        responseJson = mapper.writeValueAsString(Map.of(
+                "candidates", List.of(Map.of(
+                        "content", Map.of("parts", List.of(Map.of("text", OUTPUT)), "role", "model"),
+                        "finishReason", "STOP")),
+                "usageMetadata", Map.of("promptTokenCount", 900, "candidatesTokenCount", 120,
+                        "totalTokenCount", 1020))).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hedgeExecutor.shutdown();
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return service.buildMultipleRepliesPrompt(prompts.multi(), request, "en", false);
+    }
+
+    @Benchmark
+    public InputBudgetPolicy.FittedInput fitInput() {
+        return inputBudget.fit(request.getEmailContent());
+    }
+
+    @Benchmark
+    public Map<String, Object> parseResponse() throws Exception {
+        return ReplySectionParser.parse(reader.read(new ByteArrayInputStream(responseJson)).text());
+    }
+
+    @Benchmark
+    public Map<String, Object> generateUncached() {
+        return service.generateMultipleEmailReplies("bench", request, false);
+    }
+}
@@ -0,0 +1,172 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmailPreprocessor.strip on the kinds of email users actually paste.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="EmailPreprocessorBenchmark"
+ *
+ * Shapes:
+ *   gmail    — short reply on top of a five-message "On … wrote:" thread
+ *              with nested "> " quoting, ~6 KB
+ *   outlook  — reply, signature block and a four-message
+ *              From:/Sent:/To:/Subject: chain with a disclaimer each, ~5 KB
+ *   forward  — forwarded message: marker and headers dropped, body kept
+ *   inline   — answers interleaved with quoted questions, only the
+ *              "-- " signature goes
+ *   plain    — a clean email, the cost of finding nothing
+ *
+ * Setup prints how many chars each shape loses. Read gc.alloc.rate.norm (bytes
+ * per email) next to the throughput score — a clean email should only
+ * cost the line offsets and the output copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailPreprocessorBenchmark {
+
+    private static final String DISCLAIMER = """
+            CONFIDENTIALITY NOTICE: This email and any attachments are for the sole use of the intended \
+            recipient(s) and may contain confidential and privileged information. Any unauthorized review, \
+            use, disclosure or distribution is prohibited. If you are not the intended recipient, please \
+            contact the sender by reply email and destroy all copies of the original message.""";
+
+    @Param({"gmail", "outlook", "forward", "inline", "plain"})
+    public String shape;
+
+    private EmailPreprocessor preprocessor;
+    private String content;
+
+    @Setup
+    public void setUp() {
+        preprocessor = new EmailPreprocessor(new SimpleMeterRegistry());
+        content = switch (shape) {
+            case "gmail"   -> gmail();
+            case "outlook" -> outlook();
+            case "forward" -> forward();
+            case "inline"  -> inline();
+            case "plain"   -> plain();
+            default -> throw new IllegalArgumentException(shape);
+        };
+        String stripped = preprocessor.strip(content);
+        System.out.printf("%n%s: %d -> %d chars%n", shape, content.length(), stripped.length());
+    }
+
+    @Benchmark
+    public String strip() {
+        return preprocessor.strip(content);
+    }
+
+    private static String gmail() {
+        StringBuilder sb = new StringBuilder("""
+                Hi Sam,
+
+                Friday at 2pm works. I'll bring the updated forecast and the vendor quotes.
+
+                Thanks,
+                Priya
+
+                """);
+        String quote = "";
+        for (int message = 0; message < 5; message++) {
+            sb.append(quote).append("On Tue, 4 Jun 2024 at 0").append(9 - message)
+              .append(":15, Sam Lee <sam@example.com> wrote:\n");
+            quote = quote + "> ";
+            for (int line = 0; line < 12; line++) {
+                sb.append(quote).append("Following up on the Q3 budget review, the numbers for line ")
+                  .append(line).append(" still need sign-off.\n");
+            }
+            sb.append(quote).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String outlook() {
+        StringBuilder sb = new StringBuilder("""
+                Hello team,
+
+                Please find the revised delivery schedule attached. Shipment 48213 moves to the 14th.
+
+                Best regards,
+                Jordan Smith
+                Logistics Manager | Example Corp
+                +1 555 0100 | www.example.com
+
+                """).append(DISCLAIMER).append("\n\n");
+        for (int message = 0; message < 4; message++) {
+            sb.append("From: Alex Kim <alex@example.com>\n")
+              .append("Sent: Monday, June ").append(3 - message).append(", 2024 4:0").append(message).append(" PM\n")
+              .append("To: Jordan Smith <jordan@example.com>\n")
+              .append("Subject: RE: Delivery schedule\n\n");
+            for (int line = 0; line < 8; line++) {
+                sb.append("The carrier confirmed the pallet count for the second loading dock slot, see item ")
+                  .append(line).append(".\n");
+            }
+            sb.append('\n').append(DISCLAIMER).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    private static String forward() {
+        return """
+                FYI — can you answer this one?
+
+                ---------- Forwarded message ---------
+                From: Customer Support <support@example.com>
+                Date: Tue, Jun 4, 2024 at 10:02 AM
+                Subject: Invoice 2024-118 overdue
+                To: Priya <priya@example.com>
+
+                Dear Priya,
+
+                Our records show invoice 2024-118 over 12,400 EUR is 30 days overdue. Could you confirm \
+                the payment date, or let us know if anything about the invoice is unclear?
+
+                Kind regards,
+                Accounts Receivable
+
+                Sent from my iPhone
+                """;
+    }
+
+    private static String inline() {
+        StringBuilder sb = new StringBuilder("Hi Sam, answers inline below.\n\n");
+        for (int question = 0; question < 10; question++) {
+            sb.append("> Can you confirm the owner for work item ").append(question).append("?\n\n")
+              .append("Yes — Priya owns it, the due date is the ").append(question + 10).append("th.\n\n");
+        }
+        return sb.append("-- \nSam Lee\nEngineering\n").toString();
+    }
+
+    private static String plain() {
+        return """
+                Hi team,
+
+                Following up on the Q3 budget review: can we move it from Thursday to Friday afternoon? \
+                Two of the stakeholders are travelling on Thursday and would like to join in person.
+
+                If Friday does not work, Monday morning is the next option. Please reply by tomorrow \
+                so I can update the invite and the room booking.
+
+                Thanks,
+                Priya
+                """;
+    }
+}
@@ -0,0 +1,69 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gemini request body encoding: Jackson over nested Map.of(...) (the old
+ * path) against GeminiRequestWriter's pre-encoded templates.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="GeminiRequestBodyBenchmark"
+ *
+ * promptChars ~ a short email vs. a long thread pasted in full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiRequestBodyBenchmark {
+
+    @Param({"800", "12000"})
+    public int promptChars;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private GeminiRequestWriter writer;
+    private String prompt;
+
+    @Setup
+    public void setUp() {
+        writer = new GeminiRequestWriter(mapper);
+        String line = "Hi team, following up on \"Q3 budget\" — can we move the review to Friday?\n";
+        StringBuilder sb = new StringBuilder("You are a professional email assistant.\n\nEmail:\n");
+        while (sb.length() < promptChars) sb.append(line);
+        prompt = sb.toString();
+    }
+
+    @Benchmark
+    public byte[] mapBased() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
+                "generationConfig", Map.of(
+                        "temperature",     0.75,
+                        "maxOutputTokens", 2048,
+                        "topP",            0.95,
+                        "topK",            40)));
+    }
+
+    @Benchmark
+    public byte[] preEncoded() {
+        return writer.write(GenerationConfig.MULTI, prompt);
+    }
+}
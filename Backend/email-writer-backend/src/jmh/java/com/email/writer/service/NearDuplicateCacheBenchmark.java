@@ -0,0 +1,125 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.service.NearDuplicateCacheService.Fingerprint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NearDuplicateCacheService: fingerprinting a request and probing a full
+ * index.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="NearDuplicateCacheBenchmark"
+ *
+ * The index is filled to entries with emails drawn from 50 "templates"
+ * (random sentences over a 3000-word vocabulary, 80–160 words) — each
+ * indexed email is its template with a different name and id. Probes:
+ *   fingerprint — tokenizing + 32 MinHash values for a 120-word email
+ *   lookupHit   — another variant of an indexed template
+ *   lookupMiss  — an email from no template
+ * lookupMiss stays flat as entries grows — only buckets sharing a band are
+ * compared. lookupHit grows with the variants of one template in the index
+ * (2 at 100 entries, 20 at 1000); in service a variant is only added after
+ * its lookup was refused, so real buckets stay smaller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NearDuplicateCacheBenchmark {
+
+    private static final Map<String, Object> ANSWER = Map.of(
+            "summary", "The sender confirms the request and lists the next steps.",
+            "replies", List.of("Thanks, that works for me.", "Could you share more detail?", "Noted, thank you."));
+
+    @Param({"100", "1000"})
+    public int entries;
+
+    private NearDuplicateCacheService index;
+    private EmailRequest probe;
+    private Fingerprint hit;
+    private Fingerprint miss;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[3000];
+        for (int i = 0; i < vocabulary.length; i++) vocabulary[i] = word(random);
+        String[] templates = new String[50];
+        for (int i = 0; i < templates.length; i++) templates[i] = text(random, vocabulary, 80 + random.nextInt(80));
+
+        index = new NearDuplicateCacheService();
+        ReflectionTestUtils.setField(index, "maxEntries", entries);
+        for (int i = 0; i < entries; i++) {
+            index.put(fingerprint(variant(templates[i % templates.length], i)), ANSWER);
+        }
+        probe = request(variant(templates[7], 1_000_001));
+        hit = index.fingerprint("multi", "v1", probe, "en");
+        miss = fingerprint(text(random, vocabulary, 120));
+        if (index.get(hit) == null || index.get(miss) != null) {
+            throw new IllegalStateException("Probes do not behave as hit/miss");
+        }
+    }
+
+    @Benchmark
+    public Fingerprint fingerprint() {
+        return index.fingerprint("multi", "v1", probe, "en");
+    }
+
+    @Benchmark
+    public Object lookupHit() {
+        return index.get(hit);
+    }
+
+    @Benchmark
+    public Object lookupMiss() {
+        return index.get(miss);
+    }
+
+    private Fingerprint fingerprint(String content) {
+        return index.fingerprint("multi", "v1", request(content), "en");
+    }
+
+    private static EmailRequest request(String content) {
+        EmailRequest request = new EmailRequest();
+        request.setSubject("Update");
+        request.setEmailContent(content);
+        request.setTone("professional");
+        return request;
+    }
+
+    private static String variant(String template, int n) {
+        return "Hello customer" + Integer.toString(n, 36) + ",\n\n" + template + "\n\nReference " + n;
+    }
+
+    private static String text(Random random, String[] vocabulary, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            sb.append(vocabulary[random.nextInt(vocabulary.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+        return sb.toString();
+    }
+
+    private static String word(Random random) {
+        char[] chars = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+}
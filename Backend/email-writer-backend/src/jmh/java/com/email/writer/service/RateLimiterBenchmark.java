@@ -0,0 +1,81 @@
+package com.email.writer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiterService under contention: 4 threads checking (and recording)
+ * requests at once.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="RateLimiterBenchmark"
+ *
+ * users = 1     — every thread hits the same user, so all of them contend
+ *                 on the same two window locks
+ * users = 10000 — requests spread over many users, the map lookup dominates
+ *
+ * Each user reaches the 8/minute limit within the first few calls, so the
+ * measurement is mostly the at-limit path: trim, size check, reject.
+ * The limiter is recreated every iteration to keep that state comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    public int users;
+
+    private RateLimiterService limiter;
+    private String[] usernames;
+
+    @Setup(Level.Trial)
+    public void names() {
+        usernames = new String[users];
+        for (int i = 0; i < users; i++) usernames[i] = "user" + i;
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        limiter = new RateLimiterService();
+    }
+
+    @Benchmark
+    public boolean canMakeRequest() {
+        return limiter.canMakeRequest(pick());
+    }
+
+    @Benchmark
+    public boolean checkAndRecord() {
+        String username = pick();
+        if (!limiter.canMakeRequest(username)) return false;
+        limiter.recordRequest(username);
+        return true;
+    }
+
+    @Benchmark
+    public int reserve() {
+        return limiter.reserve(pick(), 1);
+    }
+
+    private String pick() {
+        return users == 1 ? usernames[0] : usernames[ThreadLocalRandom.current().nextInt(users)];
+    }
+}
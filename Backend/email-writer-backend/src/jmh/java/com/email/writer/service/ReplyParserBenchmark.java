@@ -0,0 +1,114 @@
+package com.email.writer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reply-text parsing: the old regex parser (LegacyReplyParser, a verbatim
+ * copy) against ReplySectionParser.parse.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="ReplyParserBenchmark"
+ *
+ * Shapes:
+ *   typical   — SUMMARY plus three short multi-line replies, ~1.5 KB
+ *   malformed — markdown-decorated labels, preamble, CRLF, no usable sections
+ *   long      — three replies of ~200 lines each, ~60 KB
+ *
+ * Read gc.alloc.rate.norm (bytes per parse) next to the throughput score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplyParserBenchmark {
+
+    @Param({"typical", "malformed", "long"})
+    public String shape;
+
+    private String content;
+
+    @Setup
+    public void setUp() {
+        content = switch (shape) {
+            case "typical"   -> typical();
+            case "malformed" -> malformed();
+            case "long"      -> longOutput();
+            default -> throw new IllegalArgumentException(shape);
+        };
+        if (!LegacyReplyParser.parse(content).equals(ReplySectionParser.parse(content))) {
+            throw new IllegalStateException("Parsers disagree on shape " + shape);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyRegex() {
+        return LegacyReplyParser.parse(content);
+    }
+
+    @Benchmark
+    public Map<String, Object> singlePass() {
+        return ReplySectionParser.parse(content);
+    }
+
+    private static String typical() {
+        return """
+                SUMMARY: Priya asks whether the Q3 budget review can move from Thursday to Friday \
+                afternoon because two stakeholders are travelling.
+
+                REPLY 1: Hi Priya,
+                Friday afternoon works for me. I'll move the invite to 2pm and update the agenda
+                so the travel updates come first.
+                Best regards,
+                Sam
+
+                REPLY 2: Hi Priya,
+                Thanks for the heads-up. Friday is tight on my side — could we do Monday morning
+                instead? I can circulate the draft numbers beforehand so nobody is blocked.
+                Kind regards,
+                Sam
+
+                REPLY 3: Hello Priya,
+                No problem at all. Please go ahead and pick whichever Friday slot suits the
+                travellers best; I'll adjust my calendar.
+                Thanks,
+                Sam
+                """;
+    }
+
+    private static String malformed() {
+        return "Sure! Here are three replies you could send:\r\n\r\n"
+                + "**Summary** The sender wants to reschedule the review.\r\n\r\n"
+                + "**Reply 1:** Friday works, I'll move the invite.\r\n"
+                + "---\r\n"
+                + "**Reply 2:** Could we do Monday instead?\r\n"
+                + "---\r\n"
+                + "Reply #3 - No problem, pick any Friday slot.\r\n"
+                + "Let me know if you'd like a different tone.\r\n".repeat(5);
+    }
+
+    private static String longOutput() {
+        StringBuilder sb = new StringBuilder("SUMMARY: A long thread about the migration plan.\n");
+        for (int reply = 1; reply <= 3; reply++) {
+            sb.append("REPLY ").append(reply).append(": Hi team,\n");
+            for (int line = 0; line < 200; line++) {
+                sb.append("  Point ").append(line)
+                  .append(": the cut-over window, rollback steps and owners are confirmed.  \n");
+            }
+        }
+        return sb.toString();
+    }
+}
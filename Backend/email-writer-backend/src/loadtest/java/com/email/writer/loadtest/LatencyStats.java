@@ -0,0 +1,65 @@
+package com.email.writer.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcomes and latencies of one endpoint during a load-test run.
+ *
+ * Latencies are kept raw (a run at 50 req/s for 5 minutes is 15k longs)
+ * so percentiles are exact and no histogram dependency is needed.
+ * Thread-safe: completions arrive on the HTTP client's threads.
+ */
+final class LatencyStats {
+
+    private long[] micros = new long[1024];
+    private int count;
+    private long ok, rateLimited, errors;
+
+    synchronized void record(int status, long latencyMicros) {
+        if (status >= 200 && status < 300) ok++;
+        else if (status == 429) rateLimited++;
+        else errors++;
+        if (count == micros.length) micros = Arrays.copyOf(micros, count * 2);
+        micros[count++] = latencyMicros;
+    }
+
+    /** A request that never got a response (connect failure, client timeout). */
+    synchronized void recordFailure(long latencyMicros) {
+        record(-1, latencyMicros);
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    /** @param seconds length of the measured window, for throughput */
+    synchronized Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(micros, count);
+        Arrays.sort(sorted);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("requests", (long) count);
+        out.put("ok", ok);
+        out.put("rateLimited", rateLimited);
+        out.put("errors", errors);
+        out.put("errorRate", count == 0 ? 0.0 : round((double) errors / count));
+        out.put("throughputPerSec", round(ok / seconds));
+        out.put("meanMs", count == 0 ? 0.0 : round(Arrays.stream(sorted).average().orElse(0) / 1000.0));
+        out.put("p50Ms", percentileMs(sorted, 50));
+        out.put("p90Ms", percentileMs(sorted, 90));
+        out.put("p99Ms", percentileMs(sorted, 99));
+        out.put("maxMs", count == 0 ? 0.0 : round(sorted[count - 1] / 1000.0));
+        return out;
+    }
+
+    static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return round(sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
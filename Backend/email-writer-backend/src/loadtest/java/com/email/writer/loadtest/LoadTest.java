@@ -0,0 +1,250 @@
+package com.email.writer.loadtest;
+
+import com.email.writer.EmailWriterBackendApplication;
+import com.email.writer.loadtest.Workload.Operation;
+import com.email.writer.service.FakeGeminiServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: boots the whole application in-process against an
+ * in-memory H2 database in PostgreSQL mode and FakeGeminiServer, then
+ * drives mixed traffic over real HTTP and reports per-endpoint latency
+ * percentiles, throughput and error rates.
+ *
+ *   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="rate=20 duration=60"
+ *
+ * Open model: requests are started at the configured arrival rate
+ * (Poisson by default, arrival=constant for a fixed interval) whether or
+ * not earlier ones have finished, and latency is measured from the
+ * scheduled start. A slow server therefore shows up as higher latency
+ * instead of silently lowering the offered load (coordinated omission).
+ * If more than max-in-flight requests are outstanding new arrivals are
+ * counted as dropped — the instance is past saturation.
+ *
+ * Comparable across commits: the request sequence, fake Gemini latencies
+ * and errors all come from fixed seeds, and every run writes
+ * target/loadtest-result.json (settings, commit, per-endpoint numbers).
+ * baseline=<json> prints the change against an earlier run. Only runs on
+ * the same machine with the same settings are comparable.
+ *
+ * Options, as name=value (a leading -- is allowed), defaults in brackets:
+ * rate [20] requests/s, duration [60] and warmup [10] seconds, users
+ * [100], seed-replies [5] saved replies per user before the run, mix
+ * [Workload.DEFAULT_MIX], distinct-emails [50], arrival [poisson],
+ * seed [1], max-in-flight [500], output, baseline. Any spring.* or
+ * gemini.* option is passed to the application, e.g.
+ * gemini.fake.median-latency-ms=300 or gemini.fake.error-rate-503=0.02.
+ *
+ * The per-user rate limit (8 generations/minute) still applies; keep
+ * users × 8 above the generate rate per minute or the 429s (reported as
+ * rateLimited, not errors) will dominate.
+ */
+public final class LoadTest {
+
+    record User(String username, String password, String token) {}
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client;
+    private final Workload workload;
+    private final Random random;
+
+    private LoadTest(URI base, Map<String, String> options) {
+        this.options = options;
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8, runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        this.workload = new Workload(base, objectMapper,
+                option("mix", Workload.DEFAULT_MIX), intOption("distinct-emails", 50));
+        this.random = new Random(Long.parseLong(option("seed", "1")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--spring.profiles.active=loadtest,fake-gemini", "--server.port=0"));
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            if (option.isBlank()) continue;
+            if (!option.contains("=")) {
+                throw new IllegalArgumentException("Unknown argument '" + arg + "' — expected name=value");
+            }
+            if (option.startsWith("spring.") || option.startsWith("gemini.")) {
+                appArgs.add("--" + option);
+            } else {
+                options.put(option.substring(0, option.indexOf('=')), option.substring(option.indexOf('=') + 1));
+            }
+        }
+
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(EmailWriterBackendApplication.class)
+                .run(appArgs.toArray(String[]::new));
+        try {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            LoadTest test = new LoadTest(URI.create("http://127.0.0.1:" + port), options);
+            Map<String, Object> result = test.run(app.getBean(FakeGeminiServer.class));
+            test.report(result, appArgs);
+        } finally {
+            app.close();
+        }
+        System.exit(0);
+    }
+
+    private Map<String, Object> run(FakeGeminiServer gemini) throws Exception {
+        List<User> users = setUp(intOption("users", 100), intOption("seed-replies", 5));
+
+        int warmup = intOption("warmup", 10);
+        if (warmup > 0) {
+            System.out.printf("Warm-up: %d s%n", warmup);
+            drive(users, warmup, new EnumMap<>(Operation.class));
+        }
+
+        int duration = intOption("duration", 60);
+        System.out.printf("Measuring: %d s at %s req/s%n", duration, option("rate", "20"));
+        Map<Operation, LatencyStats> stats = new EnumMap<>(Operation.class);
+        long geminiBefore = gemini.requestCount();
+        long dropped = drive(users, duration, stats);
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyStats> entry : stats.entrySet()) {
+            endpoints.put(entry.getKey().name().toLowerCase(), entry.getValue().summary(duration));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("endpoints", endpoints);
+        result.put("total", totals(stats, duration));
+        result.put("dropped", dropped);
+        result.put("geminiCalls", gemini.requestCount() - geminiBefore);
+        return result;
+    }
+
+    /** Register the users and give each some saved replies for history/search/export. */
+    private List<User> setUp(int userCount, int repliesPerUser) throws IOException, InterruptedException {
+        System.out.printf("Setting up %d users with %d saved replies each%n", userCount, repliesPerUser);
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User(String.format("loaduser%04d", i), "loadtest-password-" + i, null);
+            HttpResponse<String> response = client.send(workload.register(user), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Registering " + user.username() + " failed: "
+                        + response.statusCode() + " " + response.body());
+            }
+            JsonNode body = objectMapper.readTree(response.body());
+            user = new User(user.username(), user.password(), body.get("token").asText());
+            for (int r = 0; r < repliesPerUser; r++) {
+                client.send(workload.post("/api/v1/replies/save", user.token(), workload.saveRequest(random)),
+                        HttpResponse.BodyHandlers.discarding());
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Start requests at the arrival rate for {@code seconds}, then wait for
+     * the outstanding ones.
+     *
+     * @return arrivals dropped because max-in-flight requests were outstanding
+     */
+    private long drive(List<User> users, int seconds, Map<Operation, LatencyStats> stats)
+            throws InterruptedException {
+        double rate = Double.parseDouble(option("rate", "20"));
+        boolean poisson = !"constant".equals(option("arrival", "poisson"));
+        int maxInFlight = intOption("max-in-flight", 500);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong dropped = new AtomicLong();
+        for (Operation op : Operation.values()) stats.computeIfAbsent(op, k -> new LatencyStats());
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        double meanGapNanos = 1e9 / rate;
+        long next = start;
+        while (next < end) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            if (System.nanoTime() < next) continue;   // spurious wake-up
+
+            long scheduled = next;
+            next += (long) (poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos);
+
+            Operation op = workload.next(random);
+            User user = users.get(random.nextInt(users.size()));
+            var request = workload.request(op, user, random);
+            if (!inFlight.tryAcquire()) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            LatencyStats target = stats.get(op);
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, ex) -> {
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+                        if (ex != null) target.recordFailure(micros);
+                        else target.record(response.statusCode(), micros);
+                        inFlight.release();
+                    });
+        }
+        if (!inFlight.tryAcquire(maxInFlight, 90, TimeUnit.SECONDS)) {
+            System.out.println("Warning: requests still outstanding 90 s after the run ended");
+        } else {
+            inFlight.release(maxInFlight);
+        }
+        return dropped.get();
+    }
+
+    private static Map<String, Object> totals(Map<Operation, LatencyStats> stats, int seconds) {
+        long requests = 0, ok = 0, rateLimited = 0, errors = 0;
+        for (LatencyStats s : stats.values()) {
+            Map<String, Object> summary = s.summary(seconds);
+            requests    += (long) summary.get("requests");
+            ok          += (long) summary.get("ok");
+            rateLimited += (long) summary.get("rateLimited");
+            errors      += (long) summary.get("errors");
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("requests", requests);
+        out.put("ok", ok);
+        out.put("rateLimited", rateLimited);
+        out.put("errors", errors);
+        out.put("throughputPerSec", Math.round(ok * 100.0 / seconds) / 100.0);
+        return out;
+    }
+
+    private void report(Map<String, Object> result, List<String> appArgs) throws IOException {
+        Map<String, Object> settings = new LinkedHashMap<>(options);
+        settings.put("applicationArgs", appArgs);
+        new LoadTestReport(objectMapper).write(settings, result, option("output", "target/loadtest-result.json"),
+                options.get("baseline"));
+    }
+
+    private String option(String name, String fallback) {
+        return options.getOrDefault(name, fallback);
+    }
+
+    private int intOption(String name, int fallback) {
+        return Integer.parseInt(option(name, String.valueOf(fallback)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.email.writer.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prints a load-test result, saves it as JSON and optionally compares it
+ * with a baseline run.
+ *
+ * The JSON carries the commit, JVM and CPU count next to the settings, so
+ * a result file says what it was measured on.
+ */
+final class LoadTestReport {
+
+    private final ObjectMapper objectMapper;
+
+    LoadTestReport(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    void write(Map<String, Object> settings, Map<String, Object> result, String output, String baseline)
+            throws IOException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("commit", commit());
+        document.put("finishedAt", Instant.now().toString());
+        document.put("java", System.getProperty("java.version"));
+        document.put("cpus", Runtime.getRuntime().availableProcessors());
+        document.put("settings", settings);
+        document.putAll(result);
+
+        Map<String, Map<String, Object>> endpoints = (Map<String, Map<String, Object>>) result.get("endpoints");
+        System.out.println();
+        System.out.printf("%-10s %8s %8s %6s %6s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "ok/s", "429", "errors", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Map<String, Object>> entry : endpoints.entrySet()) {
+            Map<String, Object> s = entry.getValue();
+            System.out.printf("%-10s %8d %8.2f %6d %6d %9.1f %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(),
+                    s.get("requests"), s.get("throughputPerSec"), s.get("rateLimited"), s.get("errors"),
+                    s.get("meanMs"), s.get("p50Ms"), s.get("p90Ms"), s.get("p99Ms"), s.get("maxMs"));
+        }
+        System.out.printf("total: %s, dropped: %s, Gemini calls: %s%n",
+                result.get("total"), result.get("dropped"), result.get("geminiCalls"));
+
+        Path path = Path.of(output);
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), document);
+        System.out.println("Result written to " + path.toAbsolutePath());
+
+        if (baseline != null && !baseline.isBlank()) compare(endpoints, objectMapper.readTree(Path.of(baseline).toFile()));
+    }
+
+    private void compare(Map<String, Map<String, Object>> current, JsonNode baseline) {
+        System.out.println();
+        System.out.printf("Compared with %s (commit %s):%n", baseline.path("finishedAt").asText("?"),
+                baseline.path("commit").asText("?"));
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "endpoint", "ok/s", "p50", "p99", "error rate");
+        for (Map.Entry<String, Map<String, Object>> entry : current.entrySet()) {
+            JsonNode before = baseline.path("endpoints").path(entry.getKey());
+            if (before.isMissingNode()) continue;
+            Map<String, Object> now = entry.getValue();
+            System.out.printf("%-10s %12s %12s %12s %12s%n", entry.getKey(),
+                    change(before, now, "throughputPerSec"), change(before, now, "p50Ms"),
+                    change(before, now, "p99Ms"), change(before, now, "errorRate"));
+        }
+    }
+
+    private static String change(JsonNode before, Map<String, Object> now, String field) {
+        double old = before.path(field).asDouble();
+        double current = ((Number) now.get(field)).doubleValue();
+        if (old == 0) return current == 0 ? "=" : "new";
+        return String.format("%+.1f%%", (current - old) * 100.0 / old);
+    }
+
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (InputStream in = git.getInputStream()) {
+                String out = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+                return git.waitFor() == 0 ? out : "unknown";
+            }
+        } catch (IOException ex) {
+            return "unknown";
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+}
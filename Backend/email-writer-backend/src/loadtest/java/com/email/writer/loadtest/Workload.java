@@ -0,0 +1,150 @@
+package com.email.writer.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The traffic mix: which endpoint each arrival hits and with what payload.
+ *
+ * The mix approximates a day of real use — mostly history reads and
+ * generations, fewer saves and searches, occasional logins and CSV
+ * exports. Weights are relative and can be overridden with
+ * mix=generate:40,history:30,... Everything random comes from the run's
+ * seeded Random, so two runs with the same settings send the same
+ * sequence of requests.
+ */
+final class Workload {
+
+    enum Operation { LOGIN, GENERATE, SAVE, HISTORY, SEARCH, EXPORT }
+
+    static final String DEFAULT_MIX = "login:5,generate:25,save:15,history:30,search:20,export:5";
+
+    private static final List<String[]> EMAILS = List.of(
+            new String[]{"Project review", "Hi, could we move Thursday's project review to next week? Half the team is out."},
+            new String[]{"Invoice charged twice", "Hello, my last invoice was charged twice to my card. Can you refund one of them?"},
+            new String[]{"Interview schedule", "Thanks for applying. Are you available for a 45 minute interview on Monday or Tuesday?"},
+            new String[]{"Late delivery", "My order was supposed to arrive last Friday and still hasn't. What is going on?"},
+            new String[]{"Partnership proposal", "We would love to explore a partnership between our companies. Do you have time for a call?"},
+            new String[]{"Access request", "Could you give me edit access to the Q3 planning document before tomorrow's meeting?"});
+
+    private static final List<String> TONES = List.of("professional", "friendly", "formal", "casual");
+    private static final List<String> SEARCH_TERMS = List.of("invoice", "review", "interview", "delivery", "access");
+
+    private final URI base;
+    private final ObjectMapper objectMapper;
+    private final Operation[] table;
+    private final int distinctEmails;
+
+    /**
+     * @param mix            "operation:weight,..." — see DEFAULT_MIX
+     * @param distinctEmails how many different email bodies generate may
+     *                       send; fewer means more generation-cache hits
+     */
+    Workload(URI base, ObjectMapper objectMapper, String mix, int distinctEmails) {
+        this.base = base;
+        this.objectMapper = objectMapper;
+        this.table = weightTable(mix);
+        this.distinctEmails = Math.max(1, distinctEmails);
+    }
+
+    Operation next(Random random) {
+        return table[random.nextInt(table.length)];
+    }
+
+    HttpRequest request(Operation op, LoadTest.User user, Random random) {
+        return switch (op) {
+            case LOGIN -> post("/api/v1/auth/login", null,
+                    Map.of("username", user.username(), "password", user.password()));
+            case GENERATE -> post("/api/v1/email/generate", user.token(), emailRequest(random));
+            case SAVE -> post("/api/v1/replies/save", user.token(), saveRequest(random));
+            case HISTORY -> get("/api/v1/replies/history?page=" + random.nextInt(3) + "&size=20", user.token());
+            case SEARCH -> get("/api/v1/replies/search?q="
+                    + URLEncoder.encode(pick(SEARCH_TERMS, random), StandardCharsets.UTF_8), user.token());
+            case EXPORT -> get("/api/v1/replies/export", user.token());
+        };
+    }
+
+    HttpRequest register(LoadTest.User user) {
+        return post("/api/v1/auth/register", null, Map.of(
+                "username", user.username(),
+                "email", user.username() + "@loadtest.local",
+                "password", user.password()));
+    }
+
+    Map<String, Object> saveRequest(Random random) {
+        String[] email = pick(EMAILS, random);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("emailSubject", email[0]);
+        body.put("emailContent", email[1]);
+        body.put("tone", pick(TONES, random));
+        body.put("language", "en");
+        body.put("replyText", "Thanks for your message about " + email[0].toLowerCase()
+                + ". I'll get back to you with details shortly.");
+        body.put("summary", "Sender wrote about " + email[0].toLowerCase() + ".");
+        return body;
+    }
+
+    HttpRequest post(String path, String token, Object body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json(body)));
+        if (token != null) builder.header("Authorization", "Bearer " + token);
+        return builder.build();
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private Map<String, Object> emailRequest(Random random) {
+        String[] email = pick(EMAILS, random);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("subject", email[0]);
+        // The variant number decides how often two generations share a cache key
+        body.put("emailContent", email[1] + "\n\nRef " + random.nextInt(distinctEmails));
+        body.put("tone", pick(TONES, random));
+        body.put("language", "en");
+        return body;
+    }
+
+    private byte[] json(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static <T> T pick(List<T> values, Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /** Expand weights into a lookup table — one slot per weight unit. */
+    static Operation[] weightTable(String mix) {
+        List<Operation> slots = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) throw new IllegalArgumentException("Bad mix entry '" + entry + "'");
+            Operation op = Operation.valueOf(parts[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) slots.add(op);
+        }
+        if (slots.isEmpty()) throw new IllegalArgumentException("Mix has no weight: " + mix);
+        return slots.toArray(Operation[]::new);
+    }
+}
@@ -1,29 +1,98 @@
 package com.email.writer.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * Application configuration.
  *
- * Provides a RestTemplate bean with explicit timeouts.
+ * Provides the RestTemplate bean used for Gemini calls.
  * RestTemplateBuilder lost its .connectTimeout()/.readTimeout(Duration) methods
- * in Spring Framework 6.1 (Spring Boot 3.2). We configure timeouts directly on
- * SimpleClientHttpRequestFactory instead — same effect, fully compatible.
+ * in Spring Framework 6.1 (Spring Boot 3.2), so timeouts live on the request
+ * factory instead.
  *
- * The 30-second read timeout ensures a slow or unresponsive Gemini API call
- * cannot block a server thread forever.
+ * The factory (and with it the connection pool, HTTP version and the 10s
+ * connect / 30s read timeouts) comes from GeminiHttpClientConfig. It used to
+ * be a SimpleClientHttpRequestFactory built right here, which gave us
+ * HttpURLConnection with no pool control or visibility.
+ *
+ * Also provides the bounded executor that drives streamed (SSE) generations.
+ * The request thread returns as soon as the SseEmitter is handed back; the
+ * Gemini stream is read on this pool. It has no queue: a queued stream
+ * would send nothing while its SseEmitter timeout ran, so stream
+ * max-concurrent + 1 is rejected with 503 at once.
+ *
+ * geminiHedgeExecutor runs the two attempts of a hedged Gemini call (see
+ * GeminiRetryPolicy). No queue: when it is busy the call simply runs on the
+ * request thread without a hedge.
+ *
+ * geminiBatchExecutor runs the item workers of /generate-batch (see
+ * BatchGenerationService), also without a queue — a saturated pool makes
+ * the request thread work through its own batch.
+ *
+ * geminiJobExecutor runs asynchronous generation jobs (GenerationJobWorker).
+ * The worker only claims as many jobs as it has threads, so the pool never
+ * queues; on shutdown it lets running jobs finish for up to 30s, anything
+ * still running is requeued from its expired lease after restart.
+ * @EnableScheduling drives the job poller and reaper.
  */
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10_000);   // 10 seconds in milliseconds
-        factory.setReadTimeout(30_000);      // 30 seconds in milliseconds
-        return new RestTemplate(factory);
+    public RestTemplate restTemplate(ClientHttpRequestFactory geminiRequestFactory) {
+        return new RestTemplate(geminiRequestFactory);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor geminiStreamExecutor(
+            @Value("${gemini.stream.max-concurrent:16}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("gemini-stream-");
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor geminiHedgeExecutor(
+            @Value("${gemini.hedge.max-threads:16}") int maxThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(maxThreads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("gemini-hedge-");
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor geminiBatchExecutor(
+            @Value("${gemini.batch.max-threads:8}") int maxThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(maxThreads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("gemini-batch-");
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor geminiJobExecutor(
+            @Value("${generation.jobs.worker.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("gemini-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.email.writer.config;
+
+import com.email.writer.service.FakeGeminiServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Runs FakeGeminiServer inside the application — profile fake-gemini.
+ *
+ * application-fake-gemini.properties points gemini.api.url at the server,
+ * so GeminiProvider, the connection pool and everything above them run
+ * exactly as in production but nothing leaves the machine. Intended for
+ * load tests and local benchmarking; never enable it in production.
+ */
+@Configuration
+@Profile("fake-gemini")
+public class FakeGeminiConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FakeGeminiServer fakeGeminiServer(
+            @Value("${gemini.fake.port:8089}") int port,
+            @Value("${gemini.fake.median-latency-ms:800}") long medianLatencyMs,
+            @Value("${gemini.fake.latency-sigma:0.5}") double latencySigma,
+            @Value("${gemini.fake.error-rate-429:0}") double errorRate429,
+            @Value("${gemini.fake.error-rate-500:0}") double errorRate500,
+            @Value("${gemini.fake.error-rate-503:0}") double errorRate503,
+            @Value("${gemini.fake.chunk-interval-ms:40}") long chunkIntervalMs,
+            @Value("${gemini.fake.outputs-dir:}") String outputsDir,
+            @Value("${gemini.fake.seed:42}") long seed) {
+        return new FakeGeminiServer(new FakeGeminiServer.Settings(port, medianLatencyMs, latencySigma,
+                errorRate429, errorRate500, errorRate503, chunkIntervalMs, outputsDir, seed));
+    }
+}
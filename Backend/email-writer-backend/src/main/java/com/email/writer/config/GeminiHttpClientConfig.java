@@ -0,0 +1,164 @@
+package com.email.writer.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.IdleConnectionEvictor;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outbound HTTP transport for Gemini calls — selected by gemini.http.client.
+ *
+ * Previously AppConfig built the RestTemplate on SimpleClientHttpRequestFactory
+ * (HttpURLConnection): no pool sizing, no pool visibility, no HTTP/2. Under
+ * load every call risked a fresh TCP + TLS handshake to Google.
+ *
+ * pooled (default) — Apache HttpClient 5 classic:
+ *   - keep-alive connection pool, max-total / max-per-route configurable
+ *   - idle connections evicted in the background, connections recycled after
+ *     a TTL so DNS changes are picked up
+ *   - gzip/deflate negotiated and decoded transparently
+ *   - metrics: httpcomponents.httpclient.pool.* (Micrometer binder),
+ *     gemini.http.pool.utilization and gemini.http.pool.acquire (wait time)
+ *   HttpClient 5 classic speaks HTTP/1.1 only.
+ *
+ * http2 — java.net.http.HttpClient:
+ *   - HTTP/2 via ALPN, so all calls multiplex over a single TLS connection
+ *   - gzip via GzipResponseInterceptor
+ *   - the JDK client has no pool to size; StreamLimitInterceptor caps
+ *     in-flight requests at max-per-route with the same acquire-timeout-ms
+ *     and publishes gemini.http.pool.acquire / .utilization. The
+ *     httpcomponents.httpclient.pool.* meters exist only in pooled mode.
+ *   HttpClient 5's async client could speak HTTP/2 with the shared pool,
+ *   but RestTemplate has no request factory for it; the JDK client keeps
+ *   the blocking RestTemplate path unchanged.
+ *
+ * Timeouts are identical in both modes: 10s connect, 30s read — a slow or
+ * unresponsive Gemini API call cannot block a server thread forever.
+ */
+@Configuration
+@Slf4j
+public class GeminiHttpClientConfig {
+
+    @Configuration
+    @ConditionalOnProperty(name = "gemini.http.client", havingValue = "pooled", matchIfMissing = true)
+    static class Pooled {
+
+        @Value("${gemini.http.connect-timeout-ms:10000}")
+        private long connectTimeoutMs;
+
+        @Value("${gemini.http.read-timeout-ms:30000}")
+        private long readTimeoutMs;
+
+        @Value("${gemini.http.max-total:50}")
+        private int maxTotal;
+
+        @Value("${gemini.http.max-per-route:20}")
+        private int maxPerRoute;
+
+        @Value("${gemini.http.acquire-timeout-ms:5000}")
+        private long acquireTimeoutMs;
+
+        @Value("${gemini.http.idle-evict-seconds:30}")
+        private long idleEvictSeconds;
+
+        @Value("${gemini.http.connection-ttl-seconds:300}")
+        private long connectionTtlSeconds;
+
+        @Bean(destroyMethod = "close")
+        public PoolingHttpClientConnectionManager geminiConnectionManager() {
+            return PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(maxTotal)
+                    .setMaxConnPerRoute(maxPerRoute)
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                            .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                            .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                            .build())
+                    .build();
+        }
+
+        @Bean(initMethod = "start", destroyMethod = "shutdown")
+        public IdleConnectionEvictor geminiIdleConnectionEvictor(PoolingHttpClientConnectionManager geminiConnectionManager) {
+            TimeValue idle = TimeValue.ofSeconds(idleEvictSeconds);
+            return new IdleConnectionEvictor(geminiConnectionManager, idle, idle);
+        }
+
+        @Bean
+        public PoolingHttpClientConnectionManagerMetricsBinder geminiPoolMetrics(
+                PoolingHttpClientConnectionManager geminiConnectionManager) {
+            return new PoolingHttpClientConnectionManagerMetricsBinder(geminiConnectionManager, "gemini");
+        }
+
+        @Bean
+        public ClientHttpRequestFactory geminiRequestFactory(PoolingHttpClientConnectionManager geminiConnectionManager,
+                                                             MeterRegistry registry) {
+            Gauge.builder("gemini.http.pool.utilization", geminiConnectionManager,
+                            cm -> (double) cm.getTotalStats().getLeased() / Math.max(1, cm.getMaxTotal()))
+                    .description("Leased / max connections in the Gemini pool")
+                    .register(registry);
+
+            log.info("Gemini HTTP transport: pooled (max-total={}, max-per-route={})", maxTotal, maxPerRoute);
+            return new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                    .setConnectionManager(new InstrumentedConnectionManager(geminiConnectionManager, registry))
+                    .setConnectionManagerShared(true)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMs))
+                            .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                            .build())
+                    .build());
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "gemini.http.client", havingValue = "http2")
+    static class Http2 {
+
+        @Value("${gemini.http.connect-timeout-ms:10000}")
+        private long connectTimeoutMs;
+
+        @Value("${gemini.http.read-timeout-ms:30000}")
+        private long readTimeoutMs;
+
+        @Value("${gemini.http.max-per-route:20}")
+        private int maxPerRoute;
+
+        @Value("${gemini.http.acquire-timeout-ms:5000}")
+        private long acquireTimeoutMs;
+
+        @Bean
+        public ClientHttpRequestFactory geminiRequestFactory(MeterRegistry registry) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+            factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
+            log.info("Gemini HTTP transport: http2 (java.net.http, max-in-flight={})", maxPerRoute);
+            return new InterceptingClientHttpRequestFactory(factory, List.of(
+                    new StreamLimitInterceptor(maxPerRoute, acquireTimeoutMs, registry),
+                    new GzipResponseInterceptor()));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.email.writer.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Negotiates gzip for transports that don't do it themselves.
+ *
+ * Apache HttpClient (the default "pooled" transport) already sends
+ * Accept-Encoding and decompresses transparently. java.net.http.HttpClient
+ * (the "http2" transport) does neither, so without this interceptor Gemini's
+ * multi-kilobyte JSON would always travel uncompressed.
+ */
+public class GzipResponseInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    @NonNull
+    public ClientHttpResponse intercept(@NonNull HttpRequest request, @NonNull byte[] body,
+                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+        request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ClientHttpResponse response = execution.execute(request, body);
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        return "gzip".equalsIgnoreCase(encoding) ? new GunzippedResponse(response) : response;
+    }
+
+    private static final class GunzippedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        GunzippedResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+            // Strip encoding/length — they describe the compressed bytes, not what callers read
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(delegate.getHeaders());
+            copy.remove(HttpHeaders.CONTENT_ENCODING);
+            copy.remove(HttpHeaders.CONTENT_LENGTH);
+            this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException {
+            if (body == null) body = gunzip(delegate.getBody());
+            return body;
+        }
+
+        /**
+         * A 204, or an error response labelled gzip with no content, has no
+         * gzip header to read — GZIPInputStream would throw EOFException and
+         * hide the real status. Treat an empty body as empty.
+         */
+        private static InputStream gunzip(InputStream raw) throws IOException {
+            PushbackInputStream in = new PushbackInputStream(raw, 1);
+            int first = in.read();
+            if (first == -1) return InputStream.nullInputStream();
+            in.unread(first);
+            return new GZIPInputStream(in);
+        }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() { return headers; }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException { return delegate.getStatusCode(); }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException { return delegate.getStatusText(); }
+
+        @Override
+        public void close() { delegate.close(); }
+    }
+}
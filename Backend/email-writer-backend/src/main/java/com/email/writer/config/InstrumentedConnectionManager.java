@@ -0,0 +1,89 @@
+package com.email.writer.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Connection manager decorator that records how long a Gemini call waits to
+ * lease a pooled connection (gemini.http.pool.acquire).
+ *
+ * The Micrometer pool binder only reports pool occupancy (leased / available /
+ * pending). Occupancy alone can't tell "pool is busy" from "callers are stuck
+ * waiting for the pool", and the latter is what shows up as latency.
+ *
+ * Every other operation is delegated unchanged. Closing is left to the owning
+ * PoolingHttpClientConnectionManager bean (the client is built with
+ * setConnectionManagerShared(true)).
+ */
+public class InstrumentedConnectionManager implements HttpClientConnectionManager {
+
+    private final HttpClientConnectionManager delegate;
+    private final Timer acquireTimer;
+
+    public InstrumentedConnectionManager(HttpClientConnectionManager delegate, MeterRegistry registry) {
+        this.delegate     = delegate;
+        this.acquireTimer = Timer.builder("gemini.http.pool.acquire")
+                .description("Time spent waiting to lease a pooled Gemini connection")
+                .register(registry);
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest lease = delegate.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return lease.get(timeout);
+                } finally {
+                    acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return lease.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        delegate.release(endpoint, newState, validDuration);
+    }
+
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+        delegate.connect(endpoint, connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        delegate.upgrade(endpoint, context);
+    }
+
+    @Override
+    public void close(CloseMode closeMode) {
+        // Owned by the PoolingHttpClientConnectionManager bean
+    }
+
+    @Override
+    public void close() {
+        // Owned by the PoolingHttpClientConnectionManager bean
+    }
+}
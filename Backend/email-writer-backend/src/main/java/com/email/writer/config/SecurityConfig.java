@@ -1,22 +1,28 @@
 package com.email.writer.config;
 
 import com.email.writer.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -39,12 +45,58 @@ public class SecurityConfig {
     @Value("${cors.allowed-origins:}")
     private String corsAllowedOrigins;
 
+    @Value("${management.metrics.auth.username:prometheus}")
+    private String metricsUsername;
+
+    @Value("${management.metrics.auth.password:}")
+    private String metricsPassword;
+
+    /**
+     * /actuator/metrics and /actuator/prometheus — HTTP basic with a single
+     * scrape account (management.metrics.auth.*), checked by its own
+     * AuthenticationManager so application users and their JWTs never
+     * grant access. With no password configured every request is refused.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain metricsFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/actuator/metrics", "/actuator/metrics/**", "/actuator/prometheus")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session ->
+                        session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                );
+
+        if (metricsPassword == null || metricsPassword.isBlank()) {
+            http.authorizeHttpRequests(auth -> auth.anyRequest().denyAll());
+            return http.build();
+        }
+
+        DaoAuthenticationProvider scrapeAccount = new DaoAuthenticationProvider();
+        scrapeAccount.setPasswordEncoder(passwordEncoder());
+        scrapeAccount.setUserDetailsService(new InMemoryUserDetailsManager(User.withUsername(metricsUsername)
+                .password(passwordEncoder().encode(metricsPassword))
+                .roles("METRICS")
+                .build()));
+        http
+                .authenticationManager(new ProviderManager(scrapeAccount))
+                .authorizeHttpRequests(auth -> auth.anyRequest().hasRole("METRICS"))
+                .httpBasic(Customizer.withDefaults());
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
+                        // Async re-dispatch of an SSE stream (/api/v1/email/generate-stream)
+                        // or a long-polled job (/api/v1/email/jobs/{id}?wait=...).
+                        // The original request was already authorized; the stateless JWT
+                        // context is not carried over to the ASYNC dispatch.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Auth endpoints — public (v1)
                         .requestMatchers("/api/v1/auth/**").permitAll()
                         // Email test + lightweight ping — public (safe for cron job pings)
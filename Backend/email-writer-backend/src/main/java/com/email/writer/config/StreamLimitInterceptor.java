@@ -0,0 +1,117 @@
+package com.email.writer.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The "http2" transport's stand-in for the pool limits of "pooled".
+ *
+ * java.net.http.HttpClient multiplexes every call over one connection and
+ * has no pool to size, so nothing bounded how many Gemini calls were in
+ * flight and none of the pool metrics existed. This interceptor caps
+ * concurrent requests at max-per-route (one route: Gemini), waits at most
+ * acquire-timeout-ms for a slot, and publishes the same meters as the
+ * pooled transport:
+ *   gemini.http.pool.acquire       time waiting for a slot
+ *   gemini.http.pool.utilization   in-flight / max-per-route
+ *
+ * A slot is held until the response is closed, so a streamed body counts
+ * for as long as it is being read. A timed-out wait throws an IOException,
+ * which RestTemplate turns into ResourceAccessException like a pool timeout.
+ */
+public class StreamLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Semaphore slots;
+    private final int maxInFlight;
+    private final long acquireTimeoutMs;
+    private final Timer acquireTimer;
+
+    public StreamLimitInterceptor(int maxInFlight, long acquireTimeoutMs, MeterRegistry registry) {
+        this.slots            = new Semaphore(maxInFlight, true);
+        this.maxInFlight      = maxInFlight;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.acquireTimer = Timer.builder("gemini.http.pool.acquire")
+                .description("Time spent waiting for a Gemini HTTP/2 stream slot")
+                .register(registry);
+        Gauge.builder("gemini.http.pool.utilization", this,
+                        s -> (double) (s.maxInFlight - s.slots.availablePermits()) / s.maxInFlight)
+                .description("In-flight / max concurrent Gemini requests")
+                .register(registry);
+    }
+
+    @Override
+    @NonNull
+    public ClientHttpResponse intercept(@NonNull HttpRequest request, @NonNull byte[] body,
+                                        @NonNull ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a Gemini stream slot");
+        } finally {
+            acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) throw new IOException("Timed out after " + acquireTimeoutMs + " ms waiting for a Gemini stream slot");
+
+        try {
+            return new ReleasingResponse(execution.execute(request, body), slots);
+        } catch (IOException | RuntimeException ex) {
+            slots.release();
+            throw ex;
+        }
+    }
+
+    private static final class ReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Semaphore slots;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingResponse(ClientHttpResponse delegate, Semaphore slots) {
+            this.delegate = delegate;
+            this.slots    = slots;
+        }
+
+        @Override
+        @NonNull
+        public InputStream getBody() throws IOException { return delegate.getBody(); }
+
+        @Override
+        @NonNull
+        public HttpHeaders getHeaders() { return delegate.getHeaders(); }
+
+        @Override
+        @NonNull
+        public HttpStatusCode getStatusCode() throws IOException { return delegate.getStatusCode(); }
+
+        @Override
+        @NonNull
+        public String getStatusText() throws IOException { return delegate.getStatusText(); }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) slots.release();
+            }
+        }
+    }
+}
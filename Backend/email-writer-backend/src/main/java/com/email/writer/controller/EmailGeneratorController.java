@@ -1,18 +1,32 @@
 package com.email.writer.controller;
 
+import com.email.writer.dto.BatchEmailRequest;
 import com.email.writer.dto.EmailRequest;
+import com.email.writer.exception.ConcurrencyLimitExceededException;
+import com.email.writer.exception.TokenQuotaExceededException;
+import com.email.writer.exception.UpstreamUnavailableException;
 import com.email.writer.service.AuthService;
+import com.email.writer.service.BatchGenerationService;
 import com.email.writer.service.EmailGeneratorService;
 import com.email.writer.service.RateLimiterService;
+import com.email.writer.service.ReplySectionParser;
 import com.email.writer.entity.User;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -25,9 +39,14 @@ import java.util.Map;
 @Slf4j
 public class EmailGeneratorController {
 
-    private final EmailGeneratorService emailGeneratorService;
-    private final AuthService           authService;
-    private final RateLimiterService    rateLimiterService;
+    // Longer than the 30s Gemini read timeout so the upstream error, not the emitter, ends a stuck stream
+    private static final long STREAM_TIMEOUT_MS = 60_000L;
+
+    private final EmailGeneratorService  emailGeneratorService;
+    private final AuthService            authService;
+    private final RateLimiterService     rateLimiterService;
+    private final ThreadPoolTaskExecutor geminiStreamExecutor;
+    private final BatchGenerationService batchGenerationService;
 
     @PostMapping("/generate")
     public ResponseEntity<?> generateEmail(
@@ -49,13 +68,161 @@ public class EmailGeneratorController {
         rateLimiterService.recordRequest(user.getUsername());
         log.info("Email generate for user {} (subject={})", user.getUsername(), request.getSubject());
 
-        Map<String, Object> result = emailGeneratorService.generateMultipleEmailReplies(request, false);
+        Map<String, Object> result = emailGeneratorService.generateMultipleEmailReplies(user.getUsername(), request, false, false);
 
         return ResponseEntity.ok()
                 .header("X-RateLimit-Remaining", String.valueOf(rateLimiterService.remainingMinute(user.getUsername())))
                 .body(result);
     }
 
+    /**
+     * Streamed variant of /generate — Server-Sent Events.
+     *
+     * Events:
+     *   chunk   — {"text": "..."} partial model output, in order
+     *   summary — {"summary": "..."} as soon as the summary section is complete
+     *   reply   — {"index": 1..3, "text": "..."} as soon as each reply is complete
+     *   result  — {"summary": "...", "replies": [...]} same body as /generate
+     *   error   — {"error": "generation_failed", "message": "..."}, or
+     *             upstream_unavailable / too_many_in_flight / token_quota_exceeded
+     *             with "retryAfter" (seconds)
+     *
+     * Same auth and rate limiting as /generate. The return type is Object so
+     * the 429/503 paths can still answer with a plain JSON ResponseEntity.
+     */
+    @PostMapping("/generate-stream")
+    public Object generateEmailStream(
+            @Valid @RequestBody EmailRequest request,
+            Authentication authentication,
+            HttpServletResponse response) {
+
+        User user = authService.getCurrentUser(authentication);
+
+        if (!rateLimiterService.canMakeRequest(user.getUsername())) {
+            log.warn("Rate limit exceeded for user {} on generate-stream", user.getUsername());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of(
+                            "error",   "rate_limit_exceeded",
+                            "message", "You have reached the request limit (8 per minute / 200 per day). Please wait before trying again."
+                    ));
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        try {
+            geminiStreamExecutor.execute(() -> streamReplies(user.getUsername(), request, emitter));
+        } catch (TaskRejectedException ex) {
+            log.warn("Stream executor saturated, rejecting generate-stream for user {}", user.getUsername());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of(
+                            "error",   "server_busy",
+                            "message", "Too many streams in progress. Please try again in a few seconds."
+                    ));
+        }
+
+        rateLimiterService.recordRequest(user.getUsername());
+        log.info("Email generate-stream for user {} (subject={})", user.getUsername(), request.getSubject());
+
+        response.setHeader("X-RateLimit-Remaining",
+                String.valueOf(rateLimiterService.remainingMinute(user.getUsername())));
+        // Stop reverse proxies (nginx, Render) from buffering the stream and killing time-to-first-byte
+        response.setHeader("X-Accel-Buffering", "no");
+        return emitter;
+    }
+
+    private void streamReplies(String username, EmailRequest request, SseEmitter emitter) {
+        try {
+            Map<String, Object> result = emailGeneratorService.streamMultipleEmailReplies(username, request,
+                    chunk -> sendEvent(emitter, "chunk", Map.of("text", chunk)),
+                    new ReplySectionParser.Listener() {
+                        @Override
+                        public void onSummary(String summary) {
+                            sendEvent(emitter, "summary", Map.of("summary", summary));
+                        }
+
+                        @Override
+                        public void onReply(int index, String text) {
+                            sendEvent(emitter, "reply", Map.of("index", index, "text", text));
+                        }
+                    });
+            sendEvent(emitter, "result", result);
+            emitter.complete();
+        } catch (Exception ex) {
+            log.warn("generate-stream failed: {}", ex.getMessage());
+            try {
+                sendEvent(emitter, "error", streamError(ex));
+                emitter.complete();
+            } catch (Exception ignored) {
+                // Client already gone — nothing left to tell it
+                emitter.completeWithError(ex);
+            }
+        }
+    }
+
+    /** Headers are already committed on a stream — the error event carries the 503/429 details instead. */
+    private static Map<String, Object> streamError(Exception ex) {
+        if (ex instanceof UpstreamUnavailableException upstream) {
+            return Map.of("error", "upstream_unavailable", "reason", upstream.getReason(),
+                    "message", upstream.getMessage(), "retryAfter", upstream.getRetryAfterSeconds());
+        }
+        if (ex instanceof ConcurrencyLimitExceededException limit) {
+            return Map.of("error", "too_many_in_flight",
+                    "message", limit.getMessage(), "retryAfter", limit.getRetryAfterSeconds());
+        }
+        if (ex instanceof TokenQuotaExceededException quota) {
+            return Map.of("error", "token_quota_exceeded", "window", quota.getWindow(),
+                    "message", quota.getMessage(), "retryAfter", quota.getRetryAfterSeconds());
+        }
+        return Map.of("error", "generation_failed", "message", "Failed to generate email replies. Please try again.");
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException ex) {
+            // Client disconnected — propagate so the upstream Gemini stream is abandoned
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Answer up to 25 emails in one call. Each item costs one request of the
+     * user's rate limit; items beyond the remaining quota come back as
+     * rate_limit_exceeded instead of failing the whole batch. Results are
+     * per item and in request order — see BatchGenerationService.
+     */
+    @PostMapping("/generate-batch")
+    public ResponseEntity<?> generateBatch(
+            @Valid @RequestBody BatchEmailRequest request,
+            Authentication authentication) {
+
+        User user = authService.getCurrentUser(authentication);
+        List<EmailRequest> items = request.getItems();
+
+        int granted = rateLimiterService.reserve(user.getUsername(), items.size());
+        if (granted == 0) {
+            log.warn("Rate limit exceeded for user {} on generate-batch", user.getUsername());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of(
+                            "error",   "rate_limit_exceeded",
+                            "message", "You have reached the request limit (8 per minute / 200 per day). Please wait before trying again."
+                    ));
+        }
+
+        log.info("Email generate-batch for user {} ({} items, {} within quota)",
+                user.getUsername(), items.size(), granted);
+        List<Map<String, Object>> results = batchGenerationService.generate(user.getUsername(), items, granted);
+        long succeeded = results.stream().filter(r -> "ok".equals(r.get("status"))).count();
+
+        return ResponseEntity.ok()
+                .header("X-RateLimit-Remaining", String.valueOf(rateLimiterService.remainingMinute(user.getUsername())))
+                .body(Map.of(
+                        "results",   results,
+                        "succeeded", succeeded,
+                        "failed",    results.size() - succeeded
+                ));
+    }
+
     @PostMapping("/regenerate")
     public ResponseEntity<?> regenerateEmail(
             @Valid @RequestBody EmailRequest request,
@@ -74,7 +241,7 @@ public class EmailGeneratorController {
 
         rateLimiterService.recordRequest(user.getUsername());
         log.info("Email regenerate for user {} (subject={})", user.getUsername(), request.getSubject());
-        Map<String, Object> result = emailGeneratorService.generateMultipleEmailReplies(request, true);
+        Map<String, Object> result = emailGeneratorService.generateMultipleEmailReplies(user.getUsername(), request, true, true);
         return ResponseEntity.ok(result);
     }
 
@@ -91,10 +258,11 @@ public class EmailGeneratorController {
         }
 
         rateLimiterService.recordRequest(user.getUsername());
-        Map<String, String> response = emailGeneratorService.generateEmailReply(request);
+        Map<String, Object> response = emailGeneratorService.generateEmailReply(user.getUsername(), request);
         return ResponseEntity.ok(Map.of(
-                "summary", response.getOrDefault("summary", ""),
-                "reply",   response.getOrDefault("reply",   "")
+                "summary",      response.getOrDefault("summary", ""),
+                "reply",        response.getOrDefault("reply",   ""),
+                "inputTrimmed", response.getOrDefault("inputTrimmed", false)
         ));
     }
 
@@ -108,7 +276,7 @@ public class EmailGeneratorController {
         return ResponseEntity.ok(Map.of("status", "ok", "service", "email-generator"));
     }
 
-    /** Connectivity test — makes a real Gemini call. Use sparingly. */
+    /** Connectivity test — always a real Gemini call, never answered from the caches. Use sparingly. */
     @GetMapping("/test")
     public ResponseEntity<?> test() {
         EmailRequest testReq = new EmailRequest();
@@ -116,7 +284,7 @@ public class EmailGeneratorController {
         testReq.setEmailContent("Testing connectivity");
         testReq.setTone("professional");
         testReq.setLanguage("en");
-        Map<String, String> response = emailGeneratorService.generateEmailReply(testReq);
+        Map<String, Object> response = emailGeneratorService.generateEmailReplyUncached(testReq);
         return ResponseEntity.ok(Map.of(
                 "status",  "ok",
                 "summary", response.getOrDefault("summary", ""),
@@ -0,0 +1,113 @@
+package com.email.writer.controller;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.entity.GenerationJob;
+import com.email.writer.entity.User;
+import com.email.writer.service.AuthService;
+import com.email.writer.service.GenerationJobService;
+import com.email.writer.service.RateLimiterService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Asynchronous generation — submit now, collect the result later.
+ *
+ *   POST /api/v1/email/jobs?mode=multi|regenerate|single  → 202 + job id
+ *   GET  /api/v1/email/jobs/{id}?wait=0..30               → job status/result
+ *
+ * wait > 0 long-polls: the response is held until the job finishes or the
+ * wait runs out, whichever is first, then the current state is returned.
+ * The held request does not occupy a Tomcat thread (DeferredResult).
+ *
+ * Submitting costs one request of the rate limit, like the synchronous
+ * endpoints; polling is free.
+ */
+@RestController
+@RequestMapping("/api/v1/email/jobs")
+@RequiredArgsConstructor
+@Slf4j
+public class GenerationJobController {
+
+    private static final int MAX_WAIT_SECONDS = 30;
+
+    private final GenerationJobService jobService;
+    private final AuthService          authService;
+    private final RateLimiterService   rateLimiterService;
+
+    @PostMapping
+    public ResponseEntity<?> submit(
+            @Valid @RequestBody EmailRequest request,
+            @RequestParam(defaultValue = "multi") String mode,
+            Authentication authentication) {
+
+        // Checked before the rate limit, so a typo doesn't cost a request
+        if (!GenerationJobService.MODES.contains(mode)) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error",   "validation_error",
+                    "message", "mode must be one of " + String.join(", ", GenerationJobService.MODES) + "."
+            ));
+        }
+
+        User user = authService.getCurrentUser(authentication);
+        if (!rateLimiterService.canMakeRequest(user.getUsername())) {
+            log.warn("Rate limit exceeded for user {} on job submit", user.getUsername());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of(
+                            "error",   "rate_limit_exceeded",
+                            "message", "You have reached the request limit (8 per minute / 200 per day). Please wait before trying again."
+                    ));
+        }
+        rateLimiterService.recordRequest(user.getUsername());
+
+        GenerationJob job = jobService.submit(user.getUsername(), request, mode);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/email/jobs/" + job.getId()))
+                .header("X-RateLimit-Remaining", String.valueOf(rateLimiterService.remainingMinute(user.getUsername())))
+                .body(jobService.view(job));
+    }
+
+    @GetMapping("/{id}")
+    public DeferredResult<ResponseEntity<?>> get(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int wait,
+            Authentication authentication) {
+
+        String username = authService.getCurrentUser(authentication).getUsername();
+        UUID jobId = parseId(id);
+        GenerationJob job = jobService.get(username, jobId);
+
+        int waitSeconds = Math.max(0, Math.min(wait, MAX_WAIT_SECONDS));
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(waitSeconds * 1000L + 1000L);
+        if (job.isFinished() || waitSeconds == 0) {
+            deferred.setResult(ResponseEntity.ok(jobService.view(job)));
+            return deferred;
+        }
+
+        Runnable reply = () -> deferred.setResult(ResponseEntity.ok(jobService.view(jobService.get(username, jobId))));
+        jobService.onFinished(jobId, reply);
+        deferred.onCompletion(() -> jobService.removeWaiter(jobId, reply));
+        deferred.onTimeout(reply);
+
+        // The job may have finished between the first read and registering the waiter
+        if (jobService.get(username, jobId).isFinished()) reply.run();
+        return deferred;
+    }
+
+    private static UUID parseId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException ex) {
+            throw new RuntimeException("Job not found with ID: " + id);
+        }
+    }
+}
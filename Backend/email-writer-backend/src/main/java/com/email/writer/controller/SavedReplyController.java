@@ -4,22 +4,31 @@ import com.email.writer.dto.SaveReplyRequest;
 import com.email.writer.entity.SavedReply;
 import com.email.writer.entity.User;
 import com.email.writer.service.AuthService;
+import com.email.writer.service.ReplyChangeTracker;
 import com.email.writer.service.SavedReplyService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Saved reply CRUD, search, favorites, stats, export — versioned at /api/v1/replies.
+ *
+ * /history, /favorites and /stats are polled by the frontend; they answer
+ * with an ETag from ReplyChangeTracker and return 304 without querying
+ * while the client's If-None-Match is still current. Cache-Control
+ * "private, no-cache" lets the browser keep the body and revalidate on its own.
  */
 @RestController
 @RequestMapping("/api/v1/replies")
@@ -29,6 +38,7 @@ public class SavedReplyController {
 
     private final SavedReplyService savedReplyService;
     private final AuthService       authService;
+    private final ReplyChangeTracker changes;
 
     @PostMapping("/save")
     public ResponseEntity<?> saveReply(
@@ -53,19 +63,22 @@ public class SavedReplyController {
             @RequestParam(required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromDate,
             @RequestParam(required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toDate) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toDate,
+            WebRequest webRequest) {
 
         User user = authService.getCurrentUser(authentication);
+        String etag = changes.etag(user.getId(), page + "|" + size + "|" + tone + "|" + fromDate + "|" + toDate);
+        if (notModified(webRequest, etag)) return null;
 
         if (tone != null || fromDate != null || toDate != null) {
             List<SavedReply> filtered = savedReplyService.getUserRepliesFiltered(
                     user.getId(), tone, fromDate, toDate);
-            return ResponseEntity.ok(Map.of(
+            return revalidated(Map.of(
                     "content", filtered, "total", filtered.size(), "filtered", true));
         }
 
         Page<SavedReply> p = savedReplyService.getUserReplies(user.getId(), page, size);
-        return ResponseEntity.ok(Map.of(
+        return revalidated(Map.of(
                 "content",       p.getContent(),
                 "totalPages",    p.getTotalPages(),
                 "totalElements", p.getTotalElements(),
@@ -94,10 +107,11 @@ public class SavedReplyController {
     }
 
     @GetMapping("/favorites")
-    public ResponseEntity<?> getFavoriteReplies(Authentication authentication) {
+    public ResponseEntity<?> getFavoriteReplies(Authentication authentication, WebRequest webRequest) {
         User user = authService.getCurrentUser(authentication);
+        if (notModified(webRequest, changes.etag(user.getId(), null))) return null;
         List<SavedReply> favorites = savedReplyService.getFavoriteReplies(user.getId());
-        return ResponseEntity.ok(Map.of("favorites", favorites, "total", favorites.size()));
+        return revalidated(Map.of("favorites", favorites, "total", favorites.size()));
     }
 
     @PutMapping("/{id}/favorite")
@@ -117,11 +131,14 @@ public class SavedReplyController {
     }
 
     @GetMapping("/stats")
-    public ResponseEntity<?> getUserStats(Authentication authentication) {
+    public ResponseEntity<?> getUserStats(Authentication authentication, WebRequest webRequest) {
         User user = authService.getCurrentUser(authentication);
+        // recentActivity counts a 30-day window that moves once a minute
+        String minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).toString();
+        if (notModified(webRequest, changes.etag(user.getId(), minute))) return null;
         Map<String, Object> stats = savedReplyService.getUserStatistics(user.getId());
         stats.put("username", user.getUsername());
-        return ResponseEntity.ok(stats);
+        return revalidated(stats);
     }
 
     @GetMapping("/export")
@@ -134,4 +151,18 @@ public class SavedReplyController {
                         "attachment; filename=saved_replies_" + user.getUsername() + ".csv")
                 .body(csvData);
     }
-}
\ No newline at end of file
+
+    /**
+     * True when the client's copy matching {@code etag} is current; the 304
+     * and the ETag header are then already set and the handler returns null.
+     */
+    private boolean notModified(WebRequest webRequest, String etag) {
+        boolean notModified = webRequest.checkNotModified(etag);
+        changes.recordCheck(notModified);
+        return notModified;
+    }
+
+    private static ResponseEntity<?> revalidated(Object body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate()).body(body);
+    }
+}
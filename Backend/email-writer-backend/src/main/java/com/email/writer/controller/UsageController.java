@@ -0,0 +1,34 @@
+package com.email.writer.controller;
+
+import com.email.writer.entity.User;
+import com.email.writer.service.AuthService;
+import com.email.writer.service.TokenUsageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Token usage of the current user — versioned at /api/v1/usage.
+ *
+ *   GET /api/v1/usage?days=1..90 → today's totals, token limits, what is
+ *                                  left in each window, per-day history
+ *
+ * Totals include generations not yet flushed to the database.
+ */
+@RestController
+@RequestMapping("/api/v1/usage")
+@RequiredArgsConstructor
+public class UsageController {
+
+    private final TokenUsageService tokenUsageService;
+    private final AuthService       authService;
+
+    @GetMapping
+    public ResponseEntity<?> getUsage(
+            @RequestParam(defaultValue = "30") int days,
+            Authentication authentication) {
+        User user = authService.getCurrentUser(authentication);
+        return ResponseEntity.ok(tokenUsageService.usage(user.getUsername(), days));
+    }
+}
@@ -0,0 +1,23 @@
+package com.email.writer.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO for POST /api/v1/email/generate-batch — a triage queue of emails
+ * answered in one call. Each item is an ordinary EmailRequest.
+ *
+ * The 25-item cap keeps one batch well inside the 60s a client will wait;
+ * the per-minute rate limit caps it further (see RateLimiterService.reserve).
+ */
+@Data
+public class BatchEmailRequest {
+
+    @NotEmpty(message = "At least one email is required")
+    @Size(max = 25, message = "A batch may contain at most 25 emails")
+    private List<@Valid EmailRequest> items;
+}
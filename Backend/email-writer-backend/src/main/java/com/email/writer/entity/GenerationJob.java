@@ -0,0 +1,108 @@
+package com.email.writer.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * GenerationJob — one queued asynchronous generation (POST /api/v1/email/jobs).
+ *
+ * The row is the queue: workers claim QUEUED rows whose run_after has passed
+ * with SELECT ... FOR UPDATE SKIP LOCKED (GenerationJobRepository), so any
+ * number of workers/instances can drain the table without double-claiming,
+ * and queued jobs survive a restart.
+ *
+ * A claimed job is RUNNING with a lease. A worker that dies (deploy, crash)
+ * never completes it; once lease_until has passed the reaper puts it back
+ * in the queue, or fails it after max attempts.
+ *
+ * The owner is kept as the username rather than a User relation: workers
+ * run outside any transaction and only need the name for the per-user
+ * limits.
+ *
+ * attempts doubles as the run number. A worker completes the job with a
+ * conditional update on (status = RUNNING, attempts = the value it
+ * claimed), so a worker whose lease was already reaped cannot overwrite
+ * the requeued job, its next run, or a worker_lost failure.
+ *
+ * The id is a random UUID so job ids cannot be enumerated.
+ */
+@Entity
+@Table(name = "generation_jobs", indexes = {
+        @Index(name = "idx_generation_job_status_run_after", columnList = "status, run_after"),
+        @Index(name = "idx_generation_job_username", columnList = "username")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString(exclude = {"emailContent", "result"})
+public class GenerationJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Version
+    private Long version;
+
+    @Column(name = "username", nullable = false, length = 100)
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status = Status.QUEUED;
+
+    // multi | regenerate | single
+    @Column(name = "mode", nullable = false, length = 16)
+    private String mode;
+
+    @Column(name = "email_subject", length = 500)
+    private String emailSubject;
+
+    @Column(name = "email_content", columnDefinition = "TEXT")
+    private String emailContent;
+
+    @Column(name = "tone")
+    private String tone;
+
+    @Column(name = "language", length = 10)
+    private String language;
+
+    // JSON — same body the synchronous endpoint would have returned
+    @Column(name = "result", columnDefinition = "TEXT")
+    private String result;
+
+    @Column(name = "error_code", length = 50)
+    private String errorCode;
+
+    @Column(name = "error_message", length = 500)
+    private String errorMessage;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "run_after", nullable = false)
+    private Instant runAfter;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,68 @@
+package com.email.writer.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * TokenUsage — one user's Gemini token consumption on one UTC day.
+ *
+ * Written only by TokenUsageService.flush(), which adds the deltas it has
+ * aggregated in memory since the last flush, so a busy user costs one
+ * UPDATE per flush interval instead of one write per generation.
+ *
+ * Like GenerationJob the owner is kept as the username: the rows are
+ * written from a scheduled task that has no User at hand.
+ *
+ * outputTokens is totalTokenCount − promptTokenCount, so thinking tokens
+ * (billed as output, not part of candidatesTokenCount) are included.
+ */
+@Entity
+@Table(name = "token_usage", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_token_usage_username_day", columnNames = {"username", "usage_date"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class TokenUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "token_usage_seq")
+    @SequenceGenerator(name = "token_usage_seq", sequenceName = "token_usage_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "username", nullable = false, length = 100)
+    private String username;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private long promptTokens;
+
+    @Column(name = "output_tokens", nullable = false)
+    private long outputTokens;
+
+    // Generations that reached Gemini — cache hits and rejected calls are not counted
+    @Column(name = "requests", nullable = false)
+    private long requests;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public TokenUsage(String username, LocalDate usageDate, long promptTokens, long outputTokens, long requests) {
+        this.username     = username;
+        this.usageDate    = usageDate;
+        this.promptTokens = promptTokens;
+        this.outputTokens = outputTokens;
+        this.requests     = requests;
+        this.updatedAt    = Instant.now();
+    }
+
+    public long getTotalTokens() {
+        return promptTokens + outputTokens;
+    }
+}
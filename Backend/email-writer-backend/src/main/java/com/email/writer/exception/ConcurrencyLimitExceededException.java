@@ -0,0 +1,20 @@
+package com.email.writer.exception;
+
+/**
+ * The user already has the maximum number of generations in flight.
+ * Mapped to 429 + Retry-After by GlobalExceptionHandler.
+ *
+ * Distinct from the per-minute/per-day RateLimiterService limits: this one
+ * clears as soon as one of the user's running generations finishes.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
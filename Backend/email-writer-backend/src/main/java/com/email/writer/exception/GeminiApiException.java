@@ -0,0 +1,28 @@
+package com.email.writer.exception;
+
+/**
+ * A Gemini call failed after retries. Mapped to 502 by GlobalExceptionHandler.
+ *
+ * Replaces the bare RuntimeException callGemini used to throw, so callers
+ * and the retry policy can tell a transient upstream failure (429, 5xx,
+ * connection reset) from a permanent one (400, bad key) without parsing
+ * messages. The message is user-safe; upstream detail is only in the cause.
+ */
+public class GeminiApiException extends RuntimeException {
+
+    private final int status;
+    private final boolean transientFailure;
+
+    /**
+     * @param status           HTTP status Gemini answered with, 0 when there was no response
+     * @param transientFailure worth retrying — the same request may succeed later
+     */
+    public GeminiApiException(String message, int status, boolean transientFailure, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+        this.transientFailure = transientFailure;
+    }
+
+    public int getStatus()        { return status; }
+    public boolean isTransient()  { return transientFailure; }
+}
@@ -1,6 +1,7 @@
 package com.email.writer.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -46,6 +47,64 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    /**
+     * Gemini circuit open or concurrency limit reached — fail fast instead of
+     * holding a thread for the 30s read timeout. Message is user-safe.
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<?> handleUpstreamUnavailable(UpstreamUnavailableException ex) {
+        log.warn("Gemini unavailable [{}], retry after {}s", ex.getReason(), ex.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", "upstream_unavailable",
+                        "reason", ex.getReason(),
+                        "message", ex.getMessage()
+                ));
+    }
+
+    /**
+     * Too many generations in flight for one user. Message is user-safe.
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<?> handleConcurrencyLimit(ConcurrencyLimitExceededException ex) {
+        log.warn("Per-user concurrency limit: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", "too_many_in_flight",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    /**
+     * Token quota for the minute or day used up. Message is user-safe.
+     */
+    @ExceptionHandler(TokenQuotaExceededException.class)
+    public ResponseEntity<?> handleTokenQuota(TokenQuotaExceededException ex) {
+        log.warn("Token quota exceeded ({} window), retry after {}s", ex.getWindow(), ex.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", "token_quota_exceeded",
+                        "window", ex.getWindow(),
+                        "message", ex.getMessage()
+                ));
+    }
+
+    /**
+     * Gemini failed after retries. The message is fixed and user-safe; the
+     * upstream status and body are logged only.
+     */
+    @ExceptionHandler(GeminiApiException.class)
+    public ResponseEntity<?> handleGeminiApi(GeminiApiException ex) {
+        log.error("Gemini call failed (status {}, transient {})", ex.getStatus(), ex.isTransient(), ex.getCause());
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of(
+                "error", "generation_failed",
+                "message", ex.getMessage()
+        ));
+    }
+
     /**
      * Known business errors thrown by service/auth layer.
      * These carry user-safe messages (e.g. "Username already exists",
@@ -66,6 +125,7 @@ public class GlobalExceptionHandler {
                         msg.contains("User not authenticated") ||
                         msg.contains("User not found") ||
                         msg.contains("Reply not found") ||
+                        msg.contains("Job not found") ||
                         msg.contains("Access denied:") ||
                         msg.startsWith("Username") ||
                         msg.startsWith("Email");
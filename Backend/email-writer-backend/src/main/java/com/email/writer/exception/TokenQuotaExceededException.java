@@ -0,0 +1,26 @@
+package com.email.writer.exception;
+
+/**
+ * The user has used up their Gemini token quota for the current minute or
+ * UTC day. Mapped to 429 + Retry-After by GlobalExceptionHandler.
+ *
+ * Distinct from the RateLimiterService request limits: those count
+ * requests, this one counts the tokens Gemini reported for them, so a few
+ * very long emails can exhaust it well before the request limit.
+ */
+public class TokenQuotaExceededException extends RuntimeException {
+
+    private final String window;
+    private final long retryAfterSeconds;
+
+    public TokenQuotaExceededException(String message, String window, long retryAfterSeconds) {
+        super(message);
+        this.window = window;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    /** minute or day */
+    public String getWindow() { return window; }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
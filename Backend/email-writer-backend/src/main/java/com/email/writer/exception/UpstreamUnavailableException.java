@@ -0,0 +1,27 @@
+package com.email.writer.exception;
+
+/**
+ * Gemini is not being called right now — the circuit breaker is open or the
+ * adaptive concurrency limit is reached. Mapped to 503 + Retry-After by
+ * GlobalExceptionHandler.
+ *
+ * The message is user-safe by construction; never put upstream error text in it.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final String reason;
+    private final long retryAfterSeconds;
+
+    /**
+     * @param reason            machine-readable cause, e.g. "circuit_open", "overloaded"
+     * @param retryAfterSeconds value for the Retry-After header, at least 1
+     */
+    public UpstreamUnavailableException(String reason, String message, long retryAfterSeconds) {
+        super(message);
+        this.reason = reason;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public String getReason()          { return reason; }
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,75 @@
+package com.email.writer.repository;
+
+import com.email.writer.entity.GenerationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, UUID> {
+
+    // Must run inside a transaction: the row locks are what stop two workers
+    // from claiming the same job, and SKIP LOCKED lets them claim different
+    // jobs concurrently instead of queueing on each other's locks.
+    @Query(value = "SELECT * FROM generation_jobs WHERE status = 'QUEUED' AND run_after <= :now " +
+            "ORDER BY run_after LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<GenerationJob> lockNextQueued(@Param("now") Instant now, @Param("limit") int limit);
+
+    long countByStatus(GenerationJob.Status status);
+
+    @Query("SELECT MIN(j.createdAt) FROM GenerationJob j WHERE j.status = :status")
+    Instant findOldestCreatedAt(@Param("status") GenerationJob.Status status);
+
+    // Expired leases — the worker holding them is gone
+    @Modifying
+    @Query("UPDATE GenerationJob j SET j.status = :queued, j.runAfter = :now, j.leaseUntil = NULL, " +
+            "j.version = j.version + 1 " +
+            "WHERE j.status = :running AND j.leaseUntil < :now AND j.attempts < :maxAttempts")
+    int requeueExpired(@Param("now") Instant now, @Param("maxAttempts") int maxAttempts,
+                       @Param("queued") GenerationJob.Status queued,
+                       @Param("running") GenerationJob.Status running);
+
+    @Modifying
+    @Query("UPDATE GenerationJob j SET j.status = :failed, j.finishedAt = :now, j.leaseUntil = NULL, " +
+            "j.errorCode = 'worker_lost', j.errorMessage = 'The job could not be completed. Please submit it again.', " +
+            "j.version = j.version + 1 " +
+            "WHERE j.status = :running AND j.leaseUntil < :now AND j.attempts >= :maxAttempts")
+    int failExpired(@Param("now") Instant now, @Param("maxAttempts") int maxAttempts,
+                    @Param("failed") GenerationJob.Status failed,
+                    @Param("running") GenerationJob.Status running);
+
+    // Completions are conditional on the run that was claimed: once the reaper
+    // has requeued or failed the job (status changes) or another worker has
+    // claimed it again (attempts changes), a late outcome updates 0 rows.
+    @Modifying
+    @Query("UPDATE GenerationJob j SET j.status = :status, j.result = :result, j.errorCode = :errorCode, " +
+            "j.errorMessage = :errorMessage, j.finishedAt = :now, j.leaseUntil = NULL, j.version = j.version + 1 " +
+            "WHERE j.id = :id AND j.status = :running AND j.attempts = :attempt")
+    int finishRunning(@Param("id") UUID id, @Param("attempt") int attempt,
+                      @Param("status") GenerationJob.Status status,
+                      @Param("result") String result,
+                      @Param("errorCode") String errorCode,
+                      @Param("errorMessage") String errorMessage,
+                      @Param("now") Instant now,
+                      @Param("running") GenerationJob.Status running);
+
+    // refund = 1 gives the claimed attempt back (the run never started)
+    @Modifying
+    @Query("UPDATE GenerationJob j SET j.status = :queued, j.runAfter = :runAfter, j.leaseUntil = NULL, " +
+            "j.attempts = j.attempts - :refund, j.version = j.version + 1 " +
+            "WHERE j.id = :id AND j.status = :running AND j.attempts = :attempt")
+    int requeueRunning(@Param("id") UUID id, @Param("attempt") int attempt,
+                       @Param("runAfter") Instant runAfter, @Param("refund") int refund,
+                       @Param("queued") GenerationJob.Status queued,
+                       @Param("running") GenerationJob.Status running);
+
+    @Modifying
+    @Query("DELETE FROM GenerationJob j WHERE j.finishedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") Instant cutoff);
+}
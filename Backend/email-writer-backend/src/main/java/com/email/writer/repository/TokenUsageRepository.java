@@ -0,0 +1,35 @@
+package com.email.writer.repository;
+
+import com.email.writer.entity.TokenUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TokenUsageRepository extends JpaRepository<TokenUsage, Long> {
+
+    Optional<TokenUsage> findByUsernameAndUsageDate(String username, LocalDate usageDate);
+
+    List<TokenUsage> findByUsernameAndUsageDateGreaterThanEqualOrderByUsageDateDesc(String username, LocalDate from);
+
+    // Increment in the database rather than read-modify-write, so flushes from
+    // several instances add up instead of overwriting each other. Returns 0
+    // when the user has no row for that day yet — the caller then inserts.
+    @Modifying
+    @Transactional
+    @Query("UPDATE TokenUsage u SET u.promptTokens = u.promptTokens + :prompt, " +
+            "u.outputTokens = u.outputTokens + :output, u.requests = u.requests + :requests, " +
+            "u.updatedAt = :now " +
+            "WHERE u.username = :username AND u.usageDate = :day")
+    int addUsage(@Param("username") String username, @Param("day") LocalDate day,
+                 @Param("prompt") long prompt, @Param("output") long output,
+                 @Param("requests") long requests, @Param("now") Instant now);
+}
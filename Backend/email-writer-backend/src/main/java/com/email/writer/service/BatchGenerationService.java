@@ -0,0 +1,162 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.exception.ConcurrencyLimitExceededException;
+import com.email.writer.exception.TokenQuotaExceededException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Answers a batch of emails with bounded parallel fan-out.
+ *
+ * Why this exists: support triages queues of dozens of emails, which meant
+ * dozens of sequential /generate calls, each paying its own round trip,
+ * JWT lookup and rate-limit check. /generate-batch does the auth and the
+ * quota reservation once and runs the items side by side.
+ *
+ * Fan-out: each batch starts at most gemini.batch.parallelism workers on
+ * the shared geminiBatchExecutor; a worker takes the next unclaimed item
+ * until none are left. A batch can therefore never occupy more than
+ * `parallelism` pool threads, and concurrent batches share the pool
+ * instead of queueing behind each other. If the pool is full the request
+ * thread runs a worker itself, so a batch always makes progress.
+ *
+ * parallelism defaults to 2, below the per-user in-flight cap of 3
+ * (GeminiCallGuard), so a batch leaves the user a slot for interactive
+ * /generate calls. Every item goes through the normal cache, coalescer,
+ * guard and retry path.
+ *
+ * Partial failure: results are per item, in request order. An item that
+ * fails, was not granted quota, or is still running at the batch deadline
+ * gets {"status": "error", "error": ..., "message": ...} — the rest of the
+ * batch is still returned.
+ */
+@Service
+@Slf4j
+public class BatchGenerationService {
+
+    @Value("${gemini.batch.parallelism:2}")
+    private int parallelism = 2;
+
+    @Value("${gemini.batch.timeout-seconds:110}")
+    private long timeoutSeconds = 110;
+
+    private final EmailGeneratorService emailGeneratorService;
+    private final ThreadPoolTaskExecutor geminiBatchExecutor;
+
+    public BatchGenerationService(EmailGeneratorService emailGeneratorService,
+                                  ThreadPoolTaskExecutor geminiBatchExecutor) {
+        this.emailGeneratorService = emailGeneratorService;
+        this.geminiBatchExecutor   = geminiBatchExecutor;
+    }
+
+    /**
+     * @param granted how many items (from the front) have rate-limit quota;
+     *                the rest are answered with rate_limit_exceeded
+     * @return one result map per item, in request order
+     */
+    public List<Map<String, Object>> generate(String username, List<EmailRequest> items, int granted) {
+        int runnable = Math.min(granted, items.size());
+        AtomicReferenceArray<Map<String, Object>> results = new AtomicReferenceArray<>(items.size());
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean expired = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        // Checked by the workers too: one running on this thread (pool full)
+        // must stop taking items at the deadline before await() even starts
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        int workers = Math.max(1, Math.min(parallelism, runnable));
+        CountDownLatch done = new CountDownLatch(runnable == 0 ? 0 : workers);
+        Runnable worker = () -> {
+            try {
+                int index;
+                while (!expired.get() && System.nanoTime() - deadline < 0
+                        && (index = next.getAndIncrement()) < runnable) {
+                    results.set(index, generateItem(username, index, items.get(index)));
+                }
+            } finally {
+                done.countDown();
+            }
+        };
+
+        int started = 0;
+        for (; started < workers && runnable > 0; started++) {
+            try {
+                geminiBatchExecutor.execute(worker);
+            } catch (TaskRejectedException saturated) {
+                break;
+            }
+        }
+        // Pool full: do the remaining workers' share on this thread
+        for (int i = started; i < workers && runnable > 0; i++) worker.run();
+
+        try {
+            if (!done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                expired.set(true);
+                log.warn("Batch for user {} hit the {}s deadline", username, timeoutSeconds);
+            }
+        } catch (InterruptedException ex) {
+            expired.set(true);
+            Thread.currentThread().interrupt();
+        }
+
+        List<Map<String, Object>> out = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> result = results.get(i);
+            if (result == null) {
+                result = i < runnable
+                        ? error(i, "timeout", "The batch took too long; this email was not answered.")
+                        : error(i, "rate_limit_exceeded", "Request limit reached before this email could be processed.");
+            }
+            out.add(result);
+        }
+        log.info("Batch for user {}: {} items, {} granted, {} ms", username, items.size(), runnable,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return out;
+    }
+
+    private Map<String, Object> generateItem(String username, int index, EmailRequest item) {
+        try {
+            Map<String, Object> generated = emailGeneratorService.generateMultipleEmailReplies(username, item, false);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", index);
+            result.put("status", "ok");
+            result.put("summary", generated.get("summary"));
+            result.put("replies", generated.get("replies"));
+            result.put("inputTrimmed", generated.get("inputTrimmed"));
+            return result;
+        } catch (UpstreamUnavailableException ex) {
+            return error(index, "upstream_unavailable", ex.getMessage());
+        } catch (ConcurrencyLimitExceededException ex) {
+            return error(index, "too_many_in_flight", ex.getMessage());
+        } catch (TokenQuotaExceededException ex) {
+            return error(index, "token_quota_exceeded", ex.getMessage());
+        } catch (RuntimeException ex) {
+            log.warn("Batch item {} failed for user {}: {}", index, username, ex.getMessage());
+            return error(index, "generation_failed", "Failed to generate email replies. Please try again.");
+        }
+    }
+
+    private static Map<String, Object> error(int index, String error, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("status", "error");
+        result.put("error", error);
+        result.put("message", message);
+        return result;
+    }
+}
@@ -1,17 +1,24 @@
 package com.email.writer.service;
 
 import com.email.writer.dto.EmailRequest;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.email.writer.exception.GeminiApiException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.email.writer.service.InputBudgetPolicy.FittedInput;
+import com.email.writer.service.NearDuplicateCacheService.Fingerprint;
+import com.email.writer.service.PromptLibrary.PromptSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Calls the Gemini API to generate email replies.
@@ -22,65 +29,316 @@ import java.util.*;
  * the full overhead of Project Reactor with zero benefit. RestTemplate is
  * honest about being synchronous, simpler, and has identical behaviour.
  * spring-boot-starter-webflux has been removed from pom.xml.
+ *
+ * The HTTP side now lives behind LlmProvider (GeminiProvider in
+ * production); this class keeps prompts, caching, the call guard, retries
+ * and parsing, so the whole path can run against FakeGeminiServer.
+ *
+ * Every call that reaches the provider is first checked against the user's
+ * token quota and afterwards charged with the usageMetadata it returned
+ * (TokenUsageService); cache hits cost no tokens and skip both.
+ *
+ * Email content first loses quoted history, signatures and disclaimers
+ * (EmailPreprocessor) — before the cache key, so the same message with a
+ * different quoted tail is a hit — then goes through InputBudgetPolicy:
+ * oversized threads are condensed and maxOutputTokens is sized from what
+ * is left of the request's token budget. Every result carries
+ * "inputTrimmed" so clients can tell the user part of the email was cut.
+ *
+ * Interactive generations may ask Gemini for extra candidates and park
+ * them in VariationPoolService, from which the next /regenerate of the
+ * same email is answered without a call.
  */
 @Service
 @Slf4j
 public class EmailGeneratorService {
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper mapper = new ObjectMapper();
+    /** Returned when the Gemini payload cannot be parsed — never cached. */
+    private static final Map<String, Object> PARSE_FAILURE_RESULT = Map.of(
+            "summary", "Failed to parse response. Please try again.",
+            "replies", List.of(
+                    "Thank you for your message. I will review and respond shortly.",
+                    "I appreciate you reaching out. I will consider and respond soon.",
+                    "I've received your email and will follow up soon."
+            )
+    );
+
+    private final GenerationCacheService generationCache;
+    private final NearDuplicateCacheService nearDuplicates;
+    private final VariationPoolService variationPool;
+    private final InFlightRequestCoalescer coalescer;
+    private final PromptLibrary promptLibrary;
+    private final EmailPreprocessor preprocessor;
+    private final InputBudgetPolicy inputBudget;
+    private final GeminiCallGuard callGuard;
+    private final GeminiScheduler scheduler;
+    private final GeminiRetryPolicy retryPolicy;
+    private final MeterRegistry meterRegistry;
+    private final LlmProvider provider;
+    private final TokenUsageService tokenUsage;
+    private final Timer streamFirstChunkTimer;
+
+    public EmailGeneratorService(GenerationCacheService generationCache,
+                                 NearDuplicateCacheService nearDuplicates,
+                                 VariationPoolService variationPool,
+                                 InFlightRequestCoalescer coalescer,
+                                 PromptLibrary promptLibrary,
+                                 EmailPreprocessor preprocessor,
+                                 InputBudgetPolicy inputBudget,
+                                 GeminiCallGuard callGuard,
+                                 GeminiScheduler scheduler,
+                                 GeminiRetryPolicy retryPolicy,
+                                 LlmProvider provider,
+                                 TokenUsageService tokenUsage,
+                                 MeterRegistry meterRegistry) {
+        this.generationCache = generationCache;
+        this.nearDuplicates  = nearDuplicates;
+        this.variationPool   = variationPool;
+        this.coalescer       = coalescer;
+        this.promptLibrary   = promptLibrary;
+        this.preprocessor    = preprocessor;
+        this.inputBudget     = inputBudget;
+        this.callGuard       = callGuard;
+        this.scheduler       = scheduler;
+        this.retryPolicy     = retryPolicy;
+        this.provider        = provider;
+        this.tokenUsage      = tokenUsage;
+        this.meterRegistry   = meterRegistry;
+        this.streamFirstChunkTimer = Timer.builder("gemini.stream.first_chunk")
+                .description("Time from starting a streamed generation to the first text chunk")
+                .register(meterRegistry);
+    }
+
+    /** generateMultipleEmailReplies without prefetching variants. */
+    public Map<String, Object> generateMultipleEmailReplies(String username, EmailRequest original,
+                                                            boolean regenerate) {
+        return generateMultipleEmailReplies(username, original, regenerate, false);
+    }
 
-    @Value("${gemini.api.url}")
-    private String geminiApiUrl;
+    /**
+     * Generate three reply variations plus a short summary.
+     *
+     * Served from GenerationCacheService when the same normalized email was
+     * generated recently, or from NearDuplicateCacheService when a templated
+     * near-copy of it was; concurrent identical requests share one Gemini call
+     * via InFlightRequestCoalescer. regenerate=true always goes to Gemini and
+     * never touches the cache or joins another request; it is answered from
+     * the user's VariationPoolService pool when that holds an unseen variant
+     * of this email.
+     *
+     * Cache hits are free; anything that may reach Gemini holds one of the
+     * user's in-flight slots (GeminiCallGuard) until it returns.
+     *
+     * @param username         owner of the per-user in-flight slot, token quota and
+     *                         variation pool; null = no cap, no pool
+     * @param prefetchVariants ask Gemini for extra candidates and pool them for
+     *                         the user's next regenerate of this email
+     */
+    public Map<String, Object> generateMultipleEmailReplies(String username, EmailRequest original,
+                                                            boolean regenerate, boolean prefetchVariants) {
+        final EmailRequest request = preprocessed(original);
+        final String language = resolveLanguage(request.getLanguage());
+        final PromptSet prompts = promptLibrary.select(request.getEmailContent());
 
-    @Value("${gemini.api.endpoint}")
-    private String geminiApiEndpoint;
+        String poolKey = GenerationCacheService.key("multi", prompts.version(), request, language);
+        if (regenerate) {
+            Map<String, Object> pooled = variationPool.take(username, poolKey);
+            if (pooled != null) {
+                log.debug("Variation pool hit (regenerate, prompt {})", prompts.version());
+                return pooled;
+            }
+        }
+        String cacheKey = regenerate ? null : poolKey;
+        Map<String, Object> cached = generationCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Generation cache hit (multi, prompt {})", prompts.version());
+            return cached;
+        }
+        Fingerprint fingerprint = regenerate ? null
+                : nearDuplicates.fingerprint("multi", prompts.version(), request, language);
+        Map<String, Object> similar = similarCached(fingerprint, cacheKey);
+        if (similar != null) {
+            log.debug("Near-duplicate cache hit (multi, prompt {})", prompts.version());
+            return similar;
+        }
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
+        tokenUsage.checkQuota(username);
+        try (GeminiCallGuard.Permit ignored = callGuard.acquireUserSlot(username)) {
+            return coalescer.execute(cacheKey, () -> {
+                FittedInput input = inputBudget.fit(request.getEmailContent());
+                int extras = prefetchVariants && username != null ? variationPool.extraCandidates() : 0;
+                List<Map<String, Object>> variants = new ArrayList<>(extras);
+                Map<String, Object> replies = fetchMultipleReplies(username, withContent(request, input), language,
+                        regenerate, prompts, extras, variants);
+                Map<String, Object> result = withInputTrimmed(replies, input.trimmed());
+                if (replies != PARSE_FAILURE_RESULT) {
+                    generationCache.put(cacheKey, result);
+                    nearDuplicates.put(fingerprint, result);
+                }
+                if (!variants.isEmpty()) {
+                    variants.replaceAll(variant -> withInputTrimmed(variant, input.trimmed()));
+                    variationPool.offer(username, poolKey, variants);
+                }
+                return result;
+            });
+        }
+    }
 
-    // RestTemplate is now injected — configured as a bean in AppConfig
-    // with a 30-second read timeout so Gemini calls cannot hang forever.
-    public EmailGeneratorService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    /**
+     * @param extras   additional candidates to ask Gemini for
+     * @param variants receives those that parsed without any padding
+     */
+    private Map<String, Object> fetchMultipleReplies(String username, EmailRequest request, String language,
+                                                     boolean regenerate, PromptSet prompts,
+                                                     int extras, List<Map<String, Object>> variants) {
+        String mode = regenerate ? "regenerate" : "multi";
+        String prompt = buildMultipleRepliesPrompt(prompts.multi(), request, language, regenerate);
+        GenerationConfig config = inputBudget.sizeOutput(
+                regenerate ? GenerationConfig.MULTI_REGENERATE : GenerationConfig.MULTI, prompt)
+                .withCandidateCount(1 + extras);
+        GeminiResponse response = callGemini(username, config, prompt, mode, prompts.version());
+        for (String alternative : response.alternatives()) {
+            ReplySectionParser parser = new ReplySectionParser(null);
+            Map<String, Object> variant = parser.parseComplete(alternative.trim());
+            if (parser.paddedReplies() == 0) variants.add(variant);
+        }
+        // No text at all (e.g. finishReason SAFETY) — don't cache a page of fallbacks
+        if (response.text().isBlank()) {
+            countParseFallback(mode, "failed");
+            return PARSE_FAILURE_RESULT;
+        }
+        return parseMultipleRepliesContent(mode, response.text().trim());
     }
 
-    /** Generate three reply variations plus a short summary. */
-    public Map<String, Object> generateMultipleEmailReplies(EmailRequest request, boolean regenerate) {
+    /**
+     * Streamed variant of generateMultipleEmailReplies(request, false).
+     *
+     * Uses Gemini's streamGenerateContent (SSE) and hands every partial text
+     * chunk to {@code onChunk} as soon as it arrives, so the client can start
+     * rendering long before the full response is done. The chunks are also
+     * fed through a ReplySectionParser, which reports the summary and each
+     * reply to {@code onSection} the moment that section is complete.
+     *
+     * A cache hit sends no chunks; its summary and replies are replayed to
+     * {@code onSection} so clients see the same section events either way.
+     *
+     * @param onChunk   receives raw text fragments in order; throwing from it
+     *                  (e.g. client disconnected) aborts the upstream call
+     * @param onSection receives completed sections, same abort semantics
+     * @return the parsed summary + replies once the stream has completed
+     */
+    public Map<String, Object> streamMultipleEmailReplies(String username, EmailRequest original,
+                                                          Consumer<String> onChunk,
+                                                          ReplySectionParser.Listener onSection) {
+        final EmailRequest request = preprocessed(original);
         final String language = resolveLanguage(request.getLanguage());
-        String prompt = buildMultipleRepliesPrompt(request, language, regenerate);
+        final PromptSet prompts = promptLibrary.select(request.getEmailContent());
 
-        Map<String, Object> requestBody = Map.of(
-                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
-                "generationConfig", Map.of(
-                        "temperature",     regenerate ? 0.9 : 0.75,
-                        "maxOutputTokens", 2048,
-                        "topP",            0.95,
-                        "topK",            40
-                )
-        );
+        String cacheKey = GenerationCacheService.key("multi", prompts.version(), request, language);
+        Map<String, Object> cached = generationCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Generation cache hit (stream, prompt {})", prompts.version());
+            return replay(cached, onSection);
+        }
+        Fingerprint fingerprint = nearDuplicates.fingerprint("multi", prompts.version(), request, language);
+        Map<String, Object> similar = similarCached(fingerprint, cacheKey);
+        if (similar != null) {
+            log.debug("Near-duplicate cache hit (stream, prompt {})", prompts.version());
+            return replay(similar, onSection);
+        }
+
+        tokenUsage.checkQuota(username);
+        FittedInput input = inputBudget.fit(request.getEmailContent());
+        String prompt = buildMultipleRepliesPrompt(prompts.multi(), withContent(request, input), language, false);
+        GenerationConfig config = inputBudget.sizeOutput(GenerationConfig.MULTI, prompt);
+        ReplySectionParser parser = new ReplySectionParser(onSection);
+        boolean[] first = {true};
+        boolean[] gotText = {false};
+        long start = System.nanoTime();
+
+        GeminiResponse last;
+        try (GeminiCallGuard.Permit ignored = callGuard.acquireUserSlot(username)) {
+            last = streamGemini(username, config, prompt, prompts.version(), chunk -> {
+                if (first[0]) {
+                    streamFirstChunkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    first[0] = false;
+                }
+                if (!chunk.isBlank()) gotText[0] = true;
+                onChunk.accept(chunk);
+                parser.accept(chunk);
+            });
+        }
+
+        Map<String, Object> result = withInputTrimmed(parser.finish(), input.trimmed());
+        // Nothing usable came back — return the padding, but don't serve it again from the caches
+        if (!gotText[0] || parser.paddedReplies() == ReplySectionParser.MAX_REPLIES) {
+            countParseFallback("stream", "failed");
+            return result;
+        }
+        if (parser.paddedReplies() > 0) countParseFallback("stream", "padded");
+        generationCache.put(cacheKey, result);
+        nearDuplicates.put(fingerprint, result);
+        return result;
+    }
 
-        String raw = callGemini(requestBody);
-        return parseMultipleRepliesResponse(raw);
+    /** Hand a cached result to the section listener, as if it had just been streamed. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> replay(Map<String, Object> cached, ReplySectionParser.Listener onSection) {
+        onSection.onSummary((String) cached.get("summary"));
+        List<String> replies = (List<String>) cached.get("replies");
+        for (int i = 0; i < replies.size(); i++) onSection.onReply(i + 1, replies.get(i));
+        return cached;
     }
 
     /** Generate a single email reply with summary (backwards-compat). */
-    public Map<String, String> generateEmailReply(EmailRequest request) {
+    public Map<String, Object> generateEmailReply(String username, EmailRequest original) {
+        final EmailRequest request = preprocessed(original);
         final String language = resolveLanguage(request.getLanguage());
-        String prompt = buildSingleReplyPrompt(request, language);
+        final PromptSet prompts = promptLibrary.select(request.getEmailContent());
 
-        Map<String, Object> requestBody = Map.of(
-                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
-                "generationConfig", Map.of(
-                        "temperature",     0.7,
-                        "maxOutputTokens", 1024,
-                        "topP",            0.8,
-                        "topK",            40
-                )
-        );
+        String cacheKey = GenerationCacheService.key("single", prompts.version(), request, language);
+        Map<String, Object> cached = generationCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Generation cache hit (single, prompt {})", prompts.version());
+            return cached;
+        }
+        Fingerprint fingerprint = nearDuplicates.fingerprint("single", prompts.version(), request, language);
+        Map<String, Object> similar = similarCached(fingerprint, cacheKey);
+        if (similar != null) {
+            log.debug("Near-duplicate cache hit (single, prompt {})", prompts.version());
+            return similar;
+        }
 
-        String raw = callGemini(requestBody);
-        String response = extractResponseContent(raw);
+        tokenUsage.checkQuota(username);
+        try (GeminiCallGuard.Permit ignored = callGuard.acquireUserSlot(username)) {
+            return coalescer.execute(cacheKey, () -> {
+                Map<String, Object> result = fetchSingleReply(username, request, language, prompts);
+                if (!((String) result.get("reply")).isBlank()) {
+                    generationCache.put(cacheKey, result);
+                    nearDuplicates.put(fingerprint, result);
+                }
+                return result;
+            });
+        }
+    }
+
+    /**
+     * generateEmailReply straight to Gemini — no caches, no coalescing — for
+     * the /test connectivity check, which must fail while Gemini is down.
+     */
+    public Map<String, Object> generateEmailReplyUncached(EmailRequest original) {
+        final EmailRequest request = preprocessed(original);
+        return fetchSingleReply(null, request, resolveLanguage(request.getLanguage()),
+                promptLibrary.select(request.getEmailContent()));
+    }
+
+    private Map<String, Object> fetchSingleReply(String username, EmailRequest request, String language,
+                                                 PromptSet prompts) {
+        FittedInput input = inputBudget.fit(request.getEmailContent());
+        String prompt = prompts.single().render(promptValues(withContent(request, input), language));
+        GenerationConfig config = inputBudget.sizeOutput(GenerationConfig.SINGLE, prompt);
+
+        String response = callGemini(username, config, prompt, "single", prompts.version()).text().trim();
 
         String summary = "";
         String reply   = "";
@@ -93,152 +351,238 @@ public class EmailGeneratorService {
             }
         }
 
+        if (response.isBlank()) countParseFallback("single", "failed");
+        else if (summary.isEmpty() || reply.isEmpty()) countParseFallback("single", "padded");
         if (summary.isEmpty()) summary = "Summary not available";
         if (reply.isEmpty())   reply   = response;
 
-        return Map.of("summary", summary, "reply", reply);
+        return Map.of("summary", summary, "reply", reply, "inputTrimmed", input.trimmed());
     }
 
-    /* ── HTTP call ────────────────────────────────────────────────────── */
-
-    private String callGemini(Map<String, Object> requestBody) {
-        String url = geminiApiUrl + geminiApiEndpoint + "?key=" + geminiApiKey;
+    /* ── Provider call ─────────────────────────────────────────────── */
+
+    /**
+     * One complete generation through the LlmProvider.
+     *
+     * Each attempt first waits for its turn on the shared key's quota
+     * (GeminiScheduler), then runs inside GeminiCallGuard, which sees the raw
+     * RestTemplate exception to tell upstream trouble from client errors;
+     * GeminiRetryPolicy retries transient failures and may hedge slow calls.
+     * Guard rejections (circuit open, limit reached) pass through as
+     * UpstreamUnavailableException so the caller gets a 503 + Retry-After;
+     * anything else ends as GeminiApiException (502). Every outcome is
+     * recorded in gemini.generation; the tokens of a successful call are
+     * charged to {@code username}.
+     *
+     * @param mode          metric/log tag: multi, regenerate or single
+     * @param promptVersion metric/log tag: version of the prompt
+     */
+    private GeminiResponse callGemini(String username, GenerationConfig config, String prompt, String mode,
+                                      String promptVersion) {
+        long start = System.nanoTime();
+        long estimatedTokens = estimatedTokens(config, prompt);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            GeminiResponse response = retryPolicy.execute(mode,
+                    () -> attempt(username, estimatedTokens, () -> provider.generate(config, prompt), true), true);
+            recordGeneration(mode, promptVersion, start, response);
+            tokenUsage.record(username, response);
+            return response;
+        } catch (UpstreamUnavailableException ex) {
+            recordFailure(mode, promptVersion, start, ex.getReason());
+            throw ex;
+        } catch (Exception ex) {
+            log.error("{} call failed ({}, prompt {}): {}", provider.name(), mode, promptVersion, ex.getMessage());
+            recordFailure(mode, promptVersion, start, "error");
+            throw GeminiRetryPolicy.toApiException(ex);
+        }
+    }
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    /**
+     * Streamed generation through the LlmProvider; every text fragment goes
+     * to {@code onText}.
+     *
+     * Transient failures are retried only until the first chunk has been
+     * handed to {@code onText} — a stream that has started cannot be replayed.
+     *
+     * @return the last event that carried finishReason or usageMetadata
+     *         (Gemini sends them with the final chunk)
+     */
+    private GeminiResponse streamGemini(String username, GenerationConfig config, String prompt,
+                                        String promptVersion, Consumer<String> onText) {
+        long start = System.nanoTime();
+        long estimatedTokens = estimatedTokens(config, prompt);
+        boolean[] started = {false};
+        Consumer<String> tracking = text -> {
+            started[0] = true;
+            onText.accept(text);
+        };
 
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            if (response.getStatusCode().is2xxSuccessful()) {
-                return response.getBody();
-            }
-            throw new RuntimeException("Gemini API returned status " + response.getStatusCode());
+            GeminiResponse last = retryPolicy.execute("stream", () -> {
+                try {
+                    // Stream duration is the length of the answer, not upstream latency — not sampled
+                    return attempt(username, estimatedTokens, () -> provider.stream(config, prompt, tracking), false);
+                } catch (RuntimeException ex) {
+                    if (started[0] && !(ex instanceof UpstreamUnavailableException)) {
+                        throw new GeminiApiException(GeminiRetryPolicy.FAILURE_MESSAGE, 0, false, ex);
+                    }
+                    throw ex;
+                }
+            }, false);
+            recordGeneration("stream", promptVersion, start, last);
+            tokenUsage.record(username, last);
+            return last;
+        } catch (UpstreamUnavailableException ex) {
+            recordFailure("stream", promptVersion, start, ex.getReason());
+            throw ex;
         } catch (Exception ex) {
-            log.error("Gemini API call failed: {}", ex.getMessage());
-            throw new RuntimeException("Failed to generate email replies. Please try again.", ex);
+            log.error("{} streaming call failed: {}", provider.name(), ex.getMessage());
+            recordFailure("stream", promptVersion, start, "error");
+            throw GeminiRetryPolicy.toApiException(ex);
         }
     }
 
-    /* ── Prompt builders ─────────────────────────────────────────────── */
+    /**
+     * One attempt: refused at once if the guard would refuse it, otherwise
+     * queued for the key's quota (GeminiScheduler) and then run through the
+     * guard.
+     */
+    private GeminiResponse attempt(String username, long estimatedTokens, Supplier<GeminiResponse> upstream,
+                                   boolean sampleLatency) {
+        callGuard.checkAdmission();
+        return scheduler.call(username, estimatedTokens, () -> callGuard.call(upstream, sampleLatency));
+    }
 
-    private String buildMultipleRepliesPrompt(EmailRequest request, String language, boolean regenerate) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("You are an expert email assistant. You must generate exactly 3 different professional email replies and 1 summary.\n");
-        prompt.append("IMPORTANT: Generate the reply in ").append(language).append(" language.\n\n");
+    /** Most a call can cost: the prompt estimate plus every candidate at maxOutputTokens. */
+    private static long estimatedTokens(GenerationConfig config, String prompt) {
+        return TokenEstimator.estimate(prompt) + (long) config.maxOutputTokens() * config.candidateCount();
+    }
 
-        if (request.getTone() != null && !request.getTone().isBlank()) {
-            prompt.append("Use a ").append(request.getTone()).append(" tone for all replies.\n\n");
-        }
+    /* ── Prompt builders ─────────────────────────────────────────────── */
 
+    // Package-private for EmailGenerationBenchmark
+    String buildMultipleRepliesPrompt(PromptTemplate template, EmailRequest request,
+                                      String language, boolean regenerate) {
+        Map<String, String> values = promptValues(request, language);
         if (regenerate) {
-            prompt.append("IMPORTANT: Generate completely new variations different from previous ones. Timestamp: ")
-                    .append(Instant.now()).append("\n\n");
-        }
-
-        prompt.append("Original Email Subject: ").append(request.getSubject()).append("\n");
-        prompt.append("Original Email Content:\n").append(request.getEmailContent()).append("\n\n");
-        prompt.append("You MUST follow this EXACT format:\n\n");
-        prompt.append("SUMMARY: [Brief 1-2 sentence summary]\n\n");
-        prompt.append("REPLY 1: [First variation - 3-5 sentences]\n\n");
-        prompt.append("REPLY 2: [Second variation - 3-5 sentences]\n\n");
-        prompt.append("REPLY 3: [Third variation - 3-5 sentences]\n\n");
-        prompt.append("CRITICAL RULES:\n");
-        prompt.append("- Start each section with exact labels: SUMMARY:, REPLY 1:, REPLY 2:, REPLY 3:\n");
-        prompt.append("- Make each reply distinctly different in approach or style\n");
-        prompt.append("- Do not include email signatures or greetings — just body content\n");
-        return prompt.toString();
-    }
-
-    private String buildSingleReplyPrompt(EmailRequest request, String language) {
-        return String.format(
-                "You are a professional email assistant. Provide a short Summary and a single Reply body in %s.\n"
-                        + "Summary: (1-2 sentences)\nReply: (3-5 sentences, body only)\n\n"
-                        + "EMAIL:\nSubject: %s\nContent: %s\nTone: %s\n",
-                language,
-                request.getSubject()      == null ? "" : request.getSubject(),
-                request.getEmailContent() == null ? "" : request.getEmailContent(),
-                request.getTone()         == null ? "professional" : request.getTone()
-        );
+            values.put("regenerate", "true");
+            values.put("timestamp",  Instant.now().toString());
+        }
+        return template.render(values);
     }
 
-    /* ── Response parsing ────────────────────────────────────────────── */
+    /** Near-duplicate of a request the exact cache missed; stored under the exact key too, so a repeat is cheaper. */
+    private <T> T similarCached(Fingerprint fingerprint, String cacheKey) {
+        T similar = nearDuplicates.get(fingerprint);
+        if (similar != null) generationCache.put(cacheKey, similar);
+        return similar;
+    }
 
-    private Map<String, Object> parseMultipleRepliesResponse(String raw) {
-        try {
-            String content = extractResponseContent(raw);
-            String summary = "";
-            List<String> replies = new ArrayList<>();
-            StringBuilder current = new StringBuilder();
-            String mode = "none";
-
-            for (String line : content.split("\n")) {
-                line = line.trim();
-                if (line.toLowerCase().startsWith("summary:")) {
-                    if (current.length() > 0 && mode.startsWith("reply")) {
-                        replies.add(current.toString().trim()); current.setLength(0);
-                    }
-                    summary = line.replaceFirst("(?i)summary:\\s*", "").trim();
-                    mode = "summary";
-                } else if (line.toLowerCase().matches("reply\\s*[123]:.*")) {
-                    if (current.length() > 0 && mode.startsWith("reply")) {
-                        replies.add(current.toString().trim()); current.setLength(0);
-                    }
-                    mode = "reply";
-                    String text = line.replaceFirst("(?i)reply\\s*[123]:\\s*", "").trim();
-                    if (!text.isEmpty()) current.append(text);
-                } else if (!line.isEmpty()) {
-                    if (mode.equals("summary")) {
-                        if (!summary.isEmpty()) summary += " ";
-                        summary += line;
-                    } else if (mode.startsWith("reply")) {
-                        if (current.length() > 0) current.append(" ");
-                        current.append(line);
-                    }
-                }
-            }
+    /** {@code request} without quoted history, signatures and disclaimers. */
+    private EmailRequest preprocessed(EmailRequest request) {
+        String content = preprocessor.strip(request.getEmailContent());
+        return content == request.getEmailContent() ? request : copyWithContent(request, content);
+    }
 
-            if (current.length() > 0 && mode.startsWith("reply")) replies.add(current.toString().trim());
-            while (replies.size() < 3) replies.add("Thank you for your message. I will review and respond shortly.");
-            if (replies.size() > 3)  replies = replies.subList(0, 3);
-            if (summary.isEmpty())   summary = "Generated professional email responses based on the provided content.";
-            summary = summary.trim();
+    /** {@code request} with the email content the input budget let through. */
+    private static EmailRequest withContent(EmailRequest request, FittedInput input) {
+        return input.trimmed() ? copyWithContent(request, input.content()) : request;
+    }
 
-            return Map.of("replies", replies, "summary", summary);
+    private static EmailRequest copyWithContent(EmailRequest request, String content) {
+        EmailRequest copy = new EmailRequest();
+        copy.setSubject(request.getSubject());
+        copy.setEmailContent(content);
+        copy.setTone(request.getTone());
+        copy.setLanguage(request.getLanguage());
+        return copy;
+    }
 
-        } catch (Exception ex) {
-            log.error("Failed to parse Gemini response: {}", ex.getMessage());
-            return Map.of(
-                    "summary", "Failed to parse response. Please try again.",
-                    "replies", List.of(
-                            "Thank you for your message. I will review and respond shortly.",
-                            "I appreciate you reaching out. I will consider and respond soon.",
-                            "I've received your email and will follow up soon."
-                    )
-            );
+    /** Slot values shared by every template — see PromptLibrary for the allowed names. */
+    private static Map<String, String> promptValues(EmailRequest request, String language) {
+        Map<String, String> values = new HashMap<>();
+        values.put("language", language);
+        values.put("tone",     request.getTone());
+        values.put("subject",  request.getSubject());
+        values.put("content",  request.getEmailContent());
+        return values;
+    }
+
+    /* ── Metrics ─────────────────────────────────────────────────────── */
+
+    /**
+     * gemini.generation{mode, prompt_version, outcome}: outcome is success or
+     * truncated here, circuit_open / overloaded / error from recordFailure.
+     * Histogram buckets are switched on in application.properties.
+     */
+    private void recordGeneration(String mode, String promptVersion, long startNanos, GeminiResponse response) {
+        long elapsed = System.nanoTime() - startNanos;
+        generationTimer(mode, promptVersion, response.truncated() ? "truncated" : "success")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        Counter.builder("gemini.tokens").tag("prompt_version", promptVersion).tag("type", "prompt")
+                .register(meterRegistry).increment(response.promptTokens());
+        Counter.builder("gemini.tokens").tag("prompt_version", promptVersion).tag("type", "output")
+                .register(meterRegistry).increment(response.candidatesTokens());
+
+        if (response.truncated()) {
+            log.warn("Gemini {} (prompt {}) finished with reason {} ({} output tokens)",
+                    mode, promptVersion, response.finishReason(), response.candidatesTokens());
         }
+        log.debug("Gemini {} (prompt {}) took {} ms, tokens prompt={} output={}",
+                mode, promptVersion, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                response.promptTokens(), response.candidatesTokens());
+    }
+
+    private void recordFailure(String mode, String promptVersion, long startNanos, String outcome) {
+        generationTimer(mode, promptVersion, outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer generationTimer(String mode, String promptVersion, String outcome) {
+        return Timer.builder("gemini.generation")
+                .description("Gemini generations by mode, prompt version and outcome")
+                .tag("mode", mode)
+                .tag("prompt_version", promptVersion)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
-    private String extractResponseContent(String raw) {
-        if (raw == null || raw.isBlank()) return "";
+    /**
+     * gemini.parse.fallback{mode, kind}: "padded" when the answer was missing
+     * sections and canned text filled them in, "failed" when nothing usable
+     * came back and the whole PARSE_FAILURE_RESULT was returned.
+     */
+    private void countParseFallback(String mode, String kind) {
+        Counter.builder("gemini.parse.fallback")
+                .description("Generations answered partly or wholly with canned fallback text")
+                .tag("mode", mode)
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /* ── Response parsing ────────────────────────────────────────────── */
+
+    private Map<String, Object> parseMultipleRepliesContent(String mode, String content) {
         try {
-            JsonNode root = mapper.readTree(raw);
-            if (root.has("candidates")) {
-                JsonNode parts = root.path("candidates").get(0)
-                        .path("content").path("parts");
-                if (parts.isArray() && parts.size() > 0) {
-                    JsonNode textNode = parts.get(0).path("text");
-                    if (!textNode.isMissingNode()) return textNode.asText().trim();
-                }
-            }
-            return root.has("output") ? root.path("output").asText().trim() : raw;
+            ReplySectionParser parser = new ReplySectionParser(null);
+            Map<String, Object> result = parser.parseComplete(content);
+            if (parser.paddedReplies() > 0) countParseFallback(mode, "padded");
+            return result;
         } catch (Exception ex) {
-            log.warn("Unable to parse Gemini JSON response, using raw string");
-            return raw;
+            log.error("Failed to parse Gemini response: {}", ex.getMessage());
+            countParseFallback(mode, "failed");
+            return PARSE_FAILURE_RESULT;
         }
     }
 
+    /** Unmodifiable, as the caches and the variation pool share it between requests. */
+    private static Map<String, Object> withInputTrimmed(Map<String, Object> result, boolean trimmed) {
+        Map<String, Object> flagged = new LinkedHashMap<>(result);
+        flagged.put("inputTrimmed", trimmed);
+        return Collections.unmodifiableMap(flagged);
+    }
+
     private String resolveLanguage(String language) {
         return (language == null || language.isBlank()) ? "en" : language;
     }
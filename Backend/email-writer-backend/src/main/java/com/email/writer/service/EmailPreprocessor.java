@@ -0,0 +1,358 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Strips quoted history, forwarded-message headers, signatures and legal
+ * disclaimers from pasted emails before the prompt is built.
+ *
+ * Why this exists: most emails users paste are a reply on top of the whole
+ * thread — "On … wrote:" with "> " quoted text in Gmail, a
+ * "From: / Sent: / To: / Subject:" block and the older message in Outlook —
+ * plus a signature and a confidentiality notice. All of it went to Gemini,
+ * where it cost tokens and latency and sometimes got replied to instead of
+ * the newest message.
+ *
+ * One pass over the lines, no regex and no copies until the output is
+ * written, so the cost is linear in the email:
+ *   quoted history  — cut from the first attribution line ("On … wrote:",
+ *                     also wrapped over two lines), "-----Original Message-----",
+ *                     or Outlook header block (From: followed by Sent:/Date:
+ *                     and To:/Subject: within four lines) to the end; a trailing run of
+ *                     "> " lines is cut too. Quoted lines interleaved with
+ *                     answers (inline replies) are kept — the answers need them.
+ *   forwarded       — the "Forwarded message" / "Begin forwarded message:"
+ *                     marker and its From/Date/Subject/To/Cc lines are
+ *                     dropped; the forwarded text itself is what the user
+ *                     wants answered and stays.
+ *   signature       — everything after an RFC 3676 "-- " delimiter, and
+ *                     "Sent from my …" / "Get Outlook for …" lines.
+ *   disclaimer      — the trailing paragraphs, after the last body paragraph
+ *                     or closing, that open like a confidentiality notice
+ *                     ("CONFIDENTIALITY NOTICE", "If you are not the intended
+ *                     recipient…", …). Openings that also start ordinary
+ *                     sentences ("This message may contain…") count only
+ *                     when the paragraph also says "intended recipient",
+ *                     "privileged", "notify the sender" or the like. The
+ *                     same paragraph above the body text is kept.
+ * Runs of blank lines are collapsed to one. If nothing would be left (the
+ * user pasted only a quote) the email is passed through unchanged.
+ *
+ * Runs before the cache lookup, so the same message with a different
+ * quoted tail is a cache hit. gemini.preprocess.enabled=false turns it off.
+ *
+ * Metrics: gemini.input.stripped_bytes — UTF-8 bytes removed per email
+ * (0 for a clean one, so the mean is the saving per request).
+ */
+@Service
+public class EmailPreprocessor {
+
+    private static final List<String> DISCLAIMER_OPENINGS = List.of(
+            "confidentiality notice", "confidentiality note", "disclaimer:",
+            "if you are not the intended recipient", "if you have received this email in error",
+            "if you have received this e-mail in error", "if you received this message in error",
+            "please consider the environment", "privileged and confidential");
+
+    /** Openings an ordinary paragraph may share — a disclaimer only with one of DISCLAIMER_KEYWORDS. */
+    private static final List<String> GENERIC_DISCLAIMER_OPENINGS = List.of(
+            "this email and any", "this e-mail and any", "this message and any",
+            "this email is confidential", "this e-mail is confidential", "this message is confidential",
+            "this email may contain", "this e-mail may contain", "this message may contain",
+            "the information contained in this", "the information in this email", "confidential:");
+
+    private static final List<String> DISCLAIMER_KEYWORDS = List.of(
+            "intended recipient", "privileged", "notify the sender", "addressee", "received this",
+            "unauthorised", "unauthorized");
+
+    private static final List<String> MOBILE_SIGNATURES = List.of(
+            "sent from my ", "get outlook for ", "sent from mail for windows", "sent from yahoo mail");
+
+    private static final List<String> FORWARDED_HEADERS = List.of(
+            "from:", "date:", "sent:", "subject:", "to:", "cc:", "reply-to:");
+
+    @Value("${gemini.preprocess.enabled:true}")
+    private boolean enabled = true;
+
+    private final DistributionSummary strippedBytes;
+
+    public EmailPreprocessor(MeterRegistry meterRegistry) {
+        this.strippedBytes = DistributionSummary.builder("gemini.input.stripped_bytes")
+                .description("UTF-8 bytes of quoted history, signatures and disclaimers removed per email")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /** {@code content} without quoted history and boilerplate; the same instance when nothing was removed. */
+    public String strip(String content) {
+        if (!enabled || content == null || content.isEmpty()) return content;
+        String stripped = clean(content);
+        if (stripped == content || stripped.isBlank()) {
+            strippedBytes.record(0);
+            return content;
+        }
+        strippedBytes.record(utf8Length(content) - utf8Length(stripped));
+        return stripped;
+    }
+
+    /* ── Line scan ───────────────────────────────────────────────────── */
+
+    /**
+     * Line offsets are kept in two int arrays (start, end without the line
+     * break), so the scans below only compare chars in place. Returns
+     * {@code content} itself when no text line was dropped — collapsing
+     * blank lines alone is not worth a new prompt string.
+     */
+    static String clean(String content) {
+        int lineCount = 1;
+        for (int i = 0; i < content.length(); i++) if (content.charAt(i) == '\n') lineCount++;
+        int[] starts = new int[lineCount];
+        int[] ends = new int[lineCount];
+        int line = 0;
+        int at = 0;
+        while (true) {
+            int newline = content.indexOf('\n', at);
+            int end = newline < 0 ? content.length() : newline;
+            starts[line] = at;
+            ends[line] = end > at && content.charAt(end - 1) == '\r' ? end - 1 : end;
+            line++;
+            if (newline < 0) break;
+            at = newline + 1;
+        }
+
+        int cut = historyStart(content, starts, ends, lineCount);
+
+        // A trailing block of "> " lines (bottom of the kept part) is history as well
+        int last = cut - 1;
+        while (last >= 0 && isBlank(content, starts[last], ends[last])) last--;
+        if (last >= 0 && isQuoted(content, starts[last], ends[last])) {
+            int first = last;
+            while (first > 0 && (isQuoted(content, starts[first - 1], ends[first - 1])
+                    || isBlank(content, starts[first - 1], ends[first - 1]))) {
+                first--;
+            }
+            cut = first;
+        }
+        boolean dropped = false;
+        for (int i = cut; i < lineCount && !dropped; i++) dropped = !isBlank(content, starts[i], ends[i]);
+        int disclaimer = disclaimerStart(content, starts, ends, cut);
+
+        StringBuilder out = new StringBuilder(cut > 0 ? ends[cut - 1] + 1 : 16);
+        boolean blankPending = false;
+        boolean inForwardHeaders = false;
+        for (int i = 0; i < cut; i++) {
+            int s = starts[i];
+            int e = ends[i];
+            int first = skipSpaces(content, s, e);
+            if (first == e) {
+                blankPending = !out.isEmpty();
+                inForwardHeaders = false;
+                continue;
+            }
+            if (isSignatureDelimiter(content, first, e)) {
+                dropped = true;
+                break;
+            }
+            boolean drop = i >= disclaimer || startsWithAny(content, first, e, MOBILE_SIGNATURES);
+            if (isForwardMarker(content, first, e)) {
+                inForwardHeaders = true;
+                drop = true;
+            } else if (inForwardHeaders && startsWithAny(content, first, e, FORWARDED_HEADERS)) {
+                drop = true;
+            } else {
+                inForwardHeaders = false;
+            }
+            if (drop) {
+                dropped = true;
+                continue;
+            }
+
+            if (blankPending) out.append('\n').append('\n');
+            else if (!out.isEmpty()) out.append('\n');
+            blankPending = false;
+            int trimmedEnd = e;
+            while (trimmedEnd > s && Character.isWhitespace(content.charAt(trimmedEnd - 1))) trimmedEnd--;
+            out.append(content, s, trimmedEnd);
+        }
+        return dropped ? out.toString() : content;
+    }
+
+    /** Index of the first line of quoted history, or lineCount when there is none. */
+    private static int historyStart(String content, int[] starts, int[] ends, int lineCount) {
+        for (int i = 0; i < lineCount; i++) {
+            int first = skipSpaces(content, starts[i], ends[i]);
+            int e = ends[i];
+            if (first == e) continue;
+            if (isAttribution(content, first, e)) return i;
+            // Attribution wrapped by the mail client: "On Mon, … John Doe <" / "john@example.com> wrote:"
+            if (i + 1 < lineCount && startsWithIgnoreCase(content, first, e, "on ") && containsDigit(content, first, e)
+                    && endsWithIgnoreCase(content, starts[i + 1], ends[i + 1], "wrote:")) return i;
+            if (isOriginalMessageMarker(content, first, e)) return i;
+            // Not a forwarded message's own headers
+            if (i > 0 && isHeaderBlock(content, starts, ends, lineCount, i)
+                    && !forwardMarkerAbove(content, starts, ends, i)) return i;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Outlook's reply header: "From:" with "Sent:"/"Date:" and "To:"/"Subject:"
+     * in the next four lines. A body line that merely starts "From:" is not one.
+     */
+    private static boolean isHeaderBlock(String content, int[] starts, int[] ends, int lineCount, int line) {
+        if (!startsWithIgnoreCase(content, skipSpaces(content, starts[line], ends[line]), ends[line], "from:")) {
+            return false;
+        }
+        boolean sent = false;
+        boolean addressed = false;
+        for (int j = line + 1; j < Math.min(lineCount, line + 5); j++) {
+            int f = skipSpaces(content, starts[j], ends[j]);
+            if (f == ends[j]) break;
+            sent |= startsWithIgnoreCase(content, f, ends[j], "sent:") || startsWithIgnoreCase(content, f, ends[j], "date:");
+            addressed |= startsWithIgnoreCase(content, f, ends[j], "to:")
+                    || startsWithIgnoreCase(content, f, ends[j], "subject:");
+        }
+        return sent && addressed;
+    }
+
+    /**
+     * First line of the trailing run of disclaimer paragraphs before
+     * {@code cut} (or a signature delimiter), or {@code cut} when there is
+     * none. Paragraphs of mobile-signature lines in between don't end the
+     * run; any other paragraph does.
+     */
+    private static int disclaimerStart(String content, int[] starts, int[] ends, int cut) {
+        int end = cut;
+        for (int i = 0; i < cut; i++) {
+            int first = skipSpaces(content, starts[i], ends[i]);
+            if (first < ends[i] && isSignatureDelimiter(content, first, ends[i])) {
+                end = i;
+                break;
+            }
+        }
+        int from = cut;
+        int last = end - 1;
+        while (true) {
+            while (last >= 0 && isBlank(content, starts[last], ends[last])) last--;
+            if (last < 0) return from;
+            int first = last;
+            boolean mobileOnly = true;
+            while (first >= 0 && !isBlank(content, starts[first], ends[first])) {
+                mobileOnly &= startsWithAny(content, skipSpaces(content, starts[first], ends[first]), ends[first],
+                        MOBILE_SIGNATURES);
+                first--;
+            }
+            first++;
+            if (isDisclaimer(content, starts, ends, first, last)) from = first;
+            else if (!mobileOnly) return from;
+            last = first - 1;
+        }
+    }
+
+    /** Paragraph of lines {@code first..last}. */
+    private static boolean isDisclaimer(String content, int[] starts, int[] ends, int first, int last) {
+        int s = skipSpaces(content, starts[first], ends[first]);
+        if (startsWithAny(content, s, ends[first], DISCLAIMER_OPENINGS)) return true;
+        if (!startsWithAny(content, s, ends[first], GENERIC_DISCLAIMER_OPENINGS)) return false;
+        for (int i = first; i <= last; i++) {
+            for (int at = starts[i]; at < ends[i]; at++) {
+                if (startsWithAny(content, at, ends[i], DISCLAIMER_KEYWORDS)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Looks at most three lines up, within the same paragraph. */
+    private static boolean forwardMarkerAbove(String content, int[] starts, int[] ends, int line) {
+        for (int i = line - 1; i >= Math.max(0, line - 3); i--) {
+            int first = skipSpaces(content, starts[i], ends[i]);
+            if (first == ends[i]) return false;
+            if (isForwardMarker(content, first, ends[i])) return true;
+        }
+        return false;
+    }
+
+    /** "On <date> … wrote:" — the date keeps "On Monday the manager wrote:" in the text. */
+    private static boolean isAttribution(String content, int first, int end) {
+        return startsWithIgnoreCase(content, first, end, "on ") && endsWithIgnoreCase(content, first, end, "wrote:")
+                && containsDigit(content, first, end);
+    }
+
+    private static boolean containsDigit(String content, int first, int end) {
+        for (int i = first; i < end; i++) {
+            if (Character.isDigit(content.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static boolean isOriginalMessageMarker(String content, int first, int end) {
+        return content.charAt(first) == '-' && containsIgnoreCase(content, first, end, "original message");
+    }
+
+    private static boolean isForwardMarker(String content, int first, int end) {
+        return (content.charAt(first) == '-' && containsIgnoreCase(content, first, end, "forwarded message"))
+                || startsWithIgnoreCase(content, first, end, "begin forwarded message");
+    }
+
+    /** "-- " on its own line (RFC 3676); a bare "--" is accepted since editors strip the space. */
+    private static boolean isSignatureDelimiter(String content, int first, int end) {
+        int e = end;
+        while (e > first && content.charAt(e - 1) == ' ') e--;
+        return e - first == 2 && content.charAt(first) == '-' && content.charAt(first + 1) == '-';
+    }
+
+    private static boolean isQuoted(String content, int start, int end) {
+        int first = skipSpaces(content, start, end);
+        return first < end && content.charAt(first) == '>';
+    }
+
+    private static boolean isBlank(String content, int start, int end) {
+        return skipSpaces(content, start, end) == end;
+    }
+
+    private static int skipSpaces(String content, int start, int end) {
+        int i = start;
+        while (i < end && Character.isWhitespace(content.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean startsWithAny(String content, int first, int end, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (startsWithIgnoreCase(content, first, end, prefix)) return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWithIgnoreCase(String content, int first, int end, String prefix) {
+        return end - first >= prefix.length() && content.regionMatches(true, first, prefix, 0, prefix.length());
+    }
+
+    private static boolean endsWithIgnoreCase(String content, int start, int end, String suffix) {
+        int e = end;
+        while (e > start && Character.isWhitespace(content.charAt(e - 1))) e--;
+        return e - start >= suffix.length()
+                && content.regionMatches(true, e - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    /** Only used on marker lines, which are short. */
+    private static boolean containsIgnoreCase(String content, int first, int end, String needle) {
+        return end - first <= 120 && content.substring(first, end).toLowerCase(Locale.ROOT).contains(needle);
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) bytes++;
+            else if (c < 0x800) bytes += 2;
+            else if (Character.isHighSurrogate(c)) { bytes += 4; i++; }
+            else bytes += 3;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,343 @@
+package com.email.writer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local stand-in for the Gemini API, for load tests and benchmarks.
+ *
+ * Why this exists: every load test or benchmark of the generation path
+ * spent real Gemini quota and measured Google's latency of the day rather
+ * than our code. This server speaks enough of the protocol for
+ * GeminiProvider — POST …:generateContent and
+ * …:streamGenerateContent?alt=sse — so the whole request path (security,
+ * rate limiting, cache, guard, retries, HTTP client, parsing) runs offline.
+ *
+ * Behaviour, all from {@link Settings}:
+ *   latency  — log-normal around median-latency-ms with latency-sigma
+ *              (0 = constant). For streams it is the time to the first
+ *              chunk; further chunks follow every chunk-interval-ms.
+ *   errors   — error-rate-429 / -500 / -503 are probabilities per request.
+ *              Errors use Gemini's error JSON; 429 and 503 carry
+ *              Retry-After: 1. They are returned without the latency.
+ *   outputs  — canned multi-reply (SUMMARY:/REPLY n:) and single-reply
+ *              (Summary:/Reply:) answers, chosen by whether the prompt asks
+ *              for "REPLY 1". outputs-dir may hold multi-*.txt and
+ *              single-*.txt files to replace the built-in ones.
+ *   tokens   — usageMetadata is filled with length/4 estimates.
+ *   candidates — generateContent honours generationConfig.candidateCount,
+ *              each candidate an independently picked output.
+ *
+ * Started by FakeGeminiConfig under the fake-gemini profile, or on its own
+ * with {@link #main} (settings from -Dgemini.fake.* system properties).
+ */
+@Slf4j
+public class FakeGeminiServer {
+
+    private static final List<String> MULTI_OUTPUTS = List.of(
+            """
+            SUMMARY: The sender asks to move Thursday's project review to next week.
+            REPLY 1: Thanks for the heads-up. Next week works for me; I'll send a new invite for Tuesday afternoon. Let me know if another day suits you better.
+            REPLY 2: No problem at all. I've cleared Thursday and will look for a slot early next week. Could you share the times that work for your team?
+            REPLY 3: Understood, let's push the review. I'll update the agenda and circulate the new date once we've agreed on it.""",
+            """
+            SUMMARY: A customer reports that their last invoice was charged twice.
+            REPLY 1: I'm sorry about the duplicate charge. I've asked our billing team to refund the second payment, which should reach you within five business days.
+            REPLY 2: Thank you for letting us know. I can confirm the invoice was charged twice and have started the refund. I'll email you the confirmation as soon as it's processed.
+            REPLY 3: Apologies for the trouble. Could you send the last four digits of the card used? That will let us trace both payments and refund the duplicate right away.""");
+
+    private static final List<String> SINGLE_OUTPUTS = List.of(
+            """
+            Summary: The sender asks to move Thursday's project review to next week.
+            Reply: Thanks for letting me know. Next week works for me, and I'll send a new invite for Tuesday afternoon.""",
+            """
+            Summary: A customer reports that their last invoice was charged twice.
+            Reply: I'm sorry about the duplicate charge. Our billing team is refunding the second payment, which should arrive within five business days.""");
+
+    private static final int STREAM_CHUNK_CHARS = 40;
+
+    private static final Pattern CANDIDATE_COUNT = Pattern.compile("\"candidateCount\"\\s*:\\s*(\\d+)");
+
+    /**
+     * @param port       0 = any free port, see {@link #port()}
+     * @param outputsDir null = built-in canned outputs
+     * @param seed       fixes the latency / error / output sequence
+     */
+    public record Settings(int port,
+                           long medianLatencyMs,
+                           double latencySigma,
+                           double errorRate429,
+                           double errorRate500,
+                           double errorRate503,
+                           long chunkIntervalMs,
+                           String outputsDir,
+                           long seed) {
+
+        public static Settings defaults() {
+            return new Settings(8089, 800, 0.5, 0, 0, 0, 40, null, 42);
+        }
+
+        public Settings withPort(int port) {
+            return new Settings(port, medianLatencyMs, latencySigma, errorRate429, errorRate500, errorRate503,
+                    chunkIntervalMs, outputsDir, seed);
+        }
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random;
+    private final List<String> multiOutputs;
+    private final List<String> singleOutputs;
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FakeGeminiServer(Settings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.seed());
+        this.multiOutputs  = loadOutputs(settings.outputsDir(), "multi-", MULTI_OUTPUTS);
+        this.singleOutputs = loadOutputs(settings.outputsDir(), "single-", SINGLE_OUTPUTS);
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", settings.port()), 512);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-gemini");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Fake Gemini server listening on port {} (median latency {} ms, errors 429/500/503 = {}/{}/{})",
+                port(), settings.medianLatencyMs(), settings.errorRate429(), settings.errorRate500(),
+                settings.errorRate503());
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        log.info("Fake Gemini server stopped after {} requests", requests.get());
+    }
+
+    /** The bound port — differs from Settings.port when that was 0. */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /* ── Request handling ────────────────────────────────────────────── */
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod())
+                    || !(path.endsWith(":generateContent") || path.endsWith(":streamGenerateContent"))) {
+                sendError(exchange, 404, "NOT_FOUND", "Unknown method " + path);
+                return;
+            }
+            String prompt = readBody(exchange.getRequestBody());
+
+            double roll = nextDouble();
+            if (roll < settings.errorRate429()) {
+                sendError(exchange, 429, "RESOURCE_EXHAUSTED", "Resource has been exhausted (e.g. check quota).");
+                return;
+            }
+            roll -= settings.errorRate429();
+            if (roll < settings.errorRate500()) {
+                sendError(exchange, 500, "INTERNAL", "An internal error has occurred.");
+                return;
+            }
+            roll -= settings.errorRate500();
+            if (roll < settings.errorRate503()) {
+                sendError(exchange, 503, "UNAVAILABLE", "The model is overloaded. Please try again later.");
+                return;
+            }
+
+            boolean multi = prompt.contains("REPLY 1");
+            int promptTokens = Math.max(1, prompt.length() / 4);
+            if (path.endsWith(":streamGenerateContent")) {
+                stream(exchange, pickOutput(multi), promptTokens);
+            } else {
+                List<String> outputs = new ArrayList<>();
+                for (int i = candidateCount(prompt); i > 0; i--) outputs.add(pickOutput(multi));
+                sleep(sampleLatencyMs());
+                byte[] body = objectMapper.writeValueAsBytes(response(outputs, promptTokens));
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String output, int promptTokens)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        sleep(sampleLatencyMs());
+        for (int from = 0; from < output.length(); from += STREAM_CHUNK_CHARS) {
+            int to = Math.min(output.length(), from + STREAM_CHUNK_CHARS);
+            boolean last = to == output.length();
+            Map<String, Object> event = last
+                    ? response(output.substring(from, to), "STOP", promptTokens, output.length())
+                    : response(output.substring(from, to), null, 0, 0);
+            out.write("data: ".getBytes(StandardCharsets.UTF_8));
+            out.write(objectMapper.writeValueAsBytes(event));
+            out.write("\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            if (!last) sleep(settings.chunkIntervalMs());
+        }
+    }
+
+    /** A complete generateContent response with one STOP candidate per output. */
+    private Map<String, Object> response(List<String> outputs, int promptTokens) {
+        List<Map<String, Object>> candidates = new ArrayList<>();
+        int outputChars = 0;
+        for (String output : outputs) {
+            Map<String, Object> candidate = new LinkedHashMap<>();
+            candidate.put("content", Map.of("role", "model", "parts", List.of(Map.of("text", output))));
+            candidate.put("finishReason", "STOP");
+            candidate.put("index", candidates.size());
+            candidates.add(candidate);
+            outputChars += output.length();
+        }
+        int candidatesTokens = Math.max(1, outputChars / 4);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("candidates", candidates);
+        response.put("usageMetadata", Map.of(
+                "promptTokenCount", promptTokens,
+                "candidatesTokenCount", candidatesTokens,
+                "totalTokenCount", promptTokens + candidatesTokens));
+        return response;
+    }
+
+    private Map<String, Object> response(String text, String finishReason, int promptTokens, int outputChars) {
+        Map<String, Object> candidate = new LinkedHashMap<>();
+        candidate.put("content", Map.of("role", "model", "parts", List.of(Map.of("text", text))));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("candidates", List.of(candidate));
+        if (finishReason == null) return response;
+
+        // Gemini sends finishReason and usage with the final chunk only
+        candidate.put("finishReason", finishReason);
+        int candidatesTokens = Math.max(1, outputChars / 4);
+        response.put("usageMetadata", Map.of(
+                "promptTokenCount", promptTokens,
+                "candidatesTokenCount", candidatesTokens,
+                "totalTokenCount", promptTokens + candidatesTokens));
+        return response;
+    }
+
+    private void sendError(HttpExchange exchange, int code, String status, String message) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(
+                Map.of("error", Map.of("code", code, "message", message, "status", status)));
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        if (code == 429 || code == 503) exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /* ── Sampling ────────────────────────────────────────────────────── */
+
+    long sampleLatencyMs() {
+        if (settings.medianLatencyMs() <= 0) return 0;
+        double gaussian;
+        synchronized (random) {
+            gaussian = random.nextGaussian();
+        }
+        return Math.round(settings.medianLatencyMs() * Math.exp(settings.latencySigma() * gaussian));
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private String pickOutput(boolean multi) {
+        List<String> outputs = multi ? multiOutputs : singleOutputs;
+        synchronized (random) {
+            return outputs.get(random.nextInt(outputs.size()));
+        }
+    }
+
+    /** generationConfig.candidateCount of a request body, 1 when absent. */
+    private static int candidateCount(String body) {
+        Matcher matcher = CANDIDATE_COUNT.matcher(body);
+        return matcher.find() ? Math.max(1, Math.min(8, Integer.parseInt(matcher.group(1)))) : 1;
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) TimeUnit.MILLISECONDS.sleep(millis);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> loadOutputs(String dir, String prefix, List<String> fallback) {
+        if (dir == null || dir.isBlank()) return fallback;
+        try (Stream<Path> files = Files.list(Path.of(dir))) {
+            List<String> outputs = new ArrayList<>();
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(".txt")) outputs.add(Files.readString(file).strip());
+            }
+            return outputs.isEmpty() ? fallback : outputs;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read fake Gemini outputs from " + dir, ex);
+        }
+    }
+
+    /** Standalone: {@code java -cp … com.email.writer.service.FakeGeminiServer}, stop with Ctrl-C. */
+    public static void main(String[] args) throws IOException {
+        Settings d = Settings.defaults();
+        FakeGeminiServer server = new FakeGeminiServer(new Settings(
+                Integer.getInteger("gemini.fake.port", d.port()),
+                Long.getLong("gemini.fake.median-latency-ms", d.medianLatencyMs()),
+                Double.parseDouble(System.getProperty("gemini.fake.latency-sigma", String.valueOf(d.latencySigma()))),
+                Double.parseDouble(System.getProperty("gemini.fake.error-rate-429", "0")),
+                Double.parseDouble(System.getProperty("gemini.fake.error-rate-500", "0")),
+                Double.parseDouble(System.getProperty("gemini.fake.error-rate-503", "0")),
+                Long.getLong("gemini.fake.chunk-interval-ms", d.chunkIntervalMs()),
+                System.getProperty("gemini.fake.outputs-dir"),
+                Long.getLong("gemini.fake.seed", d.seed())));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+}
@@ -0,0 +1,353 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.ConcurrencyLimitExceededException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Resilience layer around every Gemini HTTP call.
+ *
+ * Why this exists: when Gemini slowed down or answered 429/503, every call
+ * still waited up to the 30s read timeout. Tomcat threads piled up behind
+ * them and unrelated endpoints (/api/v1/replies/history, login) starved.
+ *
+ * Three mechanisms, all failing fast instead of queueing:
+ *
+ * Adaptive concurrency limit (gradient, after Netflix's Gradient2) — caps
+ * concurrent upstream calls. Each successful call's latency is compared with
+ * a slow moving average; when latency rises above rtt-tolerance × average
+ * the limit shrinks, when it is stable the limit grows by ~√limit. Upstream
+ * failures (timeouts, 429, 5xx) cut the limit by 10%. The limit only grows
+ * while at least half of it is in use, so an idle period can't inflate it.
+ * Calls over the limit get UpstreamUnavailableException("overloaded") → 503.
+ *
+ * Circuit breaker — count-based window of the last circuit.window outcomes.
+ * At ≥ failure-rate-percent failures (once min-calls have been seen) it
+ * opens: every call fails immediately with 503 + Retry-After until
+ * open-seconds have passed. Then a single probe call is let through
+ * (half-open); success closes the circuit, failure re-opens it.
+ *
+ * Per-user in-flight cap — acquireUserSlot() is taken per request before
+ * the coalescer, so one user firing parallel requests can't use up the
+ * shared limit. Over the cap → ConcurrencyLimitExceededException → 429.
+ *
+ * checkAdmission() runs the circuit and limit checks without taking a
+ * slot, so a call that would be refused anyway fails before it queues for
+ * the key's quota in GeminiScheduler.
+ *
+ * Only upstream trouble counts as failure: I/O errors and timeouts
+ * (ResourceAccessException), 429 and 5xx. A 400 (bad key, bad request)
+ * or a client disconnect during a stream neither opens the circuit nor
+ * shrinks the limit.
+ *
+ * Metrics: gemini.limiter.limit, gemini.limiter.inflight,
+ * gemini.limiter.users (users with a call in flight),
+ * gemini.limiter.rejected{reason=overloaded|circuit_open|user_limit},
+ * gemini.circuit.state (0 closed, 1 half-open, 2 open).
+ *
+ * State is in-memory (single instance), same trade-off as RateLimiterService.
+ */
+@Service
+@Slf4j
+public class GeminiCallGuard implements MeterBinder {
+
+    enum CircuitState { CLOSED, HALF_OPEN, OPEN }
+
+    /** Released exactly once via close(); never throws. */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NO_PERMIT = () -> { };
+
+    // Samples in the long-term latency average — slow, so a burst of slow
+    // calls registers as a gradient instead of becoming the new normal.
+    private static final double LONG_RTT_WINDOW = 100.0;
+    private static final double SMOOTHING       = 0.2;
+    private static final double FAILURE_BACKOFF = 0.9;
+    private static final long   OVERLOADED_RETRY_AFTER_S = 2;
+
+    @Value("${gemini.resilience.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gemini.resilience.limit.initial:10}")
+    private int initialLimit = 10;
+
+    @Value("${gemini.resilience.limit.min:2}")
+    private int minLimit = 2;
+
+    @Value("${gemini.resilience.limit.max:20}")
+    private int maxLimit = 20;
+
+    @Value("${gemini.resilience.limit.rtt-tolerance:1.5}")
+    private double rttTolerance = 1.5;
+
+    @Value("${gemini.resilience.per-user-max-in-flight:3}")
+    private int perUserMaxInFlight = 3;
+
+    @Value("${gemini.resilience.circuit.window:20}")
+    private int circuitWindow = 20;
+
+    @Value("${gemini.resilience.circuit.min-calls:10}")
+    private int circuitMinCalls = 10;
+
+    @Value("${gemini.resilience.circuit.failure-rate-percent:50}")
+    private int failureRatePercent = 50;
+
+    @Value("${gemini.resilience.circuit.open-seconds:30}")
+    private long openSeconds = 30;
+
+    // ── Limiter + circuit state, guarded by synchronized(this) ──
+    // Gemini calls take seconds; a monitor around a few arithmetic ops is
+    // nowhere near contended at this rate.
+    private double  limit;
+    private int     inFlight;
+    private double  longRttNanos;
+    private CircuitState state = CircuitState.CLOSED;
+    private long    openUntilNanos;
+    private boolean probeInFlight;
+    private boolean[] outcomes;              // ring buffer, true = failure
+    private int     outcomePos, outcomeCount, outcomeFailures;
+
+    private final ConcurrentHashMap<String, Integer> userInFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+    private final AtomicLong rejectedCircuit    = new AtomicLong();
+    private final AtomicLong rejectedUser       = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        outcomes = new boolean[Math.max(1, circuitWindow)];
+    }
+
+    /**
+     * Reserve one of the user's in-flight slots for the duration of a
+     * generation. Use with try-with-resources.
+     *
+     * @throws ConcurrencyLimitExceededException when the user is at the cap
+     */
+    public Permit acquireUserSlot(String username) {
+        if (!enabled || username == null) return NO_PERMIT;
+
+        boolean[] rejected = {false};
+        userInFlight.compute(username, (user, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= perUserMaxInFlight) {
+                rejected[0] = true;
+                return count;
+            }
+            return current + 1;
+        });
+        if (rejected[0]) {
+            rejectedUser.incrementAndGet();
+            throw new ConcurrencyLimitExceededException("You already have " + perUserMaxInFlight
+                    + " generations in progress. Please wait for one to finish.", OVERLOADED_RETRY_AFTER_S);
+        }
+
+        boolean[] released = {false};
+        return () -> {
+            if (released[0]) return;
+            released[0] = true;
+            userInFlight.computeIfPresent(username, (user, count) -> count <= 1 ? null : count - 1);
+        };
+    }
+
+    /**
+     * Run one upstream call under the circuit breaker and concurrency limit.
+     *
+     * @param sampleLatency feed this call's duration to the limit; false for
+     *                      streams, whose duration is the length of the answer
+     * @throws UpstreamUnavailableException without calling upstream when the
+     *                                      circuit is open or the limit is reached
+     */
+    public <T> T call(Supplier<T> upstream, boolean sampleLatency) {
+        if (!enabled) return upstream.get();
+
+        boolean probe = admit();
+        long start = System.nanoTime();
+        // IGNORED unless set below — an Error (OOM, stack overflow) still
+        // gives back the slot and the half-open probe
+        Outcome outcome = Outcome.IGNORED;
+        try {
+            T result = upstream.get();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } catch (RuntimeException ex) {
+            if (isUpstreamFailure(ex)) outcome = Outcome.FAILURE;
+            throw ex;
+        } finally {
+            complete(System.nanoTime() - start, sampleLatency && outcome == Outcome.SUCCESS, outcome, probe);
+        }
+    }
+
+    /**
+     * Throw what {@link #call} would throw right now — circuit open, probe
+     * already out, or limit reached — without taking a slot. Passing is no
+     * promise: call() checks again when the call actually starts.
+     *
+     * @throws UpstreamUnavailableException as call() would
+     */
+    public synchronized void checkAdmission() {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        if (state == CircuitState.OPEN && now - openUntilNanos < 0) {
+            throw circuitOpen(TimeUnit.NANOSECONDS.toSeconds(openUntilNanos - now) + 1);
+        }
+        if (state == CircuitState.HALF_OPEN && probeInFlight) throw circuitOpen(OVERLOADED_RETRY_AFTER_S);
+        if (state == CircuitState.CLOSED && inFlight >= (int) limit) throw overloaded();
+    }
+
+    private enum Outcome { SUCCESS, FAILURE, IGNORED }
+
+    /** @return true when this call is the half-open probe */
+    private synchronized boolean admit() {
+        long now = System.nanoTime();
+        if (state == CircuitState.OPEN) {
+            if (now - openUntilNanos < 0) {
+                throw circuitOpen(TimeUnit.NANOSECONDS.toSeconds(openUntilNanos - now) + 1);
+            }
+            transition(CircuitState.HALF_OPEN);
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (probeInFlight) throw circuitOpen(OVERLOADED_RETRY_AFTER_S);
+            probeInFlight = true;
+            inFlight++;
+            return true;
+        }
+        if (inFlight >= (int) limit) throw overloaded();
+        inFlight++;
+        return false;
+    }
+
+    private UpstreamUnavailableException circuitOpen(long retryAfterSeconds) {
+        rejectedCircuit.incrementAndGet();
+        return new UpstreamUnavailableException("circuit_open",
+                "The AI service is temporarily unavailable. Please try again shortly.", retryAfterSeconds);
+    }
+
+    private UpstreamUnavailableException overloaded() {
+        rejectedOverloaded.incrementAndGet();
+        return new UpstreamUnavailableException("overloaded",
+                "The AI service is busy. Please try again in a few seconds.", OVERLOADED_RETRY_AFTER_S);
+    }
+
+    private synchronized void complete(long rttNanos, boolean sampleLatency, Outcome outcome, boolean probe) {
+        int inFlightAtCompletion = inFlight;
+        inFlight--;
+
+        if (probe) {
+            probeInFlight = false;
+            if (outcome == Outcome.FAILURE) open();
+            else if (outcome == Outcome.SUCCESS) transition(CircuitState.CLOSED);
+        } else if (state == CircuitState.CLOSED && outcome != Outcome.IGNORED) {
+            recordOutcome(outcome == Outcome.FAILURE);
+        }
+
+        if (outcome == Outcome.FAILURE) {
+            limit = Math.max(minLimit, limit * FAILURE_BACKOFF);
+        } else if (outcome == Outcome.SUCCESS && sampleLatency) {
+            updateLimit(rttNanos, inFlightAtCompletion);
+        }
+    }
+
+    private void updateLimit(long rttNanos, int inFlightAtCompletion) {
+        double rtt = Math.max(1, rttNanos);
+        if (longRttNanos == 0) {
+            longRttNanos = rtt;
+        } else {
+            longRttNanos += (rtt - longRttNanos) / LONG_RTT_WINDOW;
+            // After a long slow period the average lags behind; pull it back
+            // down quickly once latency recovers, as Gradient2 does.
+            if (longRttNanos / rtt > 2) longRttNanos *= 0.95;
+        }
+
+        // App-limited: with most of the limit unused, latency says nothing about capacity
+        if (inFlightAtCompletion < limit / 2) return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rtt));
+        double target   = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    private void recordOutcome(boolean failure) {
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[outcomePos]) outcomeFailures--;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomePos] = failure;
+        if (failure) outcomeFailures++;
+        outcomePos = (outcomePos + 1) % outcomes.length;
+
+        if (outcomeCount >= circuitMinCalls && outcomeFailures * 100 >= failureRatePercent * outcomeCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        openUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(openSeconds);
+        transition(CircuitState.OPEN);
+    }
+
+    private void transition(CircuitState next) {
+        if (state == next) return;
+        if (next == CircuitState.OPEN) {
+            log.warn("Gemini circuit OPEN for {}s ({} of last {} calls failed)",
+                    openSeconds, outcomeFailures, outcomeCount);
+        } else {
+            log.info("Gemini circuit {}", next);
+        }
+        state = next;
+        outcomePos = outcomeCount = outcomeFailures = 0;
+    }
+
+    private static boolean isUpstreamFailure(RuntimeException ex) {
+        if (ex instanceof ResourceAccessException) return true;   // I/O error or timeout
+        if (ex instanceof HttpStatusCodeException status) {
+            return status.getStatusCode().value() == 429 || status.getStatusCode().is5xxServerError();
+        }
+        return false;
+    }
+
+    synchronized double currentLimit()       { return limit; }
+    synchronized int currentInFlight()       { return inFlight; }
+    synchronized CircuitState circuitState() { return state; }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Gauge.builder("gemini.limiter.limit", this, GeminiCallGuard::currentLimit)
+                .description("Adaptive limit on concurrent Gemini calls")
+                .register(registry);
+        Gauge.builder("gemini.limiter.inflight", this, GeminiCallGuard::currentInFlight)
+                .register(registry);
+        Gauge.builder("gemini.limiter.users", userInFlight, ConcurrentHashMap::size)
+                .description("Users with at least one generation in flight")
+                .register(registry);
+        Gauge.builder("gemini.circuit.state", this, g -> g.circuitState().ordinal())
+                .description("0 = closed, 1 = half-open, 2 = open")
+                .register(registry);
+        FunctionCounter.builder("gemini.limiter.rejected", rejectedOverloaded, AtomicLong::get)
+                .tag("reason", "overloaded").register(registry);
+        FunctionCounter.builder("gemini.limiter.rejected", rejectedCircuit, AtomicLong::get)
+                .tag("reason", "circuit_open").register(registry);
+        FunctionCounter.builder("gemini.limiter.rejected", rejectedUser, AtomicLong::get)
+                .tag("reason", "user_limit").register(registry);
+    }
+}
@@ -0,0 +1,134 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * LlmProvider for the Gemini REST API (generateContent and
+ * streamGenerateContent?alt=sse).
+ *
+ * Request bodies come from GeminiRequestWriter, responses are read as a
+ * stream by GeminiResponseReader. The RestTemplate (pool, timeouts) is
+ * configured in AppConfig / GeminiHttpClientConfig.
+ *
+ * gemini.api.url can point anywhere that speaks the protocol — the
+ * fake-gemini profile points it at FakeGeminiServer.
+ */
+@Service
+public class GeminiProvider implements LlmProvider {
+
+    private final RestTemplate restTemplate;
+    private final GeminiRequestWriter requestWriter;
+    private final GeminiResponseReader responseReader;
+
+    @Value("${gemini.api.url}")
+    private String geminiApiUrl;
+
+    @Value("${gemini.api.endpoint}")
+    private String geminiApiEndpoint;
+
+    @Value("${gemini.api.key}")
+    private String geminiApiKey;
+
+    // Blank = derive from gemini.api.endpoint (…:generateContent → …:streamGenerateContent)
+    @Value("${gemini.api.stream-endpoint:}")
+    private String geminiStreamEndpoint;
+
+    public GeminiProvider(RestTemplate restTemplate, ObjectMapper objectMapper) {
+        this.restTemplate   = restTemplate;
+        this.requestWriter  = new GeminiRequestWriter(objectMapper);
+        this.responseReader = new GeminiResponseReader(objectMapper);
+    }
+
+    @Override
+    public String name() {
+        return "gemini";
+    }
+
+    @Override
+    public GeminiResponse generate(GenerationConfig config, String prompt) {
+        byte[] body = requestWriter.write(config, prompt);
+        String url = geminiApiUrl + geminiApiEndpoint + "?key=" + geminiApiKey;
+        return restTemplate.execute(url, HttpMethod.POST,
+                req -> {
+                    req.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    req.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+                    req.getBody().write(body);
+                },
+                resp -> {
+                    if (!resp.getStatusCode().is2xxSuccessful()) throw unexpectedStatus(resp);
+                    return responseReader.read(resp.getBody());
+                });
+    }
+
+    /**
+     * Each SSE "data:" event is a complete GenerateContentResponse carrying
+     * only the newly generated fragment.
+     */
+    @Override
+    public GeminiResponse stream(GenerationConfig config, String prompt, Consumer<String> onText) {
+        byte[] body = requestWriter.write(config, prompt);
+        String url = geminiApiUrl + streamEndpoint() + "?alt=sse&key=" + geminiApiKey;
+        return restTemplate.execute(url, HttpMethod.POST,
+                req -> {
+                    req.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    req.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                    req.getBody().write(body);
+                },
+                resp -> {
+                    if (!resp.getStatusCode().is2xxSuccessful()) throw unexpectedStatus(resp);
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(resp.getBody(), StandardCharsets.UTF_8));
+                    GeminiResponse last = new GeminiResponse("", null, 0, 0, 0);
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.startsWith("data:")) continue;
+                        GeminiResponse event = responseReader.read(line.substring(5).trim());
+                        if (!event.text().isEmpty()) onText.accept(event.text());
+                        if (event.finishReason() != null || event.totalTokens() > 0) last = event;
+                    }
+                    return last;
+                });
+    }
+
+    /**
+     * A non-2xx status that got past the RestTemplate's error handler, as the
+     * RestClientException it would have thrown — so GeminiCallGuard and
+     * GeminiRetryPolicy classify it like any other HTTP failure.
+     */
+    private static RestClientResponseException unexpectedStatus(ClientHttpResponse resp) throws IOException {
+        HttpStatusCode status = resp.getStatusCode();
+        String text = resp.getStatusText();
+        byte[] body = resp.getBody().readAllBytes();
+        if (status.is4xxClientError()) {
+            return HttpClientErrorException.create(status, text, resp.getHeaders(), body, StandardCharsets.UTF_8);
+        }
+        if (status.is5xxServerError()) {
+            return HttpServerErrorException.create(status, text, resp.getHeaders(), body, StandardCharsets.UTF_8);
+        }
+        return new UnknownHttpStatusCodeException(status.value(), text, resp.getHeaders(), body, StandardCharsets.UTF_8);
+    }
+
+    private String streamEndpoint() {
+        if (geminiStreamEndpoint != null && !geminiStreamEndpoint.isBlank()) return geminiStreamEndpoint;
+        return geminiApiEndpoint.replace(":generateContent", ":streamGenerateContent");
+    }
+}
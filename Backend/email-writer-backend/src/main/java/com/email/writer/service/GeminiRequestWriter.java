@@ -0,0 +1,135 @@
+package com.email.writer.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes Gemini generateContent request bodies from pre-encoded byte templates.
+ *
+ * Why this exists: every generation used to build nested Map.of(...) for
+ * contents and generationConfig and let Jackson walk them through its
+ * serializer lookup on each call. Everything except the prompt and
+ * maxOutputTokens is constant per generation mode, so the wrapper and the
+ * rest of generationConfig are encoded once and only the prompt is escaped
+ * into the output:
+ *
+ *   {"contents":[{"parts":[{"text":  <prompt>
+ *   }]}],"generationConfig":{"maxOutputTokens":  <n>
+ *   ,"temperature":...,"topP":...,"topK":...}}
+ *
+ * The three lines are PREFIX, CONFIG_START and a tail per sampling setting.
+ *
+ * PREFIX, CONFIG_START and the tails are SerializedStrings, which cache
+ * their UTF-8 bytes; writeRaw copies those straight into the generator's
+ * buffer. The prompt is escaped by a JsonGenerator from the shared
+ * ObjectMapper's factory, so the output is the same JSON document the
+ * Map-based path produced.
+ *
+ * maxOutputTokens is written per request: InputBudgetPolicy sizes it from
+ * each prompt. Tails are encoded lazily and cached per sampling settings
+ * (temperature, topP, topK, candidateCount), which only come from the
+ * fixed GenerationConfig constants, so the cache stays a handful of entries.
+ */
+public class GeminiRequestWriter {
+
+    /**
+     * The generationConfig block of a request. candidateCount above 1 asks
+     * Gemini for that many independent answers (VariationPoolService); 1 is
+     * left out of the body, as before.
+     */
+    public record GenerationConfig(double temperature, int maxOutputTokens, double topP, int topK,
+                                   int candidateCount) {
+
+        public static final GenerationConfig MULTI            = new GenerationConfig(0.75, 2048, 0.95, 40);
+        public static final GenerationConfig MULTI_REGENERATE = new GenerationConfig(0.9,  2048, 0.95, 40);
+        public static final GenerationConfig SINGLE           = new GenerationConfig(0.7,  1024, 0.8,  40);
+
+        public GenerationConfig(double temperature, int maxOutputTokens, double topP, int topK) {
+            this(temperature, maxOutputTokens, topP, topK, 1);
+        }
+
+        public GenerationConfig withMaxOutputTokens(int tokens) {
+            return new GenerationConfig(temperature, tokens, topP, topK, candidateCount);
+        }
+
+        public GenerationConfig withCandidateCount(int count) {
+            return count == candidateCount ? this : new GenerationConfig(temperature, maxOutputTokens, topP, topK, count);
+        }
+
+        Map<String, Object> asMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("temperature",     temperature);
+            map.put("maxOutputTokens", maxOutputTokens);
+            map.put("topP",            topP);
+            map.put("topK",            topK);
+            if (candidateCount > 1) map.put("candidateCount", candidateCount);
+            return map;
+        }
+    }
+
+    private static final SerializableString PREFIX = new SerializedString("{\"contents\":[{\"parts\":[{\"text\":");
+    private static final SerializableString CONFIG_START =
+            new SerializedString("}]}],\"generationConfig\":{\"maxOutputTokens\":");
+    /** Room for the wrapper and generationConfig on top of the prompt. */
+    private static final int ENVELOPE_BYTES = 256;
+
+    /** The generationConfig fields that are fixed per GenerationConfig constant. */
+    private record Sampling(double temperature, double topP, int topK, int candidateCount) { }
+
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+    private final Map<Sampling, SerializableString> tails = new ConcurrentHashMap<>();
+
+    public GeminiRequestWriter(ObjectMapper objectMapper) {
+        this.mapper  = objectMapper;
+        this.factory = objectMapper.getFactory();
+    }
+
+    /** Complete request body for {@code prompt} under {@code config}. */
+    public byte[] write(GenerationConfig config, String prompt) {
+        SerializableString tail = tail(config);
+        try (ByteArrayBuilder out = new ByteArrayBuilder(prompt.length() + ENVELOPE_BYTES)) {
+            try (JsonGenerator generator = factory.createGenerator(out)) {
+                generator.writeRaw(PREFIX);
+                generator.writeString(prompt);
+                generator.writeRaw(CONFIG_START);
+                generator.writeRaw(Integer.toString(config.maxOutputTokens()));
+                generator.writeRaw(tail);
+            }
+            return out.toByteArray();
+        } catch (IOException ex) {
+            // Writing to memory doesn't fail; JsonGenerator just declares it
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /** Cached tails, for tests. */
+    int cachedTails() {
+        return tails.size();
+    }
+
+    private SerializableString tail(GenerationConfig config) {
+        Sampling sampling = new Sampling(config.temperature(), config.topP(), config.topK(), config.candidateCount());
+        return tails.computeIfAbsent(sampling, s -> {
+            Map<String, Object> rest = config.asMap();
+            rest.remove("maxOutputTokens");
+            try {
+                // {"temperature":...} → ,"temperature":...}} closing generationConfig and the body
+                return new SerializedString("," + mapper.writeValueAsString(rest).substring(1) + "}");
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Cannot encode generationConfig " + config, ex);
+            }
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.email.writer.service;
+
+import java.util.List;
+
+/**
+ * The parts of a Gemini GenerateContentResponse we actually use.
+ *
+ * @param text             candidates[0].content.parts[0].text, "" when absent
+ * @param finishReason     candidates[0].finishReason (STOP, MAX_TOKENS, SAFETY, ...), null when absent
+ * @param promptTokens     usageMetadata.promptTokenCount, 0 when absent
+ * @param candidatesTokens usageMetadata.candidatesTokenCount, 0 when absent
+ * @param totalTokens      usageMetadata.totalTokenCount, 0 when absent
+ * @param alternatives     text of candidates[1..] that finished normally, when
+ *                         generationConfig.candidateCount asked for more than one
+ */
+public record GeminiResponse(String text, String finishReason,
+                             int promptTokens, int candidatesTokens, int totalTokens,
+                             List<String> alternatives) {
+
+    public GeminiResponse(String text, String finishReason, int promptTokens, int candidatesTokens, int totalTokens) {
+        this(text, finishReason, promptTokens, candidatesTokens, totalTokens, List.of());
+    }
+
+    /** True when the model stopped for any reason other than finishing normally. */
+    public boolean truncated() {
+        return finishReason != null && !"STOP".equals(finishReason);
+    }
+}
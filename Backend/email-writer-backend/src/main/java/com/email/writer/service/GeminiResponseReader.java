@@ -0,0 +1,168 @@
+package com.email.writer.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pulls text, finishReason and usageMetadata out of a Gemini
+ * GenerateContentResponse with Jackson's streaming token API.
+ *
+ * Why this exists: the old path had RestTemplate buffer the whole body into
+ * a String, then built a full JsonNode tree with a private ObjectMapper just
+ * to read candidates[0].content.parts[0].text. Responses are several KB
+ * (safety ratings, citation metadata, token details per modality) and we
+ * need three small fields. Here the body is read straight from the response
+ * InputStream, everything we don't need is skipped with skipChildren(), and
+ * only the reply text is materialised.
+ *
+ * Uses the JsonFactory of the application's shared ObjectMapper.
+ *
+ * Only the first part of each candidate is read. candidates[0] is the
+ * answer; later candidates (generationConfig.candidateCount > 1) are kept
+ * as alternatives when they finished normally. The legacy
+ * {"output": "..."} shape is still accepted.
+ */
+public class GeminiResponseReader {
+
+    private final JsonFactory factory;
+
+    public GeminiResponseReader(ObjectMapper objectMapper) {
+        this.factory = objectMapper.getFactory();
+    }
+
+    /** Read a complete response body, consuming the stream. */
+    public GeminiResponse read(InputStream body) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            return read(parser);
+        }
+    }
+
+    /** Read one response document, e.g. the payload of an SSE "data:" line. */
+    public GeminiResponse read(String json) throws IOException {
+        try (JsonParser parser = factory.createParser(json)) {
+            return read(parser);
+        }
+    }
+
+    private GeminiResponse read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Gemini response is not a JSON object");
+        }
+
+        String text = null;
+        String output = null;
+        String finishReason = null;
+        List<String> alternatives = List.of();
+        int promptTokens = 0, candidatesTokens = 0, totalTokens = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "candidates" -> {
+                    if (value != JsonToken.START_ARRAY) { parser.skipChildren(); break; }
+                    boolean first = true;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (parser.currentToken() != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                        } else if (first) {
+                            Candidate candidate = readCandidate(parser);
+                            text = candidate.text();
+                            finishReason = candidate.finishReason();
+                        } else {
+                            Candidate candidate = readCandidate(parser);
+                            if (candidate.text() != null && !candidate.text().isBlank()
+                                    && (candidate.finishReason() == null || "STOP".equals(candidate.finishReason()))) {
+                                if (alternatives.isEmpty()) alternatives = new ArrayList<>(2);
+                                alternatives.add(candidate.text());
+                            }
+                        }
+                        first = false;
+                    }
+                }
+                case "usageMetadata" -> {
+                    if (value != JsonToken.START_OBJECT) { parser.skipChildren(); break; }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        parser.nextToken();
+                        switch (name) {
+                            case "promptTokenCount"     -> promptTokens     = parser.getValueAsInt();
+                            case "candidatesTokenCount" -> candidatesTokens = parser.getValueAsInt();
+                            case "totalTokenCount"      -> totalTokens      = parser.getValueAsInt();
+                            default -> parser.skipChildren();
+                        }
+                    }
+                }
+                case "output" -> output = scalarText(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (text == null) text = output != null ? output : "";
+        return new GeminiResponse(text, finishReason, promptTokens, candidatesTokens, totalTokens, alternatives);
+    }
+
+    private record Candidate(String text, String finishReason) {}
+
+    /** Positioned on the candidate's START_OBJECT; consumes it. */
+    private static Candidate readCandidate(JsonParser parser) throws IOException {
+        String text = null;
+        String finishReason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("finishReason")) {
+                finishReason = scalarText(parser);
+            } else if (field.equals("content") && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken partsToken = parser.nextToken();
+                    if (name.equals("parts") && partsToken == JsonToken.START_ARRAY) {
+                        text = readFirstPartText(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Candidate(text, finishReason);
+    }
+
+    /** Positioned on the parts START_ARRAY; consumes it and returns parts[0].text. */
+    private static String readFirstPartText(JsonParser parser) throws IOException {
+        String text = null;
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (name.equals("text")) text = scalarText(parser);
+                    else parser.skipChildren();
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return text;
+    }
+
+    /** Text of a scalar value; null for null, objects and arrays (which are skipped). */
+    private static String scalarText(JsonParser parser) throws IOException {
+        if (parser.currentToken().isScalarValue() && parser.currentToken() != JsonToken.VALUE_NULL) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
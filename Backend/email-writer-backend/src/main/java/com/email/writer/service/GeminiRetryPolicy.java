@@ -0,0 +1,311 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.GeminiApiException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Retries and hedging for Gemini calls, both paid for from one RetryBudget.
+ *
+ * Why this exists: callGemini wrapped every failure in a RuntimeException
+ * and gave up, so a single 503 or connection reset from Gemini became a
+ * 500 for the user. And p99 latency was set by a handful of very slow
+ * responses that a second, identical request would usually have beaten.
+ *
+ * Retries — transient failures (429, 500/502/503/504, connection errors)
+ * are retried up to max-attempts with full-jitter exponential backoff
+ * (random 0..min(max-delay, base-delay × 2^n)). A 429/503 Retry-After
+ * longer than max-delay is honoured by not retrying. Read timeouts are not
+ * retried: the user has already waited the full read timeout once.
+ * 4xx other than 429 are permanent and fail immediately.
+ *
+ * Hedging (gemini.hedge.enabled, off by default) — for non-streamed calls,
+ * if the first attempt hasn't answered after the hedge.percentile latency
+ * of recent successful calls, an identical second attempt is started and
+ * the first success wins. The loser is not interruptible (blocking socket
+ * read); it finishes in the background and its result is dropped. Until
+ * hedge.min-samples latencies are known nothing is hedged.
+ *
+ * Budget — every retry and hedge withdraws from a RetryBudget that only
+ * allows budget.percent% extra attempts (plus a small per-second reserve),
+ * so neither can multiply traffic to an upstream that is already down.
+ * GeminiCallGuard rejections (circuit open, limit) are never retried.
+ *
+ * Metrics: gemini.retry.attempts{kind=retry|hedge},
+ * gemini.retry.rejected{reason=budget}, gemini.hedge.won.
+ */
+@Service
+@Slf4j
+public class GeminiRetryPolicy {
+
+    static final String FAILURE_MESSAGE = "Failed to generate email replies. Please try again.";
+
+    private static final int LATENCY_SAMPLES = 200;
+
+    @Value("${gemini.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${gemini.retry.base-delay-ms:250}")
+    private long baseDelayMs = 250;
+
+    @Value("${gemini.retry.max-delay-ms:2000}")
+    private long maxDelayMs = 2000;
+
+    @Value("${gemini.retry.budget.percent:10}")
+    private int budgetPercent = 10;
+
+    @Value("${gemini.retry.budget.min-per-second:1}")
+    private int budgetMinPerSecond = 1;
+
+    @Value("${gemini.hedge.enabled:false}")
+    private boolean hedgeEnabled = false;
+
+    @Value("${gemini.hedge.percentile:95}")
+    private int hedgePercentile = 95;
+
+    @Value("${gemini.hedge.min-delay-ms:1000}")
+    private long hedgeMinDelayMs = 1000;
+
+    @Value("${gemini.hedge.min-samples:20}")
+    private int hedgeMinSamples = 20;
+
+    private final ThreadPoolTaskExecutor geminiHedgeExecutor;
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter budgetRejected;
+    private final Counter hedgeWon;
+
+    private RetryBudget budget;
+
+    // Latencies of recent successful first attempts, ring buffer, guarded by itself
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyPos, latencyCount;
+
+    public GeminiRetryPolicy(ThreadPoolTaskExecutor geminiHedgeExecutor, MeterRegistry meterRegistry) {
+        this.geminiHedgeExecutor = geminiHedgeExecutor;
+        this.retries = Counter.builder("gemini.retry.attempts").tag("kind", "retry").register(meterRegistry);
+        this.hedges  = Counter.builder("gemini.retry.attempts").tag("kind", "hedge").register(meterRegistry);
+        this.budgetRejected = Counter.builder("gemini.retry.rejected").tag("reason", "budget")
+                .description("Retries or hedges skipped because the retry budget was spent")
+                .register(meterRegistry);
+        this.hedgeWon = Counter.builder("gemini.hedge.won")
+                .description("Hedged calls answered by the second attempt")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        budget = new RetryBudget(budgetPercent, budgetMinPerSecond, 10);
+    }
+
+    /**
+     * Run {@code attempt} with retries, and hedged when {@code hedgeable} and
+     * hedging is enabled. Each attempt must be a complete, repeatable call.
+     * Only hedgeable calls feed the hedge-delay latency samples — a stream's
+     * duration is the length of the answer, not upstream latency.
+     *
+     * @param mode metric/log tag
+     * @throws RuntimeException the last attempt's exception, unwrapped
+     */
+    public <T> T execute(String mode, Supplier<T> attempt, boolean hedgeable) {
+        budget.recordRequest();
+        for (int attemptNo = 1; ; attemptNo++) {
+            try {
+                if (!hedgeable) return attempt.get();
+                return hedgeEnabled ? hedged(mode, attempt) : timed(attempt);
+            } catch (UpstreamUnavailableException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                if (attemptNo >= maxAttempts || !isTransient(ex)) throw ex;
+
+                long delay = backoffMillis(attemptNo, retryAfterSeconds(ex));
+                if (delay < 0) throw ex;
+                if (!budget.tryWithdraw()) {
+                    budgetRejected.increment();
+                    log.warn("Gemini {} failed, retry budget spent — not retrying: {}", mode, ex.getMessage());
+                    throw ex;
+                }
+                retries.increment();
+                log.warn("Gemini {} attempt {} failed ({}), retrying in {} ms", mode, attemptNo, ex.getMessage(), delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /** Map any failure from a Gemini call to the user-safe GeminiApiException. */
+    public static GeminiApiException toApiException(Throwable ex) {
+        if (ex instanceof GeminiApiException api) return api;
+        int status = ex instanceof HttpStatusCodeException http ? http.getStatusCode().value() : 0;
+        return new GeminiApiException(FAILURE_MESSAGE, status, isTransient(ex), ex);
+    }
+
+    static boolean isTransient(Throwable ex) {
+        if (ex instanceof GeminiApiException api) return api.isTransient();
+        if (ex instanceof HttpStatusCodeException http) {
+            int status = http.getStatusCode().value();
+            return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+        }
+        if (ex instanceof ResourceAccessException) {
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** @return the delay before retry n (1-based), or -1 when Retry-After asks for longer than max-delay */
+    long backoffMillis(int attemptNo, long retryAfterSeconds) {
+        if (retryAfterSeconds > 0) {
+            long wanted = TimeUnit.SECONDS.toMillis(retryAfterSeconds);
+            return wanted <= maxDelayMs ? wanted : -1;
+        }
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attemptNo - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static long retryAfterSeconds(RuntimeException ex) {
+        if (!(ex instanceof HttpStatusCodeException http) || http.getResponseHeaders() == null) return 0;
+        String value = http.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException notSeconds) {
+            return 0;   // HTTP-date form — fall back to our own backoff
+        }
+    }
+
+    /* ── Hedging ─────────────────────────────────────────────────────── */
+
+    private <T> T hedged(String mode, Supplier<T> attempt) {
+        long delay = hedgeDelayMillis();
+        if (delay < 0) return timed(attempt);
+
+        CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> timed(attempt), geminiHedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            return timed(attempt);
+        }
+
+        try {
+            return primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            // fall through to hedge
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw toApiException(ex);
+        }
+
+        if (!budget.tryWithdraw()) {
+            budgetRejected.increment();
+            return join(primary);
+        }
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        int[] failures = {0};
+        primary.whenComplete((value, ex) -> settle(winner, value, ex, failures, false));
+        try {
+            CompletableFuture.supplyAsync(attempt, geminiHedgeExecutor)
+                    .whenComplete((value, ex) -> settle(winner, value, ex, failures, true));
+        } catch (RejectedExecutionException ex) {
+            return join(primary);
+        }
+        hedges.increment();
+        log.debug("Gemini {} slower than {} ms, hedging", mode, delay);
+        return join(winner);
+    }
+
+    private void settle(CompletableFuture<?> winner, Object value, Throwable ex, int[] failures, boolean hedge) {
+        if (ex == null) {
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Object> target = (CompletableFuture<Object>) winner;
+            synchronized (failures) {
+                if (target.isDone()) return;
+                // Counted before completing, so the caller never sees the result ahead of the metric
+                if (hedge) hedgeWon.increment();
+                target.complete(value);
+            }
+            return;
+        }
+        synchronized (failures) {
+            // Only fail once both attempts have failed; report the last failure
+            if (++failures[0] == 2) winner.completeExceptionally(ex);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw toApiException(ex);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException re) return re;
+        if (cause instanceof Error err) throw err;
+        return toApiException(cause);
+    }
+
+    private <T> T timed(Supplier<T> attempt) {
+        long start = System.nanoTime();
+        T result = attempt.get();
+        recordLatency(System.nanoTime() - start);
+        return result;
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyPos] = nanos;
+            latencyPos = (latencyPos + 1) % latencies.length;
+            if (latencyCount < latencies.length) latencyCount++;
+        }
+    }
+
+    /** @return the hedge delay, or -1 while too few latencies are known */
+    long hedgeDelayMillis() {
+        long[] sorted;
+        synchronized (latencies) {
+            if (latencyCount < Math.max(1, hedgeMinSamples)) return -1;
+            sorted = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(hedgePercentile / 100.0 * sorted.length) - 1);
+        return Math.max(hedgeMinDelayMs, TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]));
+    }
+}
@@ -0,0 +1,349 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Global admission of Gemini calls against the shared API key's quota,
+ * shared fairly between users.
+ *
+ * Why this exists: every user's generations go out under one
+ * gemini.api.key. RateLimiterService and the per-user in-flight cap bound
+ * each user, but not their sum — a few heavy users (or one batch) could
+ * spend the key's whole requests-per-minute, and everyone else got 429s
+ * from Gemini or waited behind them in retries.
+ *
+ * Quota: two token buckets, one counting requests (requests-per-minute)
+ * and one counting Gemini tokens (tokens-per-minute), each holding up to
+ * burst-seconds of its rate. A call is charged one request plus its
+ * estimated tokens — prompt estimate + maxOutputTokens × candidateCount —
+ * and once Gemini reports usageMetadata the difference is refunded or
+ * charged. A call that throws gets its tokens back, and its request too
+ * when it never reached Gemini (UpstreamUnavailableException from the
+ * guard). 0 turns a bucket off; with both off every call passes straight
+ * through.
+ *
+ * Order: calls that cannot start at once wait in a queue ordered by
+ * weighted fair queuing (self-clocked, SCFQ) over users. Each call gets a
+ * finish tag = max(virtual time, the user's previous finish tag) +
+ * tokens / weight, the lowest tag goes next, and the virtual time moves to
+ * the tag of the call last let through. A user with many calls queued
+ * therefore pushes only their own calls back; someone arriving with one
+ * call is served after at most about one call per other active user. A
+ * call that leaves the queue without being served takes its share back
+ * off the user's tag.
+ *
+ * Tiers: users listed in priority-users get priority-weight (default 4)
+ * instead of 1, i.e. that much more of the key while the queue is
+ * contended. There is no strict priority — the standard tier is never
+ * starved.
+ *
+ * Calls fail fast with UpstreamUnavailableException (503 + Retry-After)
+ * when max-queue calls are already waiting (queue_full) or after waiting
+ * max-wait-ms (queue_timeout). The scheduler is taken per attempt, inside
+ * GeminiRetryPolicy, so retries and hedges are charged too; the per-user
+ * in-flight slot (GeminiCallGuard) is held while waiting. Callers run
+ * GeminiCallGuard.checkAdmission() first, so an attempt the breaker or the
+ * concurrency limit would refuse anyway does not queue here.
+ *
+ * Metrics:
+ *   gemini.scheduler.wait{tier}                 time from arrival to start
+ *   gemini.scheduler.queued                     calls waiting now
+ *   gemini.scheduler.rejected{reason=queue_full|queue_timeout}
+ *   gemini.scheduler.available{bucket=requests|tokens}
+ *
+ * State is in-memory (single instance), same trade-off as RateLimiterService:
+ * with several instances, divide the key's limits between them.
+ */
+@Service
+@Slf4j
+public class GeminiScheduler {
+
+    static final String PRIORITY = "priority";
+    static final String STANDARD = "standard";
+
+    private static final long REJECT_RETRY_AFTER_S = 2;
+
+    @Value("${gemini.scheduler.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gemini.scheduler.requests-per-minute:0}")
+    private int requestsPerMinute = 0;
+
+    @Value("${gemini.scheduler.tokens-per-minute:0}")
+    private long tokensPerMinute = 0;
+
+    @Value("${gemini.scheduler.burst-seconds:10}")
+    private int burstSeconds = 10;
+
+    @Value("${gemini.scheduler.max-queue:200}")
+    private int maxQueue = 200;
+
+    @Value("${gemini.scheduler.max-wait-ms:10000}")
+    private long maxWaitMs = 10000;
+
+    @Value("${gemini.scheduler.priority-users:}")
+    private String priorityUserList = "";
+
+    @Value("${gemini.scheduler.priority-weight:4}")
+    private double priorityWeight = 4;
+
+    /** tokens = charge to the token bucket (0 when it is off); share = cost / weight; finish = WFQ tag. */
+    private record Ticket(String user, long tokens, double share, double finish, long seq) { }
+
+    // ── Buckets and queue, guarded by lock ──
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(Ticket::finish).thenComparingLong(Ticket::seq));
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long   nextSeq;
+    private double requestCapacity, tokenCapacity;
+    private double requestsAvailable, tokensAvailable;
+    private long   refilledAt;
+
+    private Set<String> priorityUsers = Set.of();
+
+    private final Map<String, Timer> waitTimers;
+    private final Counter rejectedFull;
+    private final Counter rejectedTimeout;
+
+    public GeminiScheduler(MeterRegistry meterRegistry) {
+        this.waitTimers = Map.of(
+                PRIORITY, waitTimer(meterRegistry, PRIORITY),
+                STANDARD, waitTimer(meterRegistry, STANDARD));
+        this.rejectedFull = Counter.builder("gemini.scheduler.rejected").tag("reason", "queue_full")
+                .description("Gemini calls refused because too many were already waiting for the key's quota")
+                .register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("gemini.scheduler.rejected").tag("reason", "queue_timeout")
+                .description("Gemini calls that waited max-wait-ms for the key's quota and gave up")
+                .register(meterRegistry);
+        Gauge.builder("gemini.scheduler.queued", this, GeminiScheduler::queued)
+                .register(meterRegistry);
+        Gauge.builder("gemini.scheduler.available", this, s -> s.available(true))
+                .tag("bucket", "requests").register(meterRegistry);
+        Gauge.builder("gemini.scheduler.available", this, s -> s.available(false))
+                .tag("bucket", "tokens").register(meterRegistry);
+    }
+
+    private static Timer waitTimer(MeterRegistry registry, String tier) {
+        return Timer.builder("gemini.scheduler.wait")
+                .description("Time Gemini calls waited for the shared key's quota")
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    @PostConstruct
+    void init() {
+        requestCapacity = Math.max(1, requestsPerMinute * burstSeconds / 60.0);
+        tokenCapacity   = Math.max(1, tokensPerMinute * burstSeconds / 60.0);
+        requestsAvailable = requestCapacity;
+        tokensAvailable   = tokenCapacity;
+        refilledAt = System.nanoTime();
+        priorityUsers = Arrays.stream(priorityUserList.split(","))
+                .map(String::trim).filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        if (active()) {
+            log.info("Gemini scheduler: {} requests/min, {} tokens/min, {} priority users",
+                    requestsPerMinute, tokensPerMinute, priorityUsers.size());
+        }
+    }
+
+    /**
+     * Run one upstream call once the key's quota allows it and it is this
+     * call's turn, then settle the token charge with the reported usage.
+     *
+     * @param estimatedTokens prompt + maximum output tokens of the call
+     * @throws UpstreamUnavailableException without calling upstream when the
+     *                                      queue is full or the wait too long
+     */
+    public GeminiResponse call(String username, long estimatedTokens, Supplier<GeminiResponse> upstream) {
+        if (!active()) return upstream.get();
+        long charged = acquire(username, estimatedTokens);
+        GeminiResponse response;
+        try {
+            response = upstream.get();
+        } catch (UpstreamUnavailableException ex) {
+            // Refused in-process (circuit open, overloaded) — nothing reached Gemini
+            refund(charged, true);
+            throw ex;
+        } catch (RuntimeException | Error ex) {
+            refund(charged, false);
+            throw ex;
+        }
+        if (charged > 0 && response.totalTokens() > 0) settle(charged, response.totalTokens());
+        return response;
+    }
+
+    String tierOf(String username) {
+        return username != null && priorityUsers.contains(username) ? PRIORITY : STANDARD;
+    }
+
+    private boolean active() {
+        return enabled && (requestsPerMinute > 0 || tokensPerMinute > 0);
+    }
+
+    /** @return tokens charged, to be settled; 0 when the scheduler is off */
+    long acquire(String username, long estimatedTokens) {
+        if (!active()) return 0;
+        String user = username == null ? "" : username;
+        String tier = tierOf(username);
+        long cost = Math.max(1, estimatedTokens);
+        long tokens = tokensPerMinute > 0 ? (long) Math.min(tokenCapacity, cost) : 0;
+        long arrived = System.nanoTime();
+        long deadline = arrived + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+
+        lock.lock();
+        try {
+            if (queue.size() >= maxQueue) {
+                rejectedFull.increment();
+                throw new UpstreamUnavailableException("queue_full",
+                        "The AI service is busy. Please try again in a few seconds.", REJECT_RETRY_AFTER_S);
+            }
+            double weight = tier.equals(PRIORITY) ? priorityWeight : 1;
+            double start = Math.max(virtualTime, lastFinish.getOrDefault(user, 0.0));
+            double share = cost / weight;
+            Ticket ticket = new Ticket(user, tokens, share, start + share, nextSeq++);
+            lastFinish.put(user, ticket.finish());
+            queue.add(ticket);
+
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long untilQuota = Long.MAX_VALUE;
+                    if (queue.peek() == ticket) {
+                        refill(now);
+                        untilQuota = nanosUntilAvailable(tokens);
+                        if (untilQuota <= 0) {
+                            dispatch(ticket);
+                            waitTimers.get(tier).record(now - arrived, TimeUnit.NANOSECONDS);
+                            return tokens;
+                        }
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        abandon(ticket);
+                        rejectedTimeout.increment();
+                        throw new UpstreamUnavailableException("queue_timeout",
+                                "The AI service is busy. Please try again in a few seconds.", REJECT_RETRY_AFTER_S);
+                    }
+                    changed.awaitNanos(Math.min(untilQuota, remaining));
+                }
+            } catch (InterruptedException ex) {
+                abandon(ticket);
+                Thread.currentThread().interrupt();
+                throw new UpstreamUnavailableException("queue_timeout",
+                        "The AI service is busy. Please try again in a few seconds.", REJECT_RETRY_AFTER_S);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Lock held, {@code ticket} at the head and the quota available. */
+    private void dispatch(Ticket ticket) {
+        queue.poll();
+        if (requestsPerMinute > 0) requestsAvailable -= 1;
+        tokensAvailable -= ticket.tokens();
+        virtualTime = ticket.finish();
+        // Users whose last tag is behind the virtual time start afresh anyway
+        lastFinish.values().removeIf(finish -> finish <= virtualTime);
+        changed.signalAll();
+    }
+
+    /**
+     * Lock held; {@code ticket} leaves the queue unserved. Its share comes
+     * off the user's tag, so their later calls are not pushed back by it.
+     */
+    private void abandon(Ticket ticket) {
+        queue.remove(ticket);
+        lastFinish.computeIfPresent(ticket.user(), (user, finish) -> {
+            double restored = finish - ticket.share();
+            return restored > virtualTime ? restored : null;
+        });
+        changed.signalAll();
+    }
+
+    private void settle(long charged, long actual) {
+        lock.lock();
+        try {
+            tokensAvailable = Math.min(tokenCapacity, tokensAvailable + charged - actual);
+            if (actual < charged) changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Give back a call's token charge and, if it never went out, its request. */
+    private void refund(long charged, boolean request) {
+        lock.lock();
+        try {
+            tokensAvailable = Math.min(tokenCapacity, tokensAvailable + charged);
+            if (request && requestsPerMinute > 0) {
+                requestsAvailable = Math.min(requestCapacity, requestsAvailable + 1);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Lock held. */
+    private void refill(long now) {
+        double seconds = (now - refilledAt) / 1e9;
+        refilledAt = now;
+        requestsAvailable = Math.min(requestCapacity, requestsAvailable + seconds * requestsPerMinute / 60.0);
+        tokensAvailable   = Math.min(tokenCapacity,   tokensAvailable   + seconds * tokensPerMinute / 60.0);
+    }
+
+    /** Lock held; 0 when both buckets can pay for the call now. */
+    private long nanosUntilAvailable(long tokens) {
+        double seconds = 0;
+        if (requestsPerMinute > 0 && requestsAvailable < 1) {
+            seconds = (1 - requestsAvailable) * 60.0 / requestsPerMinute;
+        }
+        if (tokens > 0 && tokensAvailable < tokens) {
+            seconds = Math.max(seconds, (tokens - tokensAvailable) * 60.0 / tokensPerMinute);
+        }
+        return (long) Math.ceil(seconds * 1e9);
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double available(boolean requests) {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return requests ? requestsAvailable : tokensAvailable;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, in-process cache of parsed Gemini generations.
+ *
+ * Why this exists: users paste the same newsletter or vendor email many times
+ * a day. Every /generate used to cost a full Gemini round trip (2–8s) and a
+ * unit of the shared API quota, even when the answer had just been produced.
+ *
+ * Key: SHA-256 of the normalized subject, content, tone, language, generation
+ * mode and prompt version — see {@link #key}. Whitespace runs are collapsed
+ * and tone/language are lower-cased so trivially different pastes still hit.
+ * The prompt version is part of the key so a prompt change never serves
+ * answers produced by the old prompt.
+ *
+ * Eviction: LinkedHashMap in access order (LRU) capped at max-entries, plus a
+ * TTL checked on read. /regenerate never reads or writes the cache — users
+ * press it precisely because they want something new.
+ *
+ * Counters (hits = Gemini round trips saved) are exposed through Micrometer:
+ *   gemini.cache.requests{result=hit|miss}
+ *   gemini.cache.evictions{cause=size|expired}
+ *   gemini.cache.size
+ *
+ * State is in-memory (single instance), same trade-off as RateLimiterService.
+ */
+@Service
+public class GenerationCacheService implements MeterBinder {
+
+    @Value("${gemini.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gemini.cache.max-entries:500}")
+    private int maxEntries = 500;
+
+    @Value("${gemini.cache.ttl-seconds:1800}")
+    private long ttlSeconds = 1800;
+
+    private final AtomicLong hits           = new AtomicLong();
+    private final AtomicLong misses         = new AtomicLong();
+    private final AtomicLong sizeEvictions  = new AtomicLong();
+    private final AtomicLong expirations    = new AtomicLong();
+
+    // Access-ordered so iteration order is least-recently-used first.
+    // Guarded by synchronized(entries) — every operation is O(1) and never
+    // performs I/O while holding the lock.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                sizeEvictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private record Entry(Object value, long expiresAt) { }
+
+    /**
+     * Look up a cached generation.
+     *
+     * @return the cached value, or null on a miss (absent, expired or disabled)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        if (!enabled || key == null) return null;
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            if (now >= entry.expiresAt()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return (T) entry.value();
+        }
+    }
+
+    /**
+     * Store a generation. Values must be immutable — they are shared between
+     * every request that hits the same key.
+     */
+    public void put(String key, Object value) {
+        if (!enabled || key == null || value == null) return;
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+        synchronized (entries) {
+            entries.put(key, new Entry(value, expiresAt));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount()      { return hits.get(); }
+    public long missCount()     { return misses.get(); }
+    public long evictionCount() { return sizeEvictions.get() + expirations.get(); }
+
+    /**
+     * Build the content-addressed cache key.
+     *
+     * @param mode          generation mode ("multi", "single") — different
+     *                      modes produce different response shapes
+     * @param promptVersion version of the prompt template used
+     * @param request       incoming request
+     * @param language      resolved language (default already applied)
+     */
+    public static String key(String mode, String promptVersion, EmailRequest request, String language) {
+        StringBuilder material = new StringBuilder(256)
+                .append(mode).append('\u0000')
+                .append(promptVersion).append('\u0000')
+                .append(normalize(request.getSubject())).append('\u0000')
+                .append(normalize(request.getEmailContent())).append('\u0000')
+                .append(normalize(request.getTone()).toLowerCase(Locale.ROOT)).append('\u0000')
+                .append(normalize(language).toLowerCase(Locale.ROOT));
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(material.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is mandatory on every JRE — this cannot happen
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    /** Trim and collapse every whitespace run to a single space. */
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) sb.append(' ');
+                pendingSpace = false;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("gemini.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Generation cache lookups served without calling Gemini")
+                .register(registry);
+        FunctionCounter.builder("gemini.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Generation cache lookups that fell through to Gemini")
+                .register(registry);
+        FunctionCounter.builder("gemini.cache.evictions", sizeEvictions, AtomicLong::get)
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("gemini.cache.evictions", expirations, AtomicLong::get)
+                .tag("cause", "expired")
+                .register(registry);
+        Gauge.builder("gemini.cache.size", this, GenerationCacheService::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,287 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.entity.GenerationJob;
+import com.email.writer.entity.GenerationJob.Status;
+import com.email.writer.repository.GenerationJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persisted queue of asynchronous generations.
+ *
+ * Why this exists: holding an HTTP request open for a 10–30s Gemini call
+ * does not survive proxies that cut idle connections or mobile clients
+ * that switch networks, and it ties up a Tomcat thread for the whole call.
+ * POST /api/v1/email/jobs stores the request and answers 202 with a job id
+ * at once; GenerationJobWorker drains the table; clients poll (or
+ * long-poll) GET /api/v1/email/jobs/{id}.
+ *
+ * Lifecycle: QUEUED → RUNNING (claimed, leased) → SUCCEEDED | FAILED.
+ * A transient failure (Gemini unavailable or overloaded) puts the job back
+ * to QUEUED with a run_after delay until max-attempts is reached. A call
+ * refused by the user's own in-flight cap or token quota never started,
+ * so it is requeued without using an attempt. Finished jobs are deleted
+ * after retention-hours.
+ *
+ * Long-poll: the worker calls {@link #finished} which wakes every waiter
+ * registered on this instance via {@link #onFinished}. A waiter on another
+ * instance simply times out and re-reads the row, so correctness never
+ * depends on the wake-up.
+ *
+ * Metrics: generation.jobs.queued (depth), generation.jobs.oldest_queued_age
+ * (seconds), generation.jobs.wait (queue time at claim),
+ * generation.jobs.completed{status}. Depth and age are refreshed every
+ * few seconds by the worker instead of querying on every scrape.
+ */
+@Service
+@Slf4j
+public class GenerationJobService {
+
+    /** Accepted values of POST /api/v1/email/jobs?mode= — the controller checks against this list too. */
+    public static final List<String> MODES = List.of("multi", "regenerate", "single");
+
+    @Value("${generation.jobs.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${generation.jobs.lease-seconds:300}")
+    private long leaseSeconds = 300;
+
+    @Value("${generation.jobs.retention-hours:24}")
+    private long retentionHours = 24;
+
+    private final GenerationJobRepository repo;
+    private final ObjectMapper objectMapper;
+    private final Timer waitTimer;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final AtomicLong queuedDepth = new AtomicLong();
+    private final AtomicLong oldestQueuedAgeSeconds = new AtomicLong();
+
+    private final ConcurrentHashMap<UUID, List<Runnable>> waiters = new ConcurrentHashMap<>();
+
+    public GenerationJobService(GenerationJobRepository repo, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.objectMapper = objectMapper;
+        this.waitTimer = Timer.builder("generation.jobs.wait")
+                .description("Time jobs spent queued before a worker claimed them")
+                .register(meterRegistry);
+        this.succeeded = Counter.builder("generation.jobs.completed").tag("status", "succeeded").register(meterRegistry);
+        this.failed    = Counter.builder("generation.jobs.completed").tag("status", "failed").register(meterRegistry);
+        Gauge.builder("generation.jobs.queued", queuedDepth, AtomicLong::get)
+                .description("Jobs waiting for a worker").register(meterRegistry);
+        Gauge.builder("generation.jobs.oldest_queued_age", oldestQueuedAgeSeconds, AtomicLong::get)
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    /* ── API side ────────────────────────────────────────────────────── */
+
+    @Transactional
+    public GenerationJob submit(String username, EmailRequest request, String mode) {
+        if (!MODES.contains(mode)) {
+            throw new IllegalArgumentException("mode must be one of " + String.join(", ", MODES));
+        }
+        GenerationJob job = new GenerationJob();
+        job.setUsername(username);
+        job.setMode(mode);
+        job.setEmailSubject(request.getSubject());
+        job.setEmailContent(request.getEmailContent());
+        job.setTone(request.getTone());
+        job.setLanguage(request.getLanguage());
+        job.setRunAfter(Instant.now());
+        GenerationJob saved = repo.save(job);
+        log.info("Job {} queued ({}) for user {}", saved.getId(), mode, username);
+        return saved;
+    }
+
+    /** @throws RuntimeException "Job not found" for unknown ids and other users' jobs alike */
+    @Transactional(readOnly = true)
+    public GenerationJob get(String username, UUID id) {
+        return repo.findById(id)
+                .filter(job -> job.getUsername().equals(username))
+                .orElseThrow(() -> new RuntimeException("Job not found with ID: " + id));
+    }
+
+    /** Client-facing representation: status, timestamps and, once done, result or error. */
+    public Map<String, Object> view(GenerationJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus().name().toLowerCase());
+        body.put("mode", job.getMode());
+        body.put("createdAt", job.getCreatedAt());
+        if (job.getStartedAt() != null)  body.put("startedAt", job.getStartedAt());
+        if (job.getFinishedAt() != null) body.put("finishedAt", job.getFinishedAt());
+        if (job.getStatus() == Status.SUCCEEDED) {
+            body.put("result", readResult(job.getResult()));
+        } else if (job.getStatus() == Status.FAILED) {
+            body.put("error", job.getErrorCode());
+            body.put("message", job.getErrorMessage());
+        }
+        return body;
+    }
+
+    /** Run {@code callback} once when the job finishes on this instance. */
+    public void onFinished(UUID id, Runnable callback) {
+        waiters.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(callback);
+    }
+
+    public void removeWaiter(UUID id, Runnable callback) {
+        waiters.computeIfPresent(id, (k, list) -> {
+            list.remove(callback);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /* ── Worker side ─────────────────────────────────────────────────── */
+
+    /**
+     * Claim up to {@code limit} runnable jobs: lock them (SKIP LOCKED), mark
+     * them RUNNING with a fresh lease and count the attempt. The locks are
+     * held only for this short transaction, not for the Gemini call.
+     */
+    @Transactional
+    public List<GenerationJob> claim(int limit) {
+        Instant now = Instant.now();
+        List<GenerationJob> jobs = repo.lockNextQueued(now, limit);
+        for (GenerationJob job : jobs) {
+            job.setStatus(Status.RUNNING);
+            job.setStartedAt(now);
+            job.setLeaseUntil(now.plusSeconds(leaseSeconds));
+            job.setAttempts(job.getAttempts() + 1);
+            if (job.getCreatedAt() != null && job.getAttempts() == 1) {
+                waitTimer.record(Duration.between(job.getCreatedAt(), now));
+            }
+        }
+        return jobs;
+    }
+
+    /*
+     * Completion: every outcome names the attempt the worker claimed and is
+     * applied only while the job is still RUNNING that attempt. After the
+     * reaper has taken the lease back, the late outcome is dropped — the
+     * job belongs to the next run (or has failed as worker_lost).
+     */
+
+    /** @return true when the result was stored, false when this run no longer owns the job */
+    @Transactional
+    public boolean succeed(UUID id, int claimedAttempt, Object result) {
+        int updated = repo.finishRunning(id, claimedAttempt, Status.SUCCEEDED, writeResult(result),
+                null, null, Instant.now(), Status.RUNNING);
+        if (updated == 0) return stale(id, claimedAttempt, "success");
+        succeeded.increment();
+        return true;
+    }
+
+    /** @return true when the job is now FAILED, false when this run no longer owns it */
+    @Transactional
+    public boolean fail(UUID id, int claimedAttempt, String errorCode, String message) {
+        int updated = repo.finishRunning(id, claimedAttempt, Status.FAILED, null,
+                errorCode, message, Instant.now(), Status.RUNNING);
+        if (updated == 0) return stale(id, claimedAttempt, errorCode);
+        failed.increment();
+        return true;
+    }
+
+    /**
+     * Put the job back in the queue after {@code delaySeconds}, or fail it
+     * if it has used all its attempts.
+     *
+     * @return true when the job is now FAILED, false when it was requeued
+     *         or this run no longer owns it
+     */
+    @Transactional
+    public boolean retryLater(UUID id, int claimedAttempt, long delaySeconds, String errorCode, String message) {
+        if (claimedAttempt >= maxAttempts) {
+            return fail(id, claimedAttempt, errorCode, message);
+        }
+        if (requeue(id, claimedAttempt, delaySeconds, 0)) {
+            log.info("Job {} requeued after attempt {} ({})", id, claimedAttempt, errorCode);
+        }
+        return false;
+    }
+
+    /**
+     * Put the job back in the queue without counting the attempt: the call
+     * was refused before it started (the user's own in-flight cap or token
+     * quota), so it says nothing about whether the job can succeed.
+     */
+    @Transactional
+    public void deferUnstarted(UUID id, int claimedAttempt, long delaySeconds, String reason) {
+        if (requeue(id, claimedAttempt, delaySeconds, 1)) {
+            log.debug("Job {} deferred without using an attempt ({})", id, reason);
+        }
+    }
+
+    /** Wake long-poll waiters. Call after the outcome is committed. */
+    public void finished(UUID id) {
+        List<Runnable> callbacks = waiters.remove(id);
+        if (callbacks != null) callbacks.forEach(Runnable::run);
+    }
+
+    /** Requeue or fail jobs whose worker disappeared, and purge old finished jobs. */
+    @Transactional
+    public void reap() {
+        Instant now = Instant.now();
+        int requeued = repo.requeueExpired(now, maxAttempts, Status.QUEUED, Status.RUNNING);
+        int lost = repo.failExpired(now, maxAttempts, Status.FAILED, Status.RUNNING);
+        int purged = repo.deleteFinishedBefore(now.minus(Duration.ofHours(retentionHours)));
+        if (requeued + lost > 0) log.warn("Jobs with expired leases: {} requeued, {} failed", requeued, lost);
+        if (lost > 0) failed.increment(lost);
+        if (purged > 0) log.debug("Purged {} finished jobs", purged);
+    }
+
+    @Transactional(readOnly = true)
+    public void refreshQueueMetrics() {
+        queuedDepth.set(repo.countByStatus(Status.QUEUED));
+        Instant oldest = repo.findOldestCreatedAt(Status.QUEUED);
+        oldestQueuedAgeSeconds.set(oldest == null ? 0 : Duration.between(oldest, Instant.now()).toSeconds());
+    }
+
+    private boolean requeue(UUID id, int claimedAttempt, long delaySeconds, int refund) {
+        Instant runAfter = Instant.now().plusSeconds(Math.max(1, delaySeconds));
+        int updated = repo.requeueRunning(id, claimedAttempt, runAfter, refund, Status.QUEUED, Status.RUNNING);
+        return updated > 0 || stale(id, claimedAttempt, "requeue");
+    }
+
+    private boolean stale(UUID id, int claimedAttempt, String outcome) {
+        log.warn("Job {} attempt {} lost its lease; dropping late {}", id, claimedAttempt, outcome);
+        return false;
+    }
+
+    private String writeResult(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialise job result", ex);
+        }
+    }
+
+    private Map<String, Object> readResult(String json) {
+        if (json == null) return Map.of();
+        try {
+            return objectMapper.readValue(json, new TypeReference<>() {});
+        } catch (JsonProcessingException ex) {
+            log.error("Stored job result is not valid JSON: {}", ex.getMessage());
+            return Map.of();
+        }
+    }
+}
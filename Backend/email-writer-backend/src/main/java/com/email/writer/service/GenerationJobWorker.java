@@ -0,0 +1,179 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.entity.GenerationJob;
+import com.email.writer.exception.ConcurrencyLimitExceededException;
+import com.email.writer.exception.GeminiApiException;
+import com.email.writer.exception.TokenQuotaExceededException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the generation_jobs table.
+ *
+ * Every poll-interval-ms the poller claims as many jobs as there are free
+ * workers (GenerationJobService.claim, SKIP LOCKED) and hands them to
+ * geminiJobExecutor. Claiming only what can start right away means jobs
+ * never wait in memory where a restart would strand them — anything not
+ * yet claimed stays QUEUED in the database.
+ *
+ * Per user: at most per-user-threads (default 2) of a user's jobs run at
+ * once on this instance, below the per-user in-flight cap of 3
+ * (GeminiCallGuard) — the same split as /generate-batch — so queued jobs
+ * leave the user a slot for interactive /generate calls. A claimed job
+ * over that share goes straight back to the queue without using an attempt.
+ *
+ * Outcomes:
+ *   success                           → SUCCEEDED with the result JSON
+ *   user at in-flight cap / token
+ *   quota used up                     → back to QUEUED after the Retry-After,
+ *                                       attempt not counted (never started)
+ *   circuit open / overloaded /
+ *   transient error                   → back to QUEUED after a delay
+ *   anything else                     → FAILED with a user-safe message
+ *
+ * Outcomes carry the attempt number from the claim, so a run whose lease
+ * the reaper already took back cannot overwrite the job's next run.
+ *
+ * Disable with generation.jobs.worker.enabled=false to run an API-only
+ * instance; jobs then wait for an instance that has workers.
+ */
+@Component
+@Slf4j
+public class GenerationJobWorker {
+
+    private static final String FAILURE_MESSAGE = "Failed to generate email replies. Please submit the job again.";
+    private static final long   TRANSIENT_RETRY_SECONDS = 10;
+    private static final long   USER_BUSY_RETRY_SECONDS = 2;
+
+    @Value("${generation.jobs.worker.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${generation.jobs.worker.threads:4}")
+    private int threads = 4;
+
+    @Value("${generation.jobs.worker.per-user-threads:2}")
+    private int perUserThreads = 2;
+
+    private final GenerationJobService jobService;
+    private final EmailGeneratorService emailGeneratorService;
+    private final ThreadPoolTaskExecutor geminiJobExecutor;
+    private final AtomicInteger running = new AtomicInteger();
+    private final ConcurrentHashMap<String, AtomicInteger> runningPerUser = new ConcurrentHashMap<>();
+
+    public GenerationJobWorker(GenerationJobService jobService,
+                               EmailGeneratorService emailGeneratorService,
+                               ThreadPoolTaskExecutor geminiJobExecutor) {
+        this.jobService = jobService;
+        this.emailGeneratorService = emailGeneratorService;
+        this.geminiJobExecutor = geminiJobExecutor;
+    }
+
+    @Scheduled(fixedDelayString = "${generation.jobs.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled) return;
+        int free = threads - running.get();
+        if (free <= 0) return;
+
+        List<GenerationJob> jobs;
+        try {
+            jobs = jobService.claim(free);
+        } catch (RuntimeException ex) {
+            log.warn("Claiming generation jobs failed: {}", ex.getMessage());
+            return;
+        }
+        for (GenerationJob job : jobs) {
+            AtomicInteger userRunning = runningPerUser.computeIfAbsent(job.getUsername(), k -> new AtomicInteger());
+            if (userRunning.incrementAndGet() > perUserThreads) {
+                release(job.getUsername(), userRunning);
+                jobService.deferUnstarted(job.getId(), job.getAttempts(), USER_BUSY_RETRY_SECONDS, "per_user_threads");
+                continue;
+            }
+            running.incrementAndGet();
+            try {
+                geminiJobExecutor.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        running.decrementAndGet();
+                        release(job.getUsername(), userRunning);
+                    }
+                });
+            } catch (TaskRejectedException ex) {
+                // Pool shutting down — let the lease expire and the reaper requeue it
+                running.decrementAndGet();
+                release(job.getUsername(), userRunning);
+                log.warn("Job {} could not be started: {}", job.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${generation.jobs.reap-interval-ms:30000}")
+    public void maintain() {
+        if (!enabled) return;
+        try {
+            jobService.reap();
+            jobService.refreshQueueMetrics();
+        } catch (RuntimeException ex) {
+            log.warn("Generation job maintenance failed: {}", ex.getMessage());
+        }
+    }
+
+    void run(GenerationJob job) {
+        UUID id = job.getId();
+        int attempt = job.getAttempts();
+        boolean finished = false;
+        try {
+            Object result = generate(job);
+            finished = jobService.succeed(id, attempt, result);
+        } catch (UpstreamUnavailableException ex) {
+            finished = jobService.retryLater(id, attempt, ex.getRetryAfterSeconds(), "upstream_unavailable", ex.getMessage());
+        } catch (ConcurrencyLimitExceededException ex) {
+            // The user's own calls are using their slots — wait, don't burn an attempt
+            jobService.deferUnstarted(id, attempt, ex.getRetryAfterSeconds(), "too_many_in_flight");
+        } catch (TokenQuotaExceededException ex) {
+            jobService.deferUnstarted(id, attempt, ex.getRetryAfterSeconds(), "token_quota_exceeded");
+        } catch (GeminiApiException ex) {
+            if (ex.isTransient()) {
+                finished = jobService.retryLater(id, attempt, TRANSIENT_RETRY_SECONDS, "generation_failed", FAILURE_MESSAGE);
+            } else {
+                finished = jobService.fail(id, attempt, "generation_failed", FAILURE_MESSAGE);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Job {} failed", id, ex);
+            finished = jobService.fail(id, attempt, "generation_failed", FAILURE_MESSAGE);
+        } finally {
+            if (finished) jobService.finished(id);
+        }
+    }
+
+    private void release(String username, AtomicInteger userRunning) {
+        if (userRunning.decrementAndGet() <= 0) {
+            runningPerUser.remove(username, userRunning);
+        }
+    }
+
+    private Object generate(GenerationJob job) {
+        EmailRequest request = new EmailRequest();
+        request.setSubject(job.getEmailSubject());
+        request.setEmailContent(job.getEmailContent());
+        request.setTone(job.getTone());
+        request.setLanguage(job.getLanguage());
+
+        return switch (job.getMode()) {
+            case "single"     -> emailGeneratorService.generateEmailReply(job.getUsername(), request);
+            case "regenerate" -> emailGeneratorService.generateMultipleEmailReplies(job.getUsername(), request, true);
+            default           -> emailGeneratorService.generateMultipleEmailReplies(job.getUsername(), request, false);
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical in-flight Gemini generations.
+ *
+ * Why this exists: a double-submit, or several teammates pasting the same
+ * forwarded email at the same moment, used to start one blocking Gemini call
+ * per request — each holding a Tomcat thread for up to the 30s read timeout.
+ * The GenerationCacheService only helps once the first call has finished.
+ *
+ * The first caller for a fingerprint (the "leader") runs the upstream call;
+ * every concurrent caller with the same fingerprint waits on the leader's
+ * future and receives the same parsed result — or the same exception.
+ * The entry is removed as soon as the leader finishes, so nothing is cached
+ * here; the leader writes the result to GenerationCacheService before
+ * completing, which closes the gap for late arrivals.
+ *
+ * A joining caller waits at most max-wait-ms. The leader always completes
+ * its future, but with retries, scheduler queueing and the read timeout a
+ * leader can legitimately take max-attempts × (scheduler max-wait + read
+ * timeout) plus backoff — about two minutes with the defaults — so the
+ * bound is set just above that. A caller that gives up gets 503
+ * coalesce_timeout; the leader keeps running.
+ *
+ * Rate limiting is unaffected: each controller call still runs
+ * canMakeRequest()/recordRequest() for its own user before reaching this
+ * class, so a coalesced request counts exactly like one that went upstream.
+ *
+ * Metric: gemini.coalesced.requests — requests that piggy-backed on a leader.
+ */
+@Service
+@Slf4j
+public class InFlightRequestCoalescer implements MeterBinder {
+
+    private static final long TIMEOUT_RETRY_AFTER_S = 5;
+
+    @Value("${gemini.coalesce.max-wait-ms:125000}")
+    private long maxWaitMs = 125000;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Run {@code call}, or join an identical call already in flight.
+     *
+     * @param key  prompt fingerprint; null disables coalescing (e.g. /regenerate,
+     *             whose prompt is unique by design)
+     * @param call the upstream call + parse
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        if (key == null) return call.get();
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            log.debug("Joined in-flight generation {}", key);
+            return (T) await(leader);
+        }
+
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public long coalescedCount() { return coalesced.get(); }
+
+    public int inFlightCount() { return inFlight.size(); }
+
+    private Object await(CompletableFuture<Object> leader) {
+        try {
+            return leader.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException("Failed to generate email replies. Please try again.", cause);
+        } catch (TimeoutException ex) {
+            log.warn("Gave up waiting {} ms for an in-flight generation", maxWaitMs);
+            throw new UpstreamUnavailableException("coalesce_timeout",
+                    "The AI service is busy. Please try again in a few seconds.", TIMEOUT_RETRY_AFTER_S);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for email generation", ex);
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("gemini.coalesced.requests", coalesced, AtomicLong::get)
+                .description("Generations that joined an identical in-flight Gemini call")
+                .register(registry);
+        Gauge.builder("gemini.inflight.keys", inFlight, ConcurrentHashMap::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,288 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Token budget for one generation: how much email goes into the prompt and
+ * how many output tokens the request asks for.
+ *
+ * Why this exists: emailContent has no size limit and used to be pasted
+ * into the prompt verbatim. A 20 KB thread meant several thousand prompt
+ * tokens — seconds of extra latency, most of the token quota, and with
+ * long enough threads a request over the model's context window.
+ * maxOutputTokens was a fixed 2048/1024 whatever the input.
+ *
+ * Input: email content estimated (TokenEstimator) above max-input-tokens is
+ * condensed to fit. The thread is cut into blocks — paragraphs, header
+ * blocks (From:/Sent:/Subject:, "On … wrote:", forwarded/original message
+ * separators) and quoted paragraphs — and kept in this order of priority:
+ *   1. the newest message, from the top, cut inside a block if it alone is
+ *      over budget
+ *   2. header blocks of older messages, so who said what stays visible
+ *   3. older paragraphs by score: questions, then numbers (dates, amounts,
+ *      order ids), then the opening paragraph of each message; quoted
+ *      ("> ") paragraphs last, they usually repeat an older message
+ * Kept blocks stay in their original order and every dropped run becomes a
+ * "[… N paragraphs omitted …]" marker, so the model knows text is missing.
+ * The result is deterministic, so the same email always trims the same
+ * way and cache keys (built from the untrimmed request) stay valid.
+ *
+ * Output: maxOutputTokens = request-tokens − estimated prompt tokens,
+ * clamped to [min-output-tokens, the mode's fixed maximum] and rounded
+ * down to 128 so GeminiRequestWriter caches a handful of suffixes, not
+ * one per prompt length.
+ *
+ * max-input-tokens=0 disables trimming, request-tokens=0 keeps the fixed
+ * maximums.
+ *
+ * Metrics: gemini.input.trimmed (emails condensed),
+ * gemini.input.trimmed_tokens (estimated tokens removed per email).
+ */
+@Service
+@Slf4j
+public class InputBudgetPolicy {
+
+    /** Email content that went into the prompt, and whether it had to be condensed. */
+    public record FittedInput(String content, boolean trimmed, int originalTokens, int tokens) {}
+
+    private static final int OUTPUT_STEP = 128;
+
+    private static final Pattern HEADER_LINE = Pattern.compile(
+            "(?:(?:from|sent|date|to|cc|subject|von|de|envoy\\u00e9|objet)\\s*:.*"
+                    + "|on\\s.{0,200}\\swrote:\\s*"
+                    + "|-{2,}\\s*(?:original message|forwarded message)\\s*-{2,}\\s*"
+                    + "|begin forwarded message:\\s*)",
+            Pattern.CASE_INSENSITIVE);
+
+    @Value("${gemini.budget.max-input-tokens:4000}")
+    private int maxInputTokens = 4000;
+
+    @Value("${gemini.budget.request-tokens:6000}")
+    private int requestTokens = 6000;
+
+    @Value("${gemini.budget.min-output-tokens:1024}")
+    private int minOutputTokens = 1024;
+
+    private final Counter trimmedCounter;
+    private final DistributionSummary trimmedTokens;
+
+    public InputBudgetPolicy(MeterRegistry meterRegistry) {
+        this.trimmedCounter = Counter.builder("gemini.input.trimmed")
+                .description("Emails condensed to fit the input token budget")
+                .register(meterRegistry);
+        this.trimmedTokens = DistributionSummary.builder("gemini.input.trimmed_tokens")
+                .description("Estimated tokens removed from an email by the input budget")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+    }
+
+    /** The email content to put into the prompt — unchanged when within budget. */
+    public FittedInput fit(String content) {
+        String text = content == null ? "" : content;
+        int tokens = TokenEstimator.estimate(text);
+        if (maxInputTokens <= 0 || tokens <= maxInputTokens) {
+            return new FittedInput(text, false, tokens, tokens);
+        }
+        String condensed = condense(text, maxInputTokens);
+        int kept = TokenEstimator.estimate(condensed);
+        trimmedCounter.increment();
+        trimmedTokens.record(tokens - kept);
+        log.info("Email input condensed from ~{} to ~{} tokens (budget {})", tokens, kept, maxInputTokens);
+        return new FittedInput(condensed, true, tokens, kept);
+    }
+
+    /** {@code base} with maxOutputTokens sized from what the prompt leaves of the request budget. */
+    public GenerationConfig sizeOutput(GenerationConfig base, String prompt) {
+        if (requestTokens <= 0) return base;
+        int remaining = requestTokens - TokenEstimator.estimate(prompt);
+        int floor = Math.min(minOutputTokens, base.maxOutputTokens());
+        int sized = Math.max(floor, Math.min(base.maxOutputTokens(), remaining / OUTPUT_STEP * OUTPUT_STEP));
+        if (sized == base.maxOutputTokens()) return base;
+        return base.withMaxOutputTokens(sized);
+    }
+
+    /* ── Condensing ──────────────────────────────────────────────────── */
+
+    private enum Kind { TEXT, HEADER, QUOTED }
+
+    /** A run of non-blank lines of one kind, as offsets into the content — no copies. */
+    private static final class Block {
+        final Kind kind;
+        final int start;
+        int end;
+        int cutEnd = -1;      // set when the block was cut to fit
+        int tokens;
+        int score;
+        boolean newest;
+        boolean kept;
+
+        Block(Kind kind, int start, int end) {
+            this.kind  = kind;
+            this.start = start;
+            this.end   = end;
+        }
+    }
+
+    /**
+     * Condense {@code content} to about {@code budget} tokens. Linear in the
+     * input apart from sorting the older blocks; the omission markers may
+     * add a few tokens on top of the budget.
+     */
+    static String condense(String content, int budget) {
+        List<Block> blocks = split(content);
+
+        // The newest message runs up to the first header or quoted block after its own start
+        int i = 0;
+        if (!blocks.isEmpty() && blocks.get(0).kind == Kind.HEADER) i++;   // pasted "From: … Subject: …" on top
+        while (i < blocks.size() && blocks.get(i).kind == Kind.TEXT) i++;
+        for (int j = 0; j < i; j++) blocks.get(j).newest = true;
+
+        int left = budget;
+        for (Block block : blocks) {
+            if (!block.newest) break;
+            if (block.tokens <= left) {
+                block.kept = true;
+                left -= block.tokens;
+            } else {
+                int cut = cutPoint(content, block.start, TokenEstimator.prefixEnd(content, block.start, block.end, left));
+                if (cut > block.start) {
+                    block.kept = true;
+                    block.cutEnd = cut;
+                    left = 0;
+                }
+                break;
+            }
+        }
+
+        for (Block block : blocks) {
+            if (!block.newest && block.kind == Kind.HEADER && block.tokens <= left) {
+                block.kept = true;
+                left -= block.tokens;
+            }
+        }
+
+        List<Block> older = new ArrayList<>();
+        boolean afterHeader = false;
+        for (Block block : blocks) {
+            if (!block.newest && block.kind != Kind.HEADER) {
+                block.score = (contains(content, block, '?') ? 4 : 0)
+                        + (containsDigit(content, block) ? 2 : 0)
+                        + (afterHeader ? 1 : 0)
+                        - (block.kind == Kind.QUOTED ? 8 : 0);
+                older.add(block);
+            }
+            afterHeader = block.kind == Kind.HEADER;
+        }
+        // Stable sort — equal scores keep thread order, i.e. newer first
+        older.sort((a, b) -> Integer.compare(b.score, a.score));
+        for (Block block : older) {
+            if (left <= 0) break;
+            if (block.tokens <= left) {
+                block.kept = true;
+                left -= block.tokens;
+            }
+        }
+
+        StringBuilder out = new StringBuilder(Math.min(content.length(), budget * 4 + 256));
+        int omitted = 0;
+        for (Block block : blocks) {
+            if (!block.kept) {
+                omitted++;
+                continue;
+            }
+            if (omitted > 0) appendOmitted(out, omitted);
+            omitted = 0;
+            if (!out.isEmpty()) out.append("\n\n");
+            if (block.cutEnd < 0) {
+                out.append(content, block.start, block.end);
+            } else {
+                int end = block.cutEnd;
+                while (end > block.start && Character.isWhitespace(content.charAt(end - 1))) end--;
+                out.append(content, block.start, end).append(" […]");
+            }
+        }
+        if (omitted > 0) appendOmitted(out, omitted);
+        return out.toString();
+    }
+
+    /** Blocks are separated by blank lines and by every change between header, quoted and plain lines. */
+    private static List<Block> split(String content) {
+        List<Block> blocks = new ArrayList<>();
+        Block current = null;
+        int length = content.length();
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int newline = content.indexOf('\n', lineStart);
+            int lineEnd = newline < 0 ? length : newline;
+            int textEnd = lineEnd > lineStart && content.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            int first = lineStart;
+            while (first < textEnd && Character.isWhitespace(content.charAt(first))) first++;
+            if (first == textEnd) {
+                current = null;
+            } else {
+                Kind kind = content.charAt(first) == '>' ? Kind.QUOTED
+                        : isHeader(content, first, textEnd) ? Kind.HEADER
+                        : Kind.TEXT;
+                if (current == null || current.kind != kind) {
+                    current = new Block(kind, lineStart, textEnd);
+                    blocks.add(current);
+                } else {
+                    current.end = textEnd;
+                }
+            }
+            if (newline < 0) break;
+            lineStart = newline + 1;
+        }
+        for (Block block : blocks) block.tokens = TokenEstimator.estimate(content, block.start, block.end);
+        return blocks;
+    }
+
+    /** Only lines that can start a header pattern reach the regex. */
+    private static boolean isHeader(String content, int first, int end) {
+        switch (Character.toLowerCase(content.charAt(first))) {
+            case 'f', 's', 'd', 't', 'c', 'v', 'e', 'o', 'b', '-' -> {
+                return HEADER_LINE.matcher(content).region(first, end).matches();
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /** Back off to the last whitespace before {@code limit}, unless that loses more than a fifth. */
+    private static int cutPoint(String content, int start, int limit) {
+        int floor = start + (limit - start) * 4 / 5;
+        for (int i = limit; i > floor; i--) {
+            if (Character.isWhitespace(content.charAt(i - 1))) return i;
+        }
+        return limit;
+    }
+
+    private static boolean contains(String content, Block block, char c) {
+        int at = content.indexOf(c, block.start);
+        return at >= 0 && at < block.end;
+    }
+
+    private static boolean containsDigit(String content, Block block) {
+        for (int i = block.start; i < block.end; i++) {
+            if (Character.isDigit(content.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static void appendOmitted(StringBuilder out, int paragraphs) {
+        if (!out.isEmpty()) out.append("\n\n");
+        out.append(paragraphs == 1 ? "[… 1 paragraph omitted …]" : "[… " + paragraphs + " paragraphs omitted …]");
+    }
+}
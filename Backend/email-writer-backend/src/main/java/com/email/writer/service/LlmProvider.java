@@ -0,0 +1,37 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+
+import java.util.function.Consumer;
+
+/**
+ * A text-generation backend, as seen by EmailGeneratorService.
+ *
+ * Everything above this interface — prompts, caching, coalescing, the
+ * concurrency guard, retries, parsing, metrics — is provider-neutral.
+ * Everything below it (URL, auth, wire format) belongs to the provider.
+ * GeminiProvider is the production implementation; pointing it at the
+ * FakeGeminiServer (profile fake-gemini) runs the full request path,
+ * HTTP included, without spending quota.
+ *
+ * Implementations must be thread-safe and let transport exceptions
+ * (RestClientException and subclasses) escape unchanged: GeminiCallGuard
+ * and GeminiRetryPolicy classify failures by those types.
+ */
+public interface LlmProvider {
+
+    /** Short name for logs, e.g. "gemini". */
+    String name();
+
+    /** One complete generation. */
+    GeminiResponse generate(GenerationConfig config, String prompt);
+
+    /**
+     * Streamed generation: every text fragment goes to {@code onText} in
+     * order as it arrives. Throwing from {@code onText} aborts the call.
+     *
+     * @return the final event's finishReason and token usage; its text is
+     *         only the last fragment
+     */
+    GeminiResponse stream(GenerationConfig config, String prompt, Consumer<String> onText);
+}
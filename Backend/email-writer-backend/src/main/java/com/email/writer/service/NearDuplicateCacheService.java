@@ -0,0 +1,425 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Similarity index over recent generations, behind the exact-match
+ * GenerationCacheService.
+ *
+ * Why this exists: a good share of what users paste is templated — order
+ * and shipping notifications, meeting invites, ticket updates — that
+ * differs from the last one only in a name, a date or an id. The exact
+ * cache keys on a SHA-256 of the text, so every one of them was a full
+ * Gemini call with the same answer.
+ *
+ * Similarity: Jaccard similarity of the sets of words (lower-cased
+ * letter/digit runs) in subject + content, within a partition of mode,
+ * prompt version, tone and language (those must match exactly). Two emails
+ * are near-duplicates at min-similarity or above — at 0.9 that is one
+ * changed word in thirty, three in sixty.
+ *
+ * Lookup: MinHash + LSH. A fingerprint is 32 MinHash values in 8 bands of
+ * 4; every entry is indexed under each band, and a lookup computes the
+ * exact Jaccard only against entries sharing a band with it. A pair at 0.9
+ * shares a band with probability > 0.999, at 0.3 with about 0.06, so the
+ * buckets stay small and the index is never scanned. (SimHash was tried
+ * first: on emails of 30–100 words one changed word moved a 64-bit
+ * fingerprint by 3–6 bits, too close to the noise between unrelated ones.)
+ *
+ * Safety: a near-duplicate is only served when the answer cannot carry
+ * the old email's specifics or contradict the new one. The lookup is
+ * refused (result=unsafe) and the request goes to Gemini when
+ *   - a word the old email had and the new one does not (the old name,
+ *     order number, date) appears in the cached summary or replies;
+ *   - the new email has more added words than removed ones — an insertion
+ *     rather than a substituted name or id;
+ *   - the emails differ in how many negations they contain ("not", "no",
+ *     "never", "cannot", "n't", …), counted with repeats, since one extra
+ *     "not" can flip the meaning without changing the word set;
+ *   - the words both emails share are not in the same order. Word sets
+ *     cannot see "refund Alice, not Bob" vs "refund Bob, not Alice", and
+ *     the index is shared by all users, so the two word sequences are
+ *     compared with the changed words left out.
+ * Emails under min-words are never matched, and emails over max-words are
+ * not indexed, which keeps an entry to a few KB.
+ *
+ * Eviction: LRU capped at max-entries plus a TTL checked on read, like
+ * GenerationCacheService; evicted entries are unlinked from their buckets.
+ * /regenerate neither reads nor writes the index.
+ *
+ * Metrics:
+ *   gemini.similar_cache.requests{result=hit|miss|unsafe}
+ *   gemini.similar_cache.lookup  (timer — bucket scan and safety check;
+ *                                 NearDuplicateCacheBenchmark covers fingerprinting)
+ *   gemini.similar_cache.evictions{cause=size|expired}
+ *   gemini.similar_cache.size
+ */
+@Service
+public class NearDuplicateCacheService implements MeterBinder {
+
+    /** Where a request falls in the index; null from {@link #fingerprint} when it is not indexed. */
+    public record Fingerprint(String partition, long[] words, long[] sequence, long[] bands, int negations) { }
+
+    private static final int BANDS = 8;
+    private static final int ROWS  = 4;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+    private static final long[] SEEDS = new long[BANDS * ROWS];
+    /** Sorted word hashes; "t" is what is left of "n't" (can't, won't, isn't). */
+    private static final long[] NEGATIONS;
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < SEEDS.length; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+        NEGATIONS = new WordHashes().words("not no never cannot t nor none nothing neither nobody unable without");
+    }
+
+    @Value("${gemini.similar-cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gemini.similar-cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${gemini.similar-cache.ttl-seconds:1800}")
+    private long ttlSeconds = 1800;
+
+    @Value("${gemini.similar-cache.min-similarity:0.9}")
+    private double minSimilarity = 0.9;
+
+    @Value("${gemini.similar-cache.min-words:30}")
+    private int minWords = 30;
+
+    @Value("${gemini.similar-cache.max-words:600}")
+    private int maxWords = 600;
+
+    private final AtomicLong hits          = new AtomicLong();
+    private final AtomicLong misses        = new AtomicLong();
+    private final AtomicLong unsafe        = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expirations   = new AtomicLong();
+    private Timer lookupTimer;
+
+    private record BandKey(String partition, long band) { }
+
+    private static final class Entry {
+        final Fingerprint fingerprint;
+        final long[] answerWords;
+        final Object value;
+        final long expiresAt;
+        final BandKey[] bands;
+        long lastProbe;   // probe that already compared this entry — it sits in up to 8 buckets
+
+        Entry(Fingerprint fingerprint, long[] answerWords, Object value, long expiresAt, BandKey[] bands) {
+            this.fingerprint = fingerprint;
+            this.answerWords = answerWords;
+            this.value       = value;
+            this.expiresAt   = expiresAt;
+            this.bands       = bands;
+        }
+    }
+
+    // Both guarded by synchronized(entries); nothing under the lock is more
+    // than a few bucket scans. Access-ordered, so iteration is LRU first.
+    private final LinkedHashMap<Entry, Boolean> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<BandKey, List<Entry>> buckets = new HashMap<>();
+    private long probes;
+
+    /** Fingerprint of a request, or null when the index is off or the email is outside min/max-words. */
+    public Fingerprint fingerprint(String mode, String promptVersion, EmailRequest request, String language) {
+        if (!enabled) return null;
+        WordHashes words = new WordHashes();
+        words.add(request.getSubject());
+        words.add(request.getEmailContent());
+        if (words.size < minWords || words.size > maxWords) return null;
+
+        long[] distinct = words.distinct();
+        long[] bands = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long combined = band;
+            for (int row = 0; row < ROWS; row++) {
+                long seed = SEEDS[band * ROWS + row];
+                long min = Long.MAX_VALUE;
+                for (long word : distinct) min = Math.min(min, mix(word ^ seed));
+                combined = combined * 0x9E3779B97F4A7C15L + min;
+            }
+            bands[band] = combined;
+        }
+        String partition = mode + '\u0000' + promptVersion + '\u0000'
+                + GenerationCacheService.normalize(request.getTone()).toLowerCase(Locale.ROOT) + '\u0000'
+                + GenerationCacheService.normalize(language).toLowerCase(Locale.ROOT);
+        return new Fingerprint(partition, distinct, Arrays.copyOf(words.hashes, words.size), bands, words.negations);
+    }
+
+    /**
+     * The value stored for the most similar indexed request at
+     * min-similarity or above, or null (absent, expired, unsafe to reuse,
+     * or no fingerprint).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Fingerprint fingerprint) {
+        if (fingerprint == null) return null;
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        try {
+            synchronized (entries) {
+                Entry best = null;
+                double bestSimilarity = minSimilarity;
+                List<Entry> expired = null;
+                long probe = ++probes;
+                for (BandKey band : bandKeys(fingerprint)) {
+                    List<Entry> bucket = buckets.get(band);
+                    if (bucket == null) continue;
+                    for (Entry entry : bucket) {
+                        if (now >= entry.expiresAt) {
+                            if (expired == null) expired = new ArrayList<>();
+                            expired.add(entry);
+                            continue;
+                        }
+                        if (entry.lastProbe == probe) continue;
+                        entry.lastProbe = probe;
+                        double similarity = jaccard(entry.fingerprint.words(), fingerprint.words());
+                        if (similarity >= bestSimilarity) {
+                            best = entry;
+                            bestSimilarity = similarity;
+                        }
+                    }
+                }
+                if (expired != null) {
+                    for (Entry entry : expired) {
+                        if (entries.remove(entry) != null) {
+                            unlink(entry);
+                            expirations.incrementAndGet();
+                        }
+                    }
+                }
+                if (best == null) {
+                    misses.incrementAndGet();
+                    return null;
+                }
+                if (unsafeToReuse(best, fingerprint)) {
+                    unsafe.incrementAndGet();
+                    return null;
+                }
+                entries.get(best);   // LRU touch
+                hits.incrementAndGet();
+                return (T) best.value;
+            }
+        } finally {
+            if (lookupTimer != null) lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Index a generation under its fingerprint. Values must be immutable —
+     * like GenerationCacheService, they are shared between requests.
+     */
+    public void put(Fingerprint fingerprint, Object value) {
+        if (fingerprint == null || value == null) return;
+        WordHashes answer = new WordHashes();
+        answer.collect(value);
+        Entry entry = new Entry(fingerprint, answer.distinct(), value,
+                System.currentTimeMillis() + ttlSeconds * 1000L, bandKeys(fingerprint));
+        synchronized (entries) {
+            entries.put(entry, Boolean.TRUE);
+            for (BandKey band : entry.bands) buckets.computeIfAbsent(band, k -> new ArrayList<>(2)).add(entry);
+            Iterator<Entry> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                unlink(evicted);
+                sizeEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /* ── Helpers ─────────────────────────────────────────────────────── */
+
+    /** MurmurHash3 finalizer — turns one FNV hash per word into 32 independent-enough MinHash functions. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static BandKey[] bandKeys(Fingerprint fingerprint) {
+        BandKey[] keys = new BandKey[BANDS];
+        for (int band = 0; band < BANDS; band++) keys[band] = new BandKey(fingerprint.partition(), fingerprint.bands()[band]);
+        return keys;
+    }
+
+    private void unlink(Entry entry) {
+        for (BandKey band : entry.bands) {
+            List<Entry> bucket = buckets.get(band);
+            if (bucket == null) continue;
+            bucket.remove(entry);
+            if (bucket.isEmpty()) buckets.remove(band);
+        }
+    }
+
+    /** |a ∩ b| / |a ∪ b| of two sorted distinct arrays, by merge. */
+    static double jaccard(long[] a, long[] b) {
+        int i = 0, j = 0, common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    /**
+     * A different number of negations, more words added than removed, a
+     * removed word of the indexed email found in the stored answer, or the
+     * shared words in a different order.
+     */
+    private static boolean unsafeToReuse(Entry entry, Fingerprint fingerprint) {
+        if (entry.fingerprint.negations() != fingerprint.negations()) return true;
+        long[] before = entry.fingerprint.words();
+        long[] now = fingerprint.words();
+        int i = 0, j = 0, removed = 0, added = 0;
+        while (i < before.length || j < now.length) {
+            if (j == now.length || (i < before.length && before[i] < now[j])) {
+                if (Arrays.binarySearch(entry.answerWords, before[i]) >= 0) return true;
+                removed++;
+                i++;
+            } else if (i == before.length || now[j] < before[i]) {
+                added++;
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return added > removed || !sameOrder(entry.fingerprint, fingerprint);
+    }
+
+    /**
+     * Whether both word sequences are the same once the words only one of
+     * them has are skipped — a substituted name or id passes, swapped roles
+     * ("Alice owes Bob" / "Bob owes Alice") or a moved word does not.
+     */
+    private static boolean sameOrder(Fingerprint before, Fingerprint now) {
+        long[] a = before.sequence();
+        long[] b = now.sequence();
+        int i = 0, j = 0;
+        while (true) {
+            while (i < a.length && Arrays.binarySearch(now.words(), a[i]) < 0) i++;
+            while (j < b.length && Arrays.binarySearch(before.words(), b[j]) < 0) j++;
+            if (i == a.length || j == b.length) return i == a.length && j == b.length;
+            if (a[i++] != b[j++]) return false;
+        }
+    }
+
+    /** FNV-1a hashes of the lower-cased letter/digit runs of some text, in order. */
+    private static final class WordHashes {
+        long[] hashes = new long[64];
+        int size;
+        int negations;
+
+        void add(String text) {
+            if (text == null) return;
+            int i = 0;
+            while (i < text.length()) {
+                if (!Character.isLetterOrDigit(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                long hash = FNV_OFFSET;
+                while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                    hash = (hash ^ Character.toLowerCase(text.charAt(i++))) * FNV_PRIME;
+                }
+                if (size == hashes.length) hashes = Arrays.copyOf(hashes, size * 2);
+                hashes[size++] = hash;
+                if (NEGATIONS != null && Arrays.binarySearch(NEGATIONS, hash) >= 0) negations++;
+            }
+        }
+
+        /** Every string inside a cached value — summary, replies. */
+        void collect(Object value) {
+            if (value instanceof String text) add(text);
+            else if (value instanceof Map<?, ?> map) map.values().forEach(this::collect);
+            else if (value instanceof Collection<?> items) items.forEach(this::collect);
+        }
+
+        long[] words(String text) {
+            add(text);
+            return distinct();
+        }
+
+        long[] distinct() {
+            long[] sorted = Arrays.copyOf(hashes, size);
+            Arrays.sort(sorted);
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) sorted[n++] = sorted[i];
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("gemini.similar_cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Near-duplicate lookups served without calling Gemini")
+                .register(registry);
+        FunctionCounter.builder("gemini.similar_cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Near-duplicate lookups with no indexed request similar enough")
+                .register(registry);
+        FunctionCounter.builder("gemini.similar_cache.requests", unsafe, AtomicLong::get)
+                .tag("result", "unsafe")
+                .description("Near-duplicates refused because the answer mentions what changed")
+                .register(registry);
+        FunctionCounter.builder("gemini.similar_cache.evictions", sizeEvictions, AtomicLong::get)
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("gemini.similar_cache.evictions", expirations, AtomicLong::get)
+                .tag("cause", "expired")
+                .register(registry);
+        Gauge.builder("gemini.similar_cache.size", this, NearDuplicateCacheService::size)
+                .register(registry);
+        lookupTimer = Timer.builder("gemini.similar_cache.lookup")
+                .description("Near-duplicate index lookup time")
+                .register(registry);
+    }
+}
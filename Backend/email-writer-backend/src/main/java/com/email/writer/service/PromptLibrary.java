@@ -0,0 +1,98 @@
+package com.email.writer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Loads and selects the versioned prompt templates in classpath:prompts/.
+ *
+ * Each version is a pair of files, multi-{version}.txt (summary + 3 replies)
+ * and single-{version}.txt (summary + 1 reply), compiled once at startup.
+ * A missing file, a syntax error or an unknown slot name fails startup
+ * rather than the first request.
+ *
+ * gemini.prompt.version is the version served to everyone. For an A/B test
+ * set gemini.prompt.candidate-version and candidate-percent: that share of
+ * requests gets the candidate instead. Assignment is a hash of the email
+ * content, so the same email always lands on the same version and the
+ * generation cache (keyed by version) keeps working.
+ *
+ * The selected version is part of the cache key, every Gemini log line and
+ * the gemini.generation / gemini.tokens metrics, so latency and token cost
+ * can be compared per version.
+ */
+@Service
+@Slf4j
+public class PromptLibrary {
+
+    static final Set<String> MULTI_SLOTS  = Set.of("language", "tone", "regenerate", "timestamp", "subject", "content");
+    static final Set<String> SINGLE_SLOTS = Set.of("language", "tone", "subject", "content");
+
+    /** The templates of one prompt version. */
+    public record PromptSet(String version, PromptTemplate multi, PromptTemplate single) {}
+
+    private final PromptSet primary;
+    private final PromptSet candidate;       // null when no A/B test is running
+    private final int candidatePercent;
+
+    public PromptLibrary(@Value("${gemini.prompt.version:v1}") String version,
+                         @Value("${gemini.prompt.candidate-version:}") String candidateVersion,
+                         @Value("${gemini.prompt.candidate-percent:0}") int candidatePercent) {
+        this.primary = load(version);
+        boolean abTest = candidateVersion != null && !candidateVersion.isBlank() && candidatePercent > 0;
+        this.candidate = abTest ? load(candidateVersion.trim()) : null;
+        this.candidatePercent = abTest ? Math.min(candidatePercent, 100) : 0;
+
+        if (candidate != null) {
+            log.info("Prompt version {} ({}% of requests on candidate {})",
+                    primary.version(), this.candidatePercent, candidate.version());
+        } else {
+            log.info("Prompt version {}", primary.version());
+        }
+    }
+
+    /**
+     * @param stickyKey decides A/B assignment — same key, same version; null = primary
+     */
+    public PromptSet select(String stickyKey) {
+        if (candidate == null || stickyKey == null) return primary;
+        return Math.floorMod(stickyKey.hashCode(), 100) < candidatePercent ? candidate : primary;
+    }
+
+    private static PromptSet load(String version) {
+        return new PromptSet(version,
+                compile("multi", version, MULTI_SLOTS),
+                compile("single", version, SINGLE_SLOTS));
+    }
+
+    private static PromptTemplate compile(String name, String version, Set<String> allowedSlots) {
+        String path = "prompts/" + name + "-" + version + ".txt";
+        ClassPathResource resource = new ClassPathResource(path);
+        if (!resource.exists()) {
+            throw new IllegalStateException("Prompt template not found on classpath: " + path);
+        }
+        String source;
+        try (InputStream in = resource.getInputStream()) {
+            source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read prompt template " + path, ex);
+        }
+
+        PromptTemplate template = PromptTemplate.compile(name, version, source);
+        for (String slot : template.slots()) {
+            if (!allowedSlots.contains(slot)) {
+                throw new IllegalStateException("Prompt template " + path + " uses unknown slot {{" + slot
+                        + "}} — allowed: " + allowedSlots);
+            }
+        }
+        return template;
+    }
+}
@@ -0,0 +1,138 @@
+package com.email.writer.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A prompt compiled once into static text segments and slots.
+ *
+ * Why this exists: the prompt builders in EmailGeneratorService rebuilt the
+ * same ~1KB of instructions with StringBuilder/String.format on every
+ * request, and the wording was hard-coded, so a shorter prompt could not be
+ * tried without a deploy. Templates now live in classpath:prompts/ and are
+ * parsed at startup; rendering only concatenates the pre-split segments
+ * with the request's values.
+ *
+ * Syntax (a small mustache subset):
+ *   {{name}}              value of the slot, "" when null
+ *   {{#name}}...{{/name}} rendered only when the value is not blank
+ *   {{^name}}...{{/name}} rendered only when the value is blank
+ *
+ * Values are inserted verbatim — there is no escaping. Sections may nest.
+ * Malformed templates fail in compile(), i.e. at startup.
+ */
+public final class PromptTemplate {
+
+    private sealed interface Part permits Text, Slot, Section {}
+    private record Text(String text) implements Part {}
+    private record Slot(String name) implements Part {}
+    private record Section(String name, boolean inverted, Part[] body) implements Part {}
+
+    private final String name;
+    private final String version;
+    private final Part[] parts;
+    private final Set<String> slots;
+    private final int staticLength;
+
+    private PromptTemplate(String name, String version, Part[] parts, Set<String> slots, int staticLength) {
+        this.name = name;
+        this.version = version;
+        this.parts = parts;
+        this.slots = slots;
+        this.staticLength = staticLength;
+    }
+
+    /**
+     * @throws IllegalArgumentException on an unclosed, unbalanced or empty tag
+     */
+    public static PromptTemplate compile(String name, String version, String source) {
+        Set<String> slots = new LinkedHashSet<>();
+        List<Part> parts = new ArrayList<>();
+        parse(name + "-" + version, source, 0, null, parts, slots);
+        Part[] compiled = parts.toArray(Part[]::new);
+        return new PromptTemplate(name, version, compiled, Collections.unmodifiableSet(slots), staticLength(compiled));
+    }
+
+    public String name()       { return name; }
+    public String version()    { return version; }
+
+    /** Every slot and section name the template references. */
+    public Set<String> slots() { return slots; }
+
+    public String render(Map<String, String> values) {
+        StringBuilder out = new StringBuilder(staticLength + 256);
+        render(parts, values, out);
+        return out.toString();
+    }
+
+    private static void render(Part[] parts, Map<String, String> values, StringBuilder out) {
+        for (Part part : parts) {
+            if (part instanceof Text text) {
+                out.append(text.text());
+            } else if (part instanceof Slot slot) {
+                String value = values.get(slot.name());
+                if (value != null) out.append(value);
+            } else if (part instanceof Section section) {
+                String value = values.get(section.name());
+                boolean present = value != null && !value.isBlank();
+                if (present != section.inverted()) render(section.body(), values, out);
+            }
+        }
+    }
+
+    /**
+     * Parse from {@code pos} until the closing tag of {@code open} (or end of
+     * input when open is null). Returns the index just past what was consumed.
+     */
+    private static int parse(String name, String src, int pos, String open, List<Part> out, Set<String> slots) {
+        while (pos < src.length()) {
+            int tag = src.indexOf("{{", pos);
+            if (tag < 0) break;
+            if (tag > pos) out.add(new Text(src.substring(pos, tag)));
+
+            int close = src.indexOf("}}", tag + 2);
+            if (close < 0) throw new IllegalArgumentException("Template " + name + ": unclosed tag at " + tag);
+            String content = src.substring(tag + 2, close).trim();
+            if (content.isEmpty() || content.length() == 1 && "#^/".indexOf(content.charAt(0)) >= 0) {
+                throw new IllegalArgumentException("Template " + name + ": empty tag at " + tag);
+            }
+            pos = close + 2;
+
+            char kind = content.charAt(0);
+            if (kind == '/') {
+                String closing = content.substring(1).trim();
+                if (!closing.equals(open)) {
+                    throw new IllegalArgumentException("Template " + name + ": {{/" + closing + "}} at " + tag
+                            + (open == null ? " without an open section" : " while {{#" + open + "}} is open"));
+                }
+                return pos;
+            }
+            if (kind == '#' || kind == '^') {
+                String section = content.substring(1).trim();
+                slots.add(section);
+                List<Part> body = new ArrayList<>();
+                pos = parse(name, src, pos, section, body, slots);
+                out.add(new Section(section, kind == '^', body.toArray(Part[]::new)));
+            } else {
+                slots.add(content);
+                out.add(new Slot(content));
+            }
+        }
+        if (open != null) throw new IllegalArgumentException("Template " + name + ": {{#" + open + "}} is never closed");
+        if (pos < src.length()) out.add(new Text(src.substring(pos)));
+        return src.length();
+    }
+
+    private static int staticLength(Part[] parts) {
+        int length = 0;
+        for (Part part : parts) {
+            if (part instanceof Text text) length += text.text().length();
+            else if (part instanceof Section section) length += staticLength(section.body());
+        }
+        return length;
+    }
+}
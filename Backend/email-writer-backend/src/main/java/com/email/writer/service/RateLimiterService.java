@@ -1,11 +1,16 @@
 package com.email.writer.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Per-user server-side rate limiter using a sliding window algorithm.
@@ -22,10 +27,13 @@ import java.util.concurrent.ConcurrentHashMap;
  * The deque is trimmed on every check so expired entries don't accumulate.
  * State is in-memory (single instance) — sufficient for free-tier Render
  * deployment. For multi-instance deployments, replace with Redis.
+ *
+ * Metrics: ratelimit.rejected{window=minute|day} — requests refused, by
+ * the window that was full.
  */
 @Service
 @Slf4j
-public class RateLimiterService {
+public class RateLimiterService implements MeterBinder {
 
     private static final int  MAX_PER_MINUTE = 8;
     private static final int  MAX_PER_DAY    = 200;
@@ -36,6 +44,9 @@ public class RateLimiterService {
     private final ConcurrentHashMap<String, Deque<Long>> minuteWindows = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Deque<Long>> dayWindows    = new ConcurrentHashMap<>();
 
+    private final AtomicLong rejectedMinute = new AtomicLong();
+    private final AtomicLong rejectedDay    = new AtomicLong();
+
     /**
      * Check if the user can make a request. Does NOT record the request.
      * Call recordRequest() separately only if you proceed.
@@ -45,8 +56,15 @@ public class RateLimiterService {
      */
     public boolean canMakeRequest(String username) {
         long now = System.currentTimeMillis();
-        return withinLimit(minuteWindows, username, now, ONE_MINUTE_MS, MAX_PER_MINUTE)
-                && withinLimit(dayWindows,    username, now, ONE_DAY_MS,    MAX_PER_DAY);
+        if (!withinLimit(minuteWindows, username, now, ONE_MINUTE_MS, MAX_PER_MINUTE)) {
+            rejectedMinute.incrementAndGet();
+            return false;
+        }
+        if (!withinLimit(dayWindows, username, now, ONE_DAY_MS, MAX_PER_DAY)) {
+            rejectedDay.incrementAndGet();
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -63,6 +81,40 @@ public class RateLimiterService {
         );
     }
 
+    /**
+     * Check and record up to {@code requested} requests in one step — used by
+     * /generate-batch, which charges one request per batch item.
+     *
+     * Both windows are locked (minute first, then day — always in that order)
+     * so two concurrent batches from the same user cannot both see the same
+     * remaining quota.
+     *
+     * @return how many requests were granted and recorded, 0..requested
+     */
+    public int reserve(String username, int requested) {
+        long now = System.currentTimeMillis();
+        Deque<Long> minute = minuteWindows.computeIfAbsent(username, k -> new ArrayDeque<>());
+        Deque<Long> day    = dayWindows.computeIfAbsent(username, k -> new ArrayDeque<>());
+        synchronized (minute) {
+            synchronized (day) {
+                trimExpired(minute, now, ONE_MINUTE_MS);
+                trimExpired(day,    now, ONE_DAY_MS);
+                int minuteLeft = MAX_PER_MINUTE - minute.size();
+                int dayLeft    = MAX_PER_DAY - day.size();
+                int granted = Math.max(0, Math.min(requested, Math.min(minuteLeft, dayLeft)));
+                if (granted < requested) {
+                    (dayLeft < minuteLeft ? rejectedDay : rejectedMinute).addAndGet(requested - granted);
+                }
+                for (int i = 0; i < granted; i++) {
+                    minute.addLast(now);
+                    day.addLast(now);
+                }
+                log.debug("Rate limit reserved {} of {} for user {}", granted, requested, username);
+                return granted;
+            }
+        }
+    }
+
     /**
      * Return remaining requests for the user (for response headers / debugging).
      */
@@ -75,6 +127,18 @@ public class RateLimiterService {
         }
     }
 
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("ratelimit.rejected", rejectedMinute, AtomicLong::get)
+                .tag("window", "minute")
+                .description("Generation requests refused by the per-user rate limit")
+                .register(registry);
+        FunctionCounter.builder("ratelimit.rejected", rejectedDay, AtomicLong::get)
+                .tag("window", "day")
+                .description("Generation requests refused by the per-user rate limit")
+                .register(registry);
+    }
+
     /* ── internal helpers ─────────────────────────────────────────────── */
 
     private boolean withinLimit(ConcurrentHashMap<String, Deque<Long>> map,
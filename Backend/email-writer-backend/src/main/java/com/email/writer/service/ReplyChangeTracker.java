@@ -0,0 +1,111 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Per-user version of the saved replies, for conditional GETs.
+ *
+ * Why this exists: the frontend polls /api/v1/replies/history, /favorites
+ * and /stats every few seconds. Each poll ran the listing or aggregate
+ * queries and serialized every SavedReply again, although a user's replies
+ * change only when they save, delete or (un)favorite one. SavedReplyService
+ * now bumps this counter on each of those, the controller turns it into an
+ * ETag, and a request whose If-None-Match still matches is answered 304
+ * before any query runs.
+ *
+ * The counter is bumped after the transaction commits. A GET reads the
+ * version before it queries, so a reply list is never labelled with a
+ * version newer than its data — at worst a client refetches once more.
+ *
+ * ETags also carry an instance epoch (counters restart at 0 with the JVM)
+ * and, via {@code variant}, whatever else the body depends on: the query
+ * string of /history, the minute of /stats. They are strong; Tomcat weakens
+ * them when it gzips a body (server.compression), and If-None-Match is a
+ * weak comparison, so both forms match.
+ *
+ * Metrics:
+ *   replies.conditional{result=not_modified|modified}
+ *
+ * State is in-memory, so this is correct for a single instance only. With
+ * several instances a save or delete handled by one does not bump the
+ * others' counters, and they keep answering 304 with stale data for the
+ * version they handed out. Scaling out needs the version in the database
+ * (e.g. max(updated_at) and count per user) instead.
+ */
+@Service
+public class ReplyChangeTracker implements MeterBinder {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ConcurrentHashMap<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong modified    = new AtomicLong();
+
+    /** Current version of {@code userId}'s replies; 0 until the first change. */
+    public long version(Long userId) {
+        AtomicLong version = versions.get(userId);
+        return version == null ? 0 : version.get();
+    }
+
+    /** Record a change to {@code userId}'s replies, once the current transaction (if any) has committed. */
+    public void changed(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump(userId);
+                }
+            });
+        } else {
+            bump(userId);
+        }
+    }
+
+    private void bump(Long userId) {
+        versions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Quoted strong ETag for a representation of {@code userId}'s replies.
+     *
+     * @param variant anything besides the replies the body depends on; null if nothing
+     */
+    public String etag(Long userId, String variant) {
+        StringBuilder tag = new StringBuilder(32).append('"')
+                .append(epoch).append('-').append(Long.toString(version(userId), 36));
+        if (variant != null && !variant.isEmpty()) {
+            CRC32 crc = new CRC32();
+            crc.update(variant.getBytes(StandardCharsets.UTF_8));
+            tag.append('-').append(Long.toString(crc.getValue(), 36));
+        }
+        return tag.append('"').toString();
+    }
+
+    /** Count the outcome of one conditional-GET check. */
+    public void recordCheck(boolean wasNotModified) {
+        (wasNotModified ? notModified : modified).incrementAndGet();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("replies.conditional", notModified, AtomicLong::get)
+                .tag("result", "not_modified")
+                .description("Reply listing requests answered 304 without running a query")
+                .register(registry);
+        FunctionCounter.builder("replies.conditional", modified, AtomicLong::get)
+                .tag("result", "modified")
+                .description("Reply listing requests answered with a full body")
+                .register(registry);
+    }
+}
@@ -0,0 +1,224 @@
+package com.email.writer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for the "SUMMARY: / REPLY n:" format requested by
+ * buildMultipleRepliesPrompt — used both for streamed and complete responses.
+ *
+ * Why this exists: the original parser in EmailGeneratorService only ran
+ * after the complete Gemini payload had arrived, and per line it lowercased
+ * twice, compiled a regex via String.matches, ran two replaceFirst regexes
+ * and built the summary with +=. On a streamed transport the first reply is
+ * usually finished seconds before the third one, and on the batch path the
+ * regex work dominated parse time for long outputs.
+ *
+ * Streaming: feed text fragments in order with {@link #accept}; fragment
+ * boundaries may fall anywhere, including inside a label. Lines are processed
+ * as soon as their newline arrives. A section is reported to the
+ * {@link Listener} the moment it closes — i.e. when the next SUMMARY:/REPLY n:
+ * label starts, or at {@link #finish()}.
+ *
+ * Batch: {@link #parse} scans a complete response in one pass. Lines are
+ * handled as index ranges over the input — no per-line substring, no regex,
+ * no lowercase copy; only the section text that is kept gets copied.
+ *
+ * Semantics are identical to the original regex parser:
+ *   - labels are case-insensitive, "REPLY1:" and "reply 2:" both count
+ *   - the number after REPLY is ignored; replies are taken in order of appearance
+ *   - a reply label with no text and no following lines produces no reply
+ *   - a later SUMMARY: replaces the earlier summary
+ *   - only the first three replies are kept
+ *   - finish() pads to three replies and supplies a default summary; padded
+ *     replies are reported too, so a client always receives reply 1–3
+ *
+ * Not thread-safe — one instance per generation.
+ */
+public class ReplySectionParser {
+
+    static final String FALLBACK_REPLY   = "Thank you for your message. I will review and respond shortly.";
+    static final String FALLBACK_SUMMARY = "Generated professional email responses based on the provided content.";
+
+    static final int MAX_REPLIES = 3;
+
+    /** Receives each section as soon as it is complete. */
+    public interface Listener {
+        void onSummary(String summary);
+
+        /** @param index 1-based reply number */
+        void onReply(int index, String text);
+    }
+
+    private enum Mode { NONE, SUMMARY, REPLY }
+
+    private final Listener listener;      // null for parse() — nothing to report
+    private final StringBuilder pendingLine = new StringBuilder();
+    private final StringBuilder current     = new StringBuilder();
+    private final StringBuilder summary     = new StringBuilder();
+    private final List<String>  replies     = new ArrayList<>(MAX_REPLIES);
+    private Mode mode = Mode.NONE;
+    private Map<String, Object> result;
+    private int paddedReplies;
+
+    public ReplySectionParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Parse a complete model response in a single pass.
+     *
+     * @return {"summary": String, "replies": List[3]} with fallbacks applied
+     */
+    public static Map<String, Object> parse(CharSequence content) {
+        return new ReplySectionParser(null).parseComplete(content);
+    }
+
+    /** Same as {@link #parse}, on this instance — so {@link #paddedReplies} can be read afterwards. */
+    public Map<String, Object> parseComplete(CharSequence content) {
+        int lineStart = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                processLine(content, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        processLine(content, lineStart, content.length());
+        return finish();
+    }
+
+    /** After {@link #finish}: how many of the three replies are FALLBACK_REPLY padding. */
+    public int paddedReplies() {
+        return paddedReplies;
+    }
+
+    /** Feed the next fragment of model output. */
+    public void accept(CharSequence chunk) {
+        int lineStart = 0;
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.charAt(i) != '\n') continue;
+            if (pendingLine.length() == 0) {
+                processLine(chunk, lineStart, i);
+            } else {
+                pendingLine.append(chunk, lineStart, i);
+                processLine(pendingLine, 0, pendingLine.length());
+                pendingLine.setLength(0);
+            }
+            lineStart = i + 1;
+        }
+        pendingLine.append(chunk, lineStart, chunk.length());
+    }
+
+    /**
+     * Close the last section, apply the fallbacks and return the same shape
+     * as parseMultipleRepliesResponse: {"summary": String, "replies": List[3]}.
+     * Further calls return the same map.
+     */
+    public Map<String, Object> finish() {
+        if (result != null) return result;
+
+        if (pendingLine.length() > 0) {
+            processLine(pendingLine, 0, pendingLine.length());
+            pendingLine.setLength(0);
+        }
+        closeSection();
+        while (replies.size() < MAX_REPLIES) {
+            paddedReplies++;
+            replies.add(FALLBACK_REPLY);
+            if (listener != null) listener.onReply(replies.size(), FALLBACK_REPLY);
+        }
+        String finalSummary = summary.toString();
+        if (finalSummary.isEmpty()) {
+            finalSummary = FALLBACK_SUMMARY;
+            if (listener != null) listener.onSummary(finalSummary);
+        }
+        result = Map.of("replies", List.copyOf(replies), "summary", finalSummary);
+        return result;
+    }
+
+    /** Handle src[from, to) — one line without its '\n'. */
+    private void processLine(CharSequence src, int from, int to) {
+        // Same characters String.trim() strips
+        while (from < to && src.charAt(from) <= ' ') from++;
+        while (to > from && src.charAt(to - 1) <= ' ') to--;
+        if (from == to) return;
+
+        if (startsWithIgnoreCase(src, from, to, "summary:")) {
+            closeSection();
+            mode = Mode.SUMMARY;
+            summary.setLength(0);
+            appendTrimmed(summary, src, from + "summary:".length(), to);
+            return;
+        }
+
+        int textStart = replyLabelEnd(src, from, to);
+        if (textStart >= 0) {
+            closeSection();
+            mode = Mode.REPLY;
+            appendTrimmed(current, src, textStart, to);
+        } else if (mode == Mode.SUMMARY) {
+            if (summary.length() > 0) summary.append(' ');
+            summary.append(src, from, to);
+        } else if (mode == Mode.REPLY) {
+            if (current.length() > 0) current.append(' ');
+            current.append(src, from, to);
+        }
+    }
+
+    /** Report the section that is ending, if it produced anything. */
+    private void closeSection() {
+        if (mode == Mode.SUMMARY) {
+            if (listener != null && summary.length() > 0) listener.onSummary(summary.toString());
+        } else if (mode == Mode.REPLY && current.length() > 0) {
+            if (replies.size() < MAX_REPLIES) {
+                String reply = current.toString();
+                replies.add(reply);
+                if (listener != null) listener.onReply(replies.size(), reply);
+            }
+            current.setLength(0);
+        }
+    }
+
+    /**
+     * "reply" + optional whitespace + 1|2|3 + ':' — case-insensitive.
+     *
+     * @return index just past the ':' if src[from, to) starts with a reply label, else -1
+     */
+    private static int replyLabelEnd(CharSequence src, int from, int to) {
+        if (!startsWithIgnoreCase(src, from, to, "reply")) return -1;
+        int i = from + "reply".length();
+        while (i < to && isRegexSpace(src.charAt(i))) i++;
+        if (i + 1 >= to
+                || src.charAt(i) < '1' || src.charAt(i) > '3'
+                || src.charAt(i + 1) != ':') return -1;
+        // The original "reply\s*[123]:.*" — '.' stops at line terminators
+        for (int j = i + 2; j < to; j++) {
+            char c = src.charAt(j);
+            if (c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return -1;
+        }
+        return i + 2;
+    }
+
+    private static void appendTrimmed(StringBuilder sb, CharSequence src, int from, int to) {
+        while (from < to && src.charAt(from) <= ' ') from++;
+        sb.append(src, from, to);
+    }
+
+    /** Same set as the regex class \s: [ \t\n\x0B\f\r]. */
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * line.toLowerCase().startsWith(prefix) for an ASCII-lowercase prefix,
+     * without copying the line.
+     */
+    private static boolean startsWithIgnoreCase(CharSequence src, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(src.charAt(from + i)) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+}
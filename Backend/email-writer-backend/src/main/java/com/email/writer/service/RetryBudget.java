@@ -0,0 +1,85 @@
+package com.email.writer.service;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Caps retries and hedges to a share of recent traffic (after Finagle's
+ * RetryBudget).
+ *
+ * Over a sliding window of windowSeconds, extra attempts are allowed while
+ *
+ *   extra attempts < minPerSecond × windowSeconds + percent% × requests
+ *
+ * The minPerSecond reserve lets a quiet instance still retry the odd
+ * failure. During an outage every request fails; without a budget each
+ * would be sent maxAttempts times and multiply the load on a struggling
+ * upstream, with the budget the extra load is bounded by percent%.
+ *
+ * One-second buckets in a ring, so memory and cost are constant.
+ */
+final class RetryBudget {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final double ratio;
+    private final int reserve;
+    private final LongSupplier clockMillis;
+
+    private final long[] bucketSecond;
+    private final int[] requests;
+    private final int[] withdrawals;
+
+    RetryBudget(int percent, int minPerSecond, int windowSeconds) {
+        this(percent, minPerSecond, windowSeconds, System::currentTimeMillis);
+    }
+
+    RetryBudget(int percent, int minPerSecond, int windowSeconds, LongSupplier clockMillis) {
+        int window = Math.max(1, windowSeconds);
+        this.ratio = Math.max(0, percent) / 100.0;
+        this.reserve = Math.max(0, minPerSecond) * window;
+        this.clockMillis = clockMillis;
+        this.bucketSecond = new long[window];
+        this.requests = new int[window];
+        this.withdrawals = new int[window];
+        Arrays.fill(bucketSecond, EMPTY);
+    }
+
+    /** Count one original (first-attempt) request. */
+    synchronized void recordRequest() {
+        requests[bucket()]++;
+    }
+
+    /** @return true and count the attempt when the budget allows one more retry or hedge */
+    synchronized boolean tryWithdraw() {
+        int current = bucket();
+        if (available() < 1) return false;
+        withdrawals[current]++;
+        return true;
+    }
+
+    synchronized double available() {
+        long now = clockMillis.getAsLong() / 1000;
+        int totalRequests = 0;
+        int totalWithdrawals = 0;
+        for (int i = 0; i < bucketSecond.length; i++) {
+            if (bucketSecond[i] != EMPTY && now - bucketSecond[i] < bucketSecond.length) {
+                totalRequests += requests[i];
+                totalWithdrawals += withdrawals[i];
+            }
+        }
+        return reserve + ratio * totalRequests - totalWithdrawals;
+    }
+
+    /** Index of the current second's bucket, cleared if it still holds an older second. */
+    private int bucket() {
+        long second = clockMillis.getAsLong() / 1000;
+        int index = (int) Math.floorMod(second, (long) bucketSecond.length);
+        if (bucketSecond[index] != second) {
+            bucketSecond[index] = second;
+            requests[index] = 0;
+            withdrawals[index] = 0;
+        }
+        return index;
+    }
+}
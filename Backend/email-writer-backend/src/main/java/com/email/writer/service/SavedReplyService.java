@@ -14,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
@@ -37,6 +38,10 @@ import java.util.*;
  *
  * 3. Removed redundant class-level @Transactional on methods that already
  *    had their own @Transactional — harmless but cleaner.
+ *
+ * 4. saveReply(), toggleFavorite() and deleteReply() report the change to
+ *    ReplyChangeTracker, whose per-user version drives the ETags of
+ *    /history, /favorites and /stats.
  */
 @Service
 @RequiredArgsConstructor
@@ -45,6 +50,7 @@ import java.util.*;
 public class SavedReplyService {
 
     private final SavedReplyRepository repo;
+    private final ReplyChangeTracker   changes;
 
     @Transactional
     public SavedReply saveReply(SaveReplyRequest req, User user) {
@@ -62,6 +68,7 @@ public class SavedReplyService {
         );
 
         SavedReply saved = repo.save(sr);
+        changes.changed(user.getId());
         log.info("Reply saved with ID {} for user {}", saved.getId(), user.getUsername());
         return saved;
     }
@@ -111,6 +118,7 @@ public class SavedReplyService {
         reply.setIsFavorite(newFavoriteStatus);
 
         SavedReply updated = repo.save(reply);
+        changes.changed(userId);
         log.debug("Toggled favorite to {} for reply {} user {}", newFavoriteStatus, id, userId);
         return updated;
     }
@@ -125,6 +133,7 @@ public class SavedReplyService {
         }
 
         repo.delete(reply);
+        changes.changed(userId);
         log.info("Reply {} deleted by user {}", id, userId);
     }
 
@@ -141,6 +150,9 @@ public class SavedReplyService {
      * Java streams to group, count, and sort. The repo already had
      * getToneDistributionForUser() and getMostCommonSubjectsForUser() defined
      * but they were never called. Now they are the primary mechanism.
+     *
+     * The 30-day window starts on a whole minute, so the result only
+     * changes with the user's replies and the minute (the /stats ETag).
      */
     @Transactional(readOnly = true)
     public Map<String, Object> getUserStatistics(Long userId) {
@@ -155,7 +167,7 @@ public class SavedReplyService {
         stats.put("favoriteReplies", (int) favoriteCount);
 
         // Recent activity (last 30 days) — single COUNT query
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
+        LocalDateTime thirtyDaysAgo = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusDays(30);
         long recentReplies = repo.countByUserIdAndCreatedAtAfter(userId, thirtyDaysAgo);
         stats.put("recentActivity", (int) recentReplies);
 
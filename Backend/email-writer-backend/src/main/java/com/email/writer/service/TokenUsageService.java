@@ -0,0 +1,330 @@
+package com.email.writer.service;
+
+import com.email.writer.entity.TokenUsage;
+import com.email.writer.exception.TokenQuotaExceededException;
+import com.email.writer.repository.TokenUsageRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user token accounting and token quotas, fed by Gemini's usageMetadata.
+ *
+ * Why this exists: RateLimiterService counts requests, but Gemini bills and
+ * throttles us in tokens. A pasted 20 KB thread costs ten times what a
+ * one-line email does and still counts as one request, so a handful of
+ * users could use up the key's token budget while staying well inside
+ * 8/min and 200/day.
+ *
+ * Accounting: EmailGeneratorService calls {@link #record} with every
+ * response that reached Gemini (cache hits and coalesced followers cost
+ * nothing). Deltas are summed in memory per user and UTC day and added to
+ * the token_usage table every flush-interval-ms — one UPDATE per active
+ * user per interval, never a write per generation. A failed flush keeps
+ * its deltas for the next one; a crash loses at most one interval.
+ *
+ * Quotas: {@link #checkQuota} runs before a generation goes to Gemini.
+ *   per-minute — sliding 60s window of the tokens this instance recorded
+ *   per-day    — UTC calendar day, starting from the user's persisted
+ *                total (read once per user and day) plus what this
+ *                instance recorded since
+ * The cost of a call is only known afterwards, so the check refuses once a
+ * window is used up and the last call may overshoot it by its own size.
+ * 0 disables a quota. Like RateLimiterService the windows are per instance;
+ * the persisted daily totals are shared.
+ *
+ * Metrics: usage.quota.rejected{window=minute|day},
+ * usage.pending (user-days waiting for the next flush).
+ */
+@Service
+@Slf4j
+public class TokenUsageService implements MeterBinder {
+
+    private static final long ONE_MINUTE_MS = 60_000L;
+    private static final int  MAX_HISTORY_DAYS = 90;
+
+    @Value("${usage.tokens.per-minute:30000}")
+    private long tokensPerMinute = 30_000;
+
+    @Value("${usage.tokens.per-day:300000}")
+    private long tokensPerDay = 300_000;
+
+    private final TokenUsageRepository repo;
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Delta> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedMinute = new AtomicLong();
+    private final AtomicLong rejectedDay    = new AtomicLong();
+
+    public TokenUsageService(TokenUsageRepository repo) {
+        this.repo = repo;
+    }
+
+    /**
+     * Refuse the call when the user's minute or day window is used up.
+     * No-op for a null username (internal calls such as /email/test).
+     *
+     * @throws TokenQuotaExceededException with the seconds until the window frees up
+     */
+    public void checkQuota(String username) {
+        if (username == null) return;
+        long now = System.currentTimeMillis();
+        Window window = window(username, now);
+        synchronized (window) {
+            window.expireMinute(now);
+            if (tokensPerMinute > 0 && window.minuteTokens >= tokensPerMinute) {
+                rejectedMinute.incrementAndGet();
+                long retryAfter = (window.minute.peekFirst()[0] + ONE_MINUTE_MS - now + 999) / 1000;
+                throw new TokenQuotaExceededException(
+                        "You have used your token allowance for this minute. Please wait before trying again.",
+                        "minute", retryAfter);
+            }
+            if (tokensPerDay > 0 && window.dayTokens >= tokensPerDay) {
+                rejectedDay.incrementAndGet();
+                throw new TokenQuotaExceededException(
+                        "You have used your token allowance for today. It resets at midnight UTC.",
+                        "day", secondsUntilMidnightUtc(now));
+            }
+        }
+    }
+
+    /** Charge one Gemini response to the user. No-op for a null username. */
+    public void record(String username, GeminiResponse response) {
+        if (username == null) return;
+        long prompt = response.promptTokens();
+        long output = Math.max(response.candidatesTokens(), response.totalTokens() - response.promptTokens());
+        long now = System.currentTimeMillis();
+
+        Window window = window(username, now);
+        LocalDate day;
+        synchronized (window) {
+            window.expireMinute(now);
+            if (tokensPerMinute > 0) {
+                window.minute.addLast(new long[] {now, prompt + output});
+                window.minuteTokens += prompt + output;
+            }
+            window.dayTokens += prompt + output;
+            day = window.day;
+        }
+        pending.merge(new Key(username, day), new Delta(prompt, output, 1), Delta::plus);
+    }
+
+    /**
+     * Today's totals, limits and what is left, plus per-day history for the
+     * last {@code days} days (newest first) — persisted rows merged with
+     * deltas that have not been flushed yet.
+     */
+    public Map<String, Object> usage(String username, int days) {
+        int span = Math.max(1, Math.min(days, MAX_HISTORY_DAYS));
+        LocalDate today = today(System.currentTimeMillis());
+        LocalDate from = today.minusDays(span - 1L);
+
+        TreeMap<LocalDate, Delta> byDay = new TreeMap<>();
+        for (TokenUsage row : repo.findByUsernameAndUsageDateGreaterThanEqualOrderByUsageDateDesc(username, from)) {
+            byDay.merge(row.getUsageDate(),
+                    new Delta(row.getPromptTokens(), row.getOutputTokens(), row.getRequests()), Delta::plus);
+        }
+        pending.forEach((key, delta) -> {
+            if (key.username().equals(username) && !key.day().isBefore(from)) {
+                byDay.merge(key.day(), delta, Delta::plus);
+            }
+        });
+
+        List<Map<String, Object>> history = new ArrayList<>();
+        byDay.descendingMap().forEach((day, delta) -> history.add(dayView(day, delta)));
+        Map<String, Object> todayView = dayView(today, byDay.getOrDefault(today, Delta.ZERO));
+
+        long minuteUsed;
+        long dayUsed;
+        long now = System.currentTimeMillis();
+        Window window = window(username, now);
+        synchronized (window) {
+            window.expireMinute(now);
+            minuteUsed = window.minuteTokens;
+            dayUsed    = window.dayTokens;
+        }
+
+        Map<String, Object> limits = new LinkedHashMap<>();
+        limits.put("tokensPerMinute", tokensPerMinute > 0 ? tokensPerMinute : null);
+        limits.put("tokensPerDay",    tokensPerDay > 0 ? tokensPerDay : null);
+        Map<String, Object> remaining = new LinkedHashMap<>();
+        remaining.put("tokensThisMinute", tokensPerMinute > 0 ? Math.max(0, tokensPerMinute - minuteUsed) : null);
+        remaining.put("tokensToday",      tokensPerDay > 0 ? Math.max(0, tokensPerDay - dayUsed) : null);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("today",     todayView);
+        body.put("limits",    limits);
+        body.put("remaining", remaining);
+        body.put("history",   history);
+        return body;
+    }
+
+    /**
+     * Add the aggregated deltas to token_usage. Each user-day is taken out
+     * of the pending map atomically, so generations recorded during the
+     * flush simply start a new delta for the next one.
+     */
+    @Scheduled(fixedDelayString = "${usage.flush-interval-ms:15000}")
+    public void flush() {
+        int written = 0;
+        for (Key key : List.copyOf(pending.keySet())) {
+            Delta delta = pending.remove(key);
+            if (delta == null) continue;
+            try {
+                write(key, delta);
+                written++;
+            } catch (RuntimeException ex) {
+                pending.merge(key, delta, Delta::plus);
+                log.warn("Token usage flush failed for {} on {}, kept for next flush: {}",
+                        key.username(), key.day(), ex.getMessage());
+            }
+        }
+        if (written > 0) log.debug("Flushed token usage for {} user-days", written);
+
+        // Forget windows that have gone quiet since an earlier day
+        LocalDate today = today(System.currentTimeMillis());
+        windows.entrySet().removeIf(entry -> {
+            Window window = entry.getValue();
+            synchronized (window) {
+                return window.day != null && window.day.isBefore(today) && window.minute.isEmpty();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("usage.quota.rejected", rejectedMinute, AtomicLong::get)
+                .tag("window", "minute")
+                .description("Generations refused by the per-user token quota")
+                .register(registry);
+        FunctionCounter.builder("usage.quota.rejected", rejectedDay, AtomicLong::get)
+                .tag("window", "day")
+                .description("Generations refused by the per-user token quota")
+                .register(registry);
+        Gauge.builder("usage.pending", pending, Map::size)
+                .description("User-days with token usage not yet flushed to the database")
+                .register(registry);
+    }
+
+    /* ── internal helpers ─────────────────────────────────────────────── */
+
+    private void write(Key key, Delta delta) {
+        Instant now = Instant.now();
+        if (repo.addUsage(key.username(), key.day(), delta.prompt(), delta.output(), delta.requests(), now) > 0) {
+            return;
+        }
+        try {
+            repo.save(new TokenUsage(key.username(), key.day(), delta.prompt(), delta.output(), delta.requests()));
+        } catch (DataIntegrityViolationException raced) {
+            // Another instance inserted the row between our UPDATE and INSERT
+            repo.addUsage(key.username(), key.day(), delta.prompt(), delta.output(), delta.requests(), now);
+        }
+    }
+
+    /**
+     * The user's windows, with the day of {@code now} started. The persisted
+     * total is read outside the window's monitor, so the user's other calls
+     * don't wait on the query (and a virtual thread doesn't pin its carrier);
+     * it is installed only if no other call has started the day meanwhile.
+     */
+    private Window window(String username, long now) {
+        Window window = windows.computeIfAbsent(username, k -> new Window());
+        LocalDate today = today(now);
+        boolean stale;
+        synchronized (window) {
+            stale = !today.equals(window.day);
+        }
+        if (stale) {
+            long persisted = persistedTokens(username, today);
+            synchronized (window) {
+                if (!today.equals(window.day)) {
+                    window.day = today;
+                    window.dayTokens = persisted;
+                }
+            }
+        }
+        return window;
+    }
+
+    private long persistedTokens(String username, LocalDate day) {
+        try {
+            return repo.findByUsernameAndUsageDate(username, day).map(TokenUsage::getTotalTokens).orElse(0L);
+        } catch (RuntimeException ex) {
+            // Fail open — an unreadable total must not block generation
+            log.warn("Could not read token usage of {} for {}: {}", username, day, ex.getMessage());
+            return 0;
+        }
+    }
+
+    private static Map<String, Object> dayView(LocalDate day, Delta delta) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("date",         day.toString());
+        view.put("promptTokens", delta.prompt());
+        view.put("outputTokens", delta.output());
+        view.put("totalTokens",  delta.prompt() + delta.output());
+        view.put("requests",     delta.requests());
+        return view;
+    }
+
+    private static LocalDate today(long nowMs) {
+        return Instant.ofEpochMilli(nowMs).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static long secondsUntilMidnightUtc(long nowMs) {
+        Instant midnight = today(nowMs).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        return Duration.between(Instant.ofEpochMilli(nowMs), midnight).toSeconds() + 1;
+    }
+
+    private record Key(String username, LocalDate day) {}
+
+    private record Delta(long prompt, long output, long requests) {
+        static final Delta ZERO = new Delta(0, 0, 0);
+
+        Delta plus(Delta other) {
+            return new Delta(prompt + other.prompt, output + other.output, requests + other.requests);
+        }
+    }
+
+    /** One user's quota windows. Guarded by its own monitor. */
+    private final class Window {
+        final Deque<long[]> minute = new ArrayDeque<>();   // {recordedAtMs, tokens}
+        long minuteTokens;
+        LocalDate day;
+        long dayTokens;
+
+        /** Drop minute entries older than 60s. */
+        void expireMinute(long now) {
+            while (!minute.isEmpty() && now - minute.peekFirst()[0] > ONE_MINUTE_MS) {
+                minuteTokens -= minute.pollFirst()[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived per-user pool of reply sets that were generated but not yet
+ * shown, so /regenerate can answer without a Gemini call.
+ *
+ * Why this exists: users press /regenerate two or three times in a row on
+ * the same email, and every press was a full Gemini round trip (2–8s).
+ * A regenerate that goes upstream now asks Gemini for extra-candidates
+ * more candidates than it shows (generationConfig.candidateCount — one
+ * call, the prompt is paid once) and parks the extras here. The next
+ * regenerate of the same email takes one unseen variant from the pool and
+ * only goes upstream once the pool is empty; that call refills it.
+ *
+ * Scope: one pool per user holding the variants of the user's latest email
+ * only — a regenerate of another email replaces it. The pool key is the multi-mode
+ * GenerationCacheService key, so a different tone or language is a miss.
+ * Variants are removed when served, so nothing is shown twice. Pools
+ * expire after ttl-seconds, and at most max-users pools are kept (LRU).
+ *
+ * Only /regenerate prefetches. A first /generate is usually the only one
+ * — extras there tripled its output tokens (and the user's token quota)
+ * for users who never regenerate. Streams cannot (Gemini interleaves
+ * candidates in one SSE stream), and batch items and background jobs are
+ * rarely regenerated.
+ *
+ * Metrics:
+ *   gemini.variation_pool.requests{result=hit|miss}     regenerate lookups
+ *   gemini.variation_pool.variants{outcome=pooled|discarded}
+ *       discarded = dropped unseen (replaced, expired or evicted) — a high
+ *       share means extra-candidates is set too high
+ *   gemini.variation_pool.users
+ *
+ * State is in-memory (single instance), same trade-off as GenerationCacheService.
+ */
+@Service
+public class VariationPoolService implements MeterBinder {
+
+    /** Gemini accepts candidateCount 1–8, one of which is shown. */
+    private static final int MAX_EXTRA_CANDIDATES = 7;
+
+    @Value("${gemini.variation-pool.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gemini.variation-pool.extra-candidates:2}")
+    private int extraCandidates = 2;
+
+    @Value("${gemini.variation-pool.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    @Value("${gemini.variation-pool.max-users:5000}")
+    private int maxUsers = 5000;
+
+    private final AtomicLong hits      = new AtomicLong();
+    private final AtomicLong misses    = new AtomicLong();
+    private final AtomicLong pooled    = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    // Access-ordered LRU of username -> pool, guarded by synchronized(pools)
+    private final LinkedHashMap<String, Pool> pools = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pool> eldest) {
+            if (size() > maxUsers) {
+                discarded.addAndGet(eldest.getValue().variants().size());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private record Pool(String key, ArrayDeque<Map<String, Object>> variants, long expiresAt) { }
+
+    /** Candidates to request on top of the one shown; 0 when the pool is disabled. */
+    public int extraCandidates() {
+        return enabled ? Math.max(0, Math.min(MAX_EXTRA_CANDIDATES, extraCandidates)) : 0;
+    }
+
+    /**
+     * Park unseen variants of the email identified by {@code key}, replacing
+     * whatever the user had pooled. Values must be immutable.
+     */
+    public void offer(String username, String key, List<Map<String, Object>> variants) {
+        if (!enabled || username == null || key == null || variants.isEmpty()) return;
+        Pool pool = new Pool(key, new ArrayDeque<>(variants), System.currentTimeMillis() + ttlSeconds * 1000L);
+        synchronized (pools) {
+            Pool previous = pools.put(username, pool);
+            if (previous != null) discarded.addAndGet(previous.variants().size());
+        }
+        pooled.addAndGet(variants.size());
+    }
+
+    /**
+     * Remove and return one unseen variant of the email identified by
+     * {@code key}.
+     *
+     * @return the variant, or null when the user has none pooled for it
+     */
+    public Map<String, Object> take(String username, String key) {
+        if (!enabled || username == null || key == null) return null;
+        long now = System.currentTimeMillis();
+        synchronized (pools) {
+            Pool pool = pools.get(username);
+            if (pool != null && now >= pool.expiresAt()) {
+                pools.remove(username);
+                discarded.addAndGet(pool.variants().size());
+                pool = null;
+            }
+            if (pool == null || !pool.key().equals(key)) {
+                misses.incrementAndGet();
+                return null;
+            }
+            Map<String, Object> variant = pool.variants().poll();
+            if (pool.variants().isEmpty()) pools.remove(username);
+            hits.incrementAndGet();
+            return variant;
+        }
+    }
+
+    public int size() {
+        synchronized (pools) {
+            return pools.size();
+        }
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        FunctionCounter.builder("gemini.variation_pool.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Regenerations served from pre-generated variants without calling Gemini")
+                .register(registry);
+        FunctionCounter.builder("gemini.variation_pool.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Regenerations that found no pooled variant and called Gemini")
+                .register(registry);
+        FunctionCounter.builder("gemini.variation_pool.variants", pooled, AtomicLong::get)
+                .tag("outcome", "pooled")
+                .register(registry);
+        FunctionCounter.builder("gemini.variation_pool.variants", discarded, AtomicLong::get)
+                .tag("outcome", "discarded")
+                .register(registry);
+        Gauge.builder("gemini.variation_pool.users", this, VariationPoolService::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,39 @@
+package com.email.writer.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("AppConfig unit tests")
+class AppConfigTest {
+
+    @Test
+    @DisplayName("geminiStreamExecutor — runs max-concurrent streams at once and rejects the next instead of queueing it")
+    void geminiStreamExecutor_rejectsBeyondMaxConcurrent() {
+        ThreadPoolTaskExecutor executor = new AppConfig().geminiStreamExecutor(3);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                executor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                    .isInstanceOf(TaskRejectedException.class);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.email.writer.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GzipResponseInterceptor unit tests")
+class GzipResponseInterceptorTest {
+
+    private final GzipResponseInterceptor interceptor = new GzipResponseInterceptor();
+
+    private ClientHttpResponse exchange(byte[] body, HttpStatus status) throws IOException {
+        MockClientHttpResponse upstream = new MockClientHttpResponse(body, status);
+        upstream.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://gemini.test"));
+        return interceptor.intercept(request, new byte[0], (req, b) -> {
+            assertThat(req.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING)).isEqualTo("gzip");
+            return upstream;
+        });
+    }
+
+    @Test
+    @DisplayName("intercept — a gzip body is decompressed and the encoding headers are dropped")
+    void intercept_gunzipsBody() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{\"candidates\":[]}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ClientHttpResponse response = exchange(compressed.toByteArray(), HttpStatus.OK);
+
+        assertThat(new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"candidates\":[]}");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    @DisplayName("intercept — an empty body labelled gzip reads as empty and keeps its status")
+    void intercept_emptyGzipBodyIsEmpty() throws IOException {
+        ClientHttpResponse response = exchange(new byte[0], HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThat(response.getBody().readAllBytes()).isEmpty();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,136 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.exception.UpstreamUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchGenerationService unit tests")
+class BatchGenerationServiceTest {
+
+    @Mock
+    private EmailGeneratorService emailGeneratorService;
+
+    private ThreadPoolTaskExecutor executor;
+    private BatchGenerationService batchService;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        batchService = new BatchGenerationService(emailGeneratorService, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private EmailRequest item(String content) {
+        EmailRequest req = new EmailRequest();
+        req.setSubject("Subject");
+        req.setEmailContent(content);
+        req.setTone("professional");
+        return req;
+    }
+
+    @Test
+    @DisplayName("generate — returns per-item results in request order, including failures")
+    void generate_perItemResultsInOrder() {
+        when(emailGeneratorService.generateMultipleEmailReplies(eq("alice"), any(), eq(false)))
+                .thenAnswer(inv -> {
+                    EmailRequest req = inv.getArgument(1);
+                    if (req.getEmailContent().equals("fails")) {
+                        throw new UpstreamUnavailableException("circuit_open", "unavailable", 5);
+                    }
+                    return Map.of("summary", "S " + req.getEmailContent(), "replies", List.of("r1", "r2", "r3"));
+                });
+
+        List<Map<String, Object>> results = batchService.generate("alice",
+                List.of(item("a"), item("fails"), item("c")), 3);
+
+        assertThat(results).extracting(r -> r.get("index")).containsExactly(0, 1, 2);
+        assertThat(results.get(0)).containsEntry("status", "ok").containsEntry("summary", "S a");
+        assertThat(results.get(1)).containsEntry("status", "error").containsEntry("error", "upstream_unavailable");
+        assertThat(results.get(2)).containsEntry("summary", "S c");
+    }
+
+    @Test
+    @DisplayName("generate — items without quota are not sent to Gemini")
+    void generate_itemsBeyondQuotaAreRateLimited() {
+        when(emailGeneratorService.generateMultipleEmailReplies(any(), any(), anyBoolean()))
+                .thenReturn(Map.of("summary", "S", "replies", List.of("r1", "r2", "r3")));
+
+        List<Map<String, Object>> results = batchService.generate("alice",
+                List.of(item("a"), item("b"), item("c")), 1);
+
+        assertThat(results.get(0)).containsEntry("status", "ok");
+        assertThat(results.get(1)).containsEntry("error", "rate_limit_exceeded");
+        assertThat(results.get(2)).containsEntry("error", "rate_limit_exceeded");
+        verify(emailGeneratorService, times(1)).generateMultipleEmailReplies(any(), any(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("generate — never runs more items at once than the configured parallelism")
+    void generate_boundsParallelism() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(emailGeneratorService.generateMultipleEmailReplies(any(), any(), anyBoolean()))
+                .thenAnswer(inv -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return Map.of("summary", "S", "replies", List.of("r1", "r2", "r3"));
+                });
+
+        List<EmailRequest> items = List.of(item("1"), item("2"), item("3"), item("4"), item("5"), item("6"));
+        List<Map<String, Object>> results = batchService.generate("alice", items, items.size());
+
+        assertThat(results).allSatisfy(r -> assertThat(r).containsEntry("status", "ok"));
+        assertThat(peak.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("generate — with the pool saturated, the request thread still stops at the batch deadline")
+    void generate_callerRunsRespectsDeadline() {
+        ThreadPoolTaskExecutor saturated = mock(ThreadPoolTaskExecutor.class);
+        doThrow(new TaskRejectedException("full")).when(saturated).execute(any(Runnable.class));
+        BatchGenerationService service = new BatchGenerationService(emailGeneratorService, saturated);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 1L);
+        when(emailGeneratorService.generateMultipleEmailReplies(any(), any(), anyBoolean()))
+                .thenAnswer(inv -> {
+                    Thread.sleep(300);
+                    return Map.of("summary", "S", "replies", List.of("r1", "r2", "r3"));
+                });
+
+        List<EmailRequest> items = List.of(item("1"), item("2"), item("3"), item("4"), item("5"), item("6"),
+                item("7"), item("8"));
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = service.generate("alice", items, items.size());
+
+        // 8 items x 300 ms would be 2.4 s; the worker stops taking items after 1 s
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1800));
+        assertThat(results.get(0)).containsEntry("status", "ok");
+        assertThat(results.get(7)).containsEntry("status", "error").containsEntry("error", "timeout");
+    }
+}
@@ -0,0 +1,120 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("EmailPreprocessor unit tests")
+class EmailPreprocessorTest {
+
+    private SimpleMeterRegistry registry;
+    private EmailPreprocessor preprocessor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        preprocessor = new EmailPreprocessor(registry);
+    }
+
+    @Test
+    @DisplayName("strip — Gmail thread loses the attribution line and everything quoted below it")
+    void strip_gmailThread() {
+        String email = """
+                Hi Sam,
+
+                Friday at 2pm works for me.
+
+                Thanks,
+                Priya
+
+                On Tue, 4 Jun 2024 at 09:15, Sam Lee <sam@example.com> wrote:
+                > Can we move the budget review to Friday?
+                >
+                > On Mon, 3 Jun 2024 at 17:40, Priya <priya@example.com> wrote:
+                >> The review is on Thursday.
+                """;
+
+        String stripped = preprocessor.strip(email);
+
+        assertThat(stripped).isEqualTo("Hi Sam,\n\nFriday at 2pm works for me.\n\nThanks,\nPriya");
+        assertThat(registry.get("gemini.input.stripped_bytes").summary().totalAmount())
+                .isEqualTo(email.length() - stripped.length());
+    }
+
+    @Test
+    @DisplayName("strip — Outlook chain, signature delimiter, mobile signature and disclaimer are removed")
+    void strip_outlookSignatureAndDisclaimer() {
+        String email = """
+                Hello team,
+
+                Shipment 48213 moves to the 14th.
+                Sent from my iPhone
+
+                CONFIDENTIALITY NOTICE: This email and any attachments are for the intended recipient only.
+                If you are not the intended recipient, please delete it.
+
+                From: Alex Kim <alex@example.com>
+                Sent: Monday, June 3, 2024 4:02 PM
+                To: Team <team@example.com>
+                Subject: RE: Delivery schedule
+
+                When does shipment 48213 arrive?
+                """;
+        String signed = "Works for me.\n\n-- \nJordan Smith\nLogistics Manager\n";
+
+        assertThat(preprocessor.strip(email)).isEqualTo("Hello team,\n\nShipment 48213 moves to the 14th.");
+        assertThat(preprocessor.strip(signed)).isEqualTo("Works for me.");
+    }
+
+    @Test
+    @DisplayName("strip — forwarded message keeps its body, drops the marker and its headers")
+    void strip_forwardedMessage() {
+        String email = """
+                Can you answer this one?
+
+                ---------- Forwarded message ---------
+                From: Support <support@example.com>
+                Date: Tue, Jun 4, 2024 at 10:02 AM
+                Subject: Invoice 2024-118 overdue
+                To: Priya <priya@example.com>
+
+                Dear Priya, could you confirm the payment date?
+                """;
+
+        assertThat(preprocessor.strip(email))
+                .isEqualTo("Can you answer this one?\n\nDear Priya, could you confirm the payment date?");
+    }
+
+    @Test
+    @DisplayName("strip — disclaimer-like openings and From: lines in the body are kept")
+    void strip_keepsBodyThatLooksLikeBoilerplate() {
+        String opening = "Hi team,\n\nThis message may contain errors in the Q3 numbers: revenue was 1.2M not 2.1M. "
+                + "Please fix the deck before Friday.\n\nThanks,\nAnna";
+        String confidential = "CONFIDENTIALITY NOTICE: the board memo below is not for the wider team.\n\n"
+                + "Please review the memo by Monday.\n\nThanks,\nAnna";
+        String from = "Please check the invoice.\nFrom: the vendor portal\nDate: due on the 14th\n\nThanks";
+        String trailing = opening + "\n\nThis message may contain privileged information. "
+                + "If received in error, notify the sender.";
+
+        assertThat(preprocessor.strip(opening)).isSameAs(opening);
+        assertThat(preprocessor.strip(confidential)).isSameAs(confidential);
+        assertThat(preprocessor.strip(from)).isSameAs(from);
+        assertThat(preprocessor.strip(trailing)).isEqualTo(opening);
+    }
+
+    @Test
+    @DisplayName("strip — inline replies, plain emails and quote-only pastes are left alone")
+    void strip_keepsWhatIsNeeded() {
+        String inline = "> Who owns item 4?\nPriya does.\n\n> Due date?\nThe 14th.\n";
+        String plain = "On Monday the manager wrote:\nplease send the report.\n\n\n";
+        String quoteOnly = "On Tue, 4 Jun 2024 at 09:15, Sam <sam@example.com> wrote:\n> Are we still on?\n";
+
+        assertThat(preprocessor.strip(inline)).isSameAs(inline);
+        assertThat(preprocessor.strip(plain)).isSameAs(plain);
+        assertThat(preprocessor.strip(quoteOnly)).isSameAs(quoteOnly);
+        assertThat(registry.get("gemini.input.stripped_bytes").summary().totalAmount()).isZero();
+    }
+}
@@ -0,0 +1,128 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@DisplayName("FakeGeminiServer + GeminiProvider tests")
+class FakeGeminiServerTest {
+
+    private FakeGeminiServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    private GeminiProvider startWith(FakeGeminiServer.Settings settings) throws IOException {
+        server = new FakeGeminiServer(settings);
+        server.start();
+        GeminiProvider provider = new GeminiProvider(new RestTemplate(), new ObjectMapper());
+        ReflectionTestUtils.setField(provider, "geminiApiUrl", "http://127.0.0.1:" + server.port());
+        ReflectionTestUtils.setField(provider, "geminiApiEndpoint", "/v1beta/models/fake:generateContent");
+        ReflectionTestUtils.setField(provider, "geminiApiKey", "k");
+        ReflectionTestUtils.setField(provider, "geminiStreamEndpoint", "");
+        return provider;
+    }
+
+    private static FakeGeminiServer.Settings fast() {
+        return new FakeGeminiServer.Settings(0, 0, 0, 0, 0, 0, 0, null, 1);
+    }
+
+    @Test
+    @DisplayName("generate — multi prompt gets a parseable SUMMARY / REPLY n answer with token usage")
+    void generate_multiPrompt() throws IOException {
+        GeminiProvider provider = startWith(fast());
+
+        GeminiResponse response = provider.generate(GenerationConfig.MULTI, "Write SUMMARY: and REPLY 1: … REPLY 3:");
+
+        assertThat(response.finishReason()).isEqualTo("STOP");
+        assertThat(response.totalTokens()).isPositive();
+        ReplySectionParser parser = new ReplySectionParser(new ReplySectionParser.Listener() {
+            @Override public void onSummary(String summary) { }
+            @Override public void onReply(int index, String text) { }
+        });
+        parser.accept(response.text());
+        assertThat((List<?>) parser.finish().get("replies")).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("generate — candidateCount returns the extra candidates as alternatives")
+    void generate_candidateCount() throws IOException {
+        GeminiProvider provider = startWith(fast());
+
+        GeminiResponse response = provider.generate(GenerationConfig.MULTI.withCandidateCount(3),
+                "Write SUMMARY: and REPLY 1: … REPLY 3:");
+
+        assertThat(response.text()).startsWith("SUMMARY:");
+        assertThat(response.alternatives()).hasSize(2).allSatisfy(text -> assertThat(text).startsWith("SUMMARY:"));
+    }
+
+    @Test
+    @DisplayName("generate — single prompt gets a Summary: / Reply: answer")
+    void generate_singlePrompt() throws IOException {
+        GeminiProvider provider = startWith(fast());
+
+        GeminiResponse response = provider.generate(GenerationConfig.SINGLE, "Provide a Summary and a Reply");
+
+        assertThat(response.text()).startsWith("Summary:").contains("Reply:");
+    }
+
+    @Test
+    @DisplayName("generate — configured error rate returns Gemini-style 503 with Retry-After")
+    void generate_errorRate() throws IOException {
+        GeminiProvider provider = startWith(new FakeGeminiServer.Settings(0, 0, 0, 0, 0, 1.0, 0, null, 1));
+
+        assertThatThrownBy(() -> provider.generate(GenerationConfig.SINGLE, "x"))
+                .isInstanceOfSatisfying(HttpServerErrorException.class, ex -> {
+                    assertThat(ex.getStatusCode().value()).isEqualTo(503);
+                    assertThat(ex.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+                    assertThat(ex.getResponseBodyAsString()).contains("UNAVAILABLE");
+                });
+        assertThat(GeminiRetryPolicy.isTransient(
+                catchThrowable(() -> provider.generate(GenerationConfig.SINGLE, "x")))).isTrue();
+    }
+
+    @Test
+    @DisplayName("stream — text arrives in several chunks that add up to the full answer")
+    void stream_chunks() throws IOException {
+        GeminiProvider provider = startWith(fast());
+        List<String> chunks = new ArrayList<>();
+
+        GeminiResponse last = provider.stream(GenerationConfig.MULTI, "REPLY 1", chunks::add);
+
+        assertThat(chunks.size()).isGreaterThan(3);
+        assertThat(String.join("", chunks)).startsWith("SUMMARY:").contains("REPLY 3:");
+        assertThat(last.finishReason()).isEqualTo("STOP");
+        assertThat(last.candidatesTokens()).isPositive();
+        assertThat(server.requestCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("sampleLatencyMs — log-normal samples centre on the configured median")
+    void sampleLatency_median() {
+        server = new FakeGeminiServer(new FakeGeminiServer.Settings(0, 500, 0.5, 0, 0, 0, 0, null, 7));
+        long[] samples = new long[2001];
+        for (int i = 0; i < samples.length; i++) samples[i] = server.sampleLatencyMs();
+        Arrays.sort(samples);
+        server = null;
+
+        assertThat(samples[1000]).isBetween(450L, 550L);
+        assertThat(samples[1950]).isGreaterThan(900L);
+    }
+}
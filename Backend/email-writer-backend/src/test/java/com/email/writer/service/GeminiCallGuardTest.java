@@ -0,0 +1,138 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.ConcurrencyLimitExceededException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("GeminiCallGuard unit tests")
+class GeminiCallGuardTest {
+
+    private GeminiCallGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new GeminiCallGuard();
+        ReflectionTestUtils.setField(guard, "circuitWindow", 10);
+        ReflectionTestUtils.setField(guard, "circuitMinCalls", 4);
+        guard.init();
+    }
+
+    private void fail(RuntimeException ex) {
+        try {
+            guard.call(() -> { throw ex; }, true);
+        } catch (RuntimeException expected) {
+            assertThat(expected).isSameAs(ex);
+        }
+    }
+
+    @Test
+    @DisplayName("call — circuit opens at the failure rate and then rejects without calling upstream")
+    void call_opensCircuitAndFailsFast() {
+        guard.call(() -> "ok", true);
+        guard.call(() -> "ok", true);
+        fail(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        fail(new ResourceAccessException("Read timed out"));
+
+        assertThat(guard.circuitState()).isEqualTo(GeminiCallGuard.CircuitState.OPEN);
+        boolean[] called = {false};
+        assertThatThrownBy(() -> guard.call(() -> called[0] = true, true))
+                .isInstanceOfSatisfying(UpstreamUnavailableException.class, ex -> {
+                    assertThat(ex.getReason()).isEqualTo("circuit_open");
+                    assertThat(ex.getRetryAfterSeconds()).isBetween(1L, 30L);
+                });
+        assertThat(called[0]).isFalse();
+    }
+
+    @Test
+    @DisplayName("call — client errors (400) do not count as upstream failures")
+    void call_clientErrorsDoNotOpenCircuit() {
+        for (int i = 0; i < 6; i++) fail(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        assertThat(guard.circuitState()).isEqualTo(GeminiCallGuard.CircuitState.CLOSED);
+        assertThat(guard.currentLimit()).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("call — after open-seconds one probe is let through and its success closes the circuit")
+    void call_halfOpenProbeClosesCircuit() {
+        ReflectionTestUtils.setField(guard, "openSeconds", 0L);
+        for (int i = 0; i < 4; i++) fail(new HttpServerErrorException(HttpStatus.TOO_MANY_REQUESTS));
+
+        String result = guard.call(() -> {
+            assertThat(guard.circuitState()).isEqualTo(GeminiCallGuard.CircuitState.HALF_OPEN);
+            // A second caller during the probe is turned away
+            assertThatThrownBy(() -> guard.call(() -> "second", true))
+                    .isInstanceOf(UpstreamUnavailableException.class);
+            return "probe";
+        }, true);
+
+        assertThat(result).isEqualTo("probe");
+        assertThat(guard.circuitState()).isEqualTo(GeminiCallGuard.CircuitState.CLOSED);
+    }
+
+    @Test
+    @DisplayName("call — an Error from upstream still releases the slot and the half-open probe")
+    void call_errorReleasesSlotAndProbe() {
+        ReflectionTestUtils.setField(guard, "openSeconds", 0L);
+        for (int i = 0; i < 4; i++) fail(new HttpServerErrorException(HttpStatus.TOO_MANY_REQUESTS));
+
+        assertThatThrownBy(() -> guard.call(() -> { throw new StackOverflowError(); }, true))
+                .isInstanceOf(StackOverflowError.class);
+        assertThat(guard.currentInFlight()).isZero();
+
+        // The probe is back, so the next call can close the circuit
+        assertThat(guard.call(() -> "probe", true)).isEqualTo("probe");
+        assertThat(guard.circuitState()).isEqualTo(GeminiCallGuard.CircuitState.CLOSED);
+    }
+
+    @Test
+    @DisplayName("call — calls beyond the concurrency limit are rejected as overloaded")
+    void call_rejectsAboveLimit() {
+        ReflectionTestUtils.setField(guard, "maxLimit", 2);
+        guard.init();
+
+        assertThatThrownBy(() -> guard.call(() -> guard.call(() -> guard.call(() -> "third", true), true), true))
+                .isInstanceOfSatisfying(UpstreamUnavailableException.class,
+                        ex -> assertThat(ex.getReason()).isEqualTo("overloaded"));
+        assertThat(guard.currentInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("call — upstream failures shrink the limit, never below the minimum")
+    void call_failuresShrinkLimit() {
+        ReflectionTestUtils.setField(guard, "circuitMinCalls", 100);
+        for (int i = 0; i < 50; i++) fail(new ResourceAccessException("Read timed out"));
+
+        assertThat(guard.currentLimit()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("acquireUserSlot — caps in-flight generations per user and frees the slot on close")
+    void acquireUserSlot_capsPerUser() {
+        GeminiCallGuard.Permit a = guard.acquireUserSlot("alice");
+        GeminiCallGuard.Permit b = guard.acquireUserSlot("alice");
+        GeminiCallGuard.Permit c = guard.acquireUserSlot("alice");
+        guard.acquireUserSlot("bob").close();
+
+        assertThatThrownBy(() -> guard.acquireUserSlot("alice"))
+                .isInstanceOf(ConcurrencyLimitExceededException.class);
+
+        a.close();
+        a.close();   // double close must not free a second slot
+        guard.acquireUserSlot("alice");
+        assertThatThrownBy(() -> guard.acquireUserSlot("alice"))
+                .isInstanceOf(ConcurrencyLimitExceededException.class);
+        b.close();
+        c.close();
+    }
+}
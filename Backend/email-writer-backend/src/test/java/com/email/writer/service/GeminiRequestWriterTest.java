@@ -0,0 +1,77 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GeminiRequestWriter unit tests")
+class GeminiRequestWriterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final GeminiRequestWriter writer = new GeminiRequestWriter(mapper);
+
+    /** The Map-based body EmailGeneratorService used to build. */
+    private byte[] mapBody(GenerationConfig config, String prompt) throws Exception {
+        return mapper.writeValueAsBytes(Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt)))),
+                "generationConfig", Map.of(
+                        "temperature",     config.temperature(),
+                        "maxOutputTokens", config.maxOutputTokens(),
+                        "topP",            config.topP(),
+                        "topK",            config.topK())));
+    }
+
+    @Test
+    @DisplayName("write — produces the same JSON document as the Map-based body")
+    void write_matchesMapSerialization() throws Exception {
+        List<String> prompts = List.of(
+                "",
+                "Plain prompt",
+                "Quotes \" and backslashes \\ and\nnewlines\r\n\ttabs",
+                "Control \u0001\u001F chars, unicode é ü 日本語 and emoji 🚀",
+                "</script> <b>html</b> & stuff",
+                "x".repeat(20_000));
+
+        for (GenerationConfig config : List.of(GenerationConfig.MULTI, GenerationConfig.MULTI_REGENERATE,
+                                               GenerationConfig.SINGLE, new GenerationConfig(0.1, 77, 0.5, 3))) {
+            for (String prompt : prompts) {
+                assertThat(mapper.readTree(writer.write(config, prompt)))
+                        .isEqualTo(mapper.readTree(mapBody(config, prompt)));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("write — per-request maxOutputTokens is written exactly without growing the encoded-config cache")
+    void write_maxOutputTokensDoesNotGrowCache() throws Exception {
+        for (int tokens = 128; tokens <= 8192; tokens += 128) {
+            for (GenerationConfig base : List.of(GenerationConfig.MULTI, GenerationConfig.SINGLE)) {
+                GenerationConfig config = base.withMaxOutputTokens(tokens);
+                assertThat(mapper.readTree(writer.write(config, "Prompt")))
+                        .isEqualTo(mapper.readTree(mapBody(config, "Prompt")));
+            }
+        }
+        byte[] pooled = writer.write(GenerationConfig.MULTI.withCandidateCount(3).withMaxOutputTokens(640), "Prompt");
+        assertThat(mapper.readTree(pooled).at("/generationConfig/candidateCount").asInt()).isEqualTo(3);
+        assertThat(mapper.readTree(pooled).at("/generationConfig/maxOutputTokens").asInt()).isEqualTo(640);
+
+        assertThat(writer.cachedTails()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("write — prompt text round-trips exactly")
+    void write_promptRoundTrips() throws Exception {
+        String prompt = "Line one\nLine \"two\"   😀";
+
+        byte[] body = writer.write(GenerationConfig.SINGLE, prompt);
+
+        assertThat(mapper.readTree(body).at("/contents/0/parts/0/text").asText()).isEqualTo(prompt);
+        assertThat(mapper.readTree(body).at("/generationConfig/maxOutputTokens").asInt()).isEqualTo(1024);
+    }
+}
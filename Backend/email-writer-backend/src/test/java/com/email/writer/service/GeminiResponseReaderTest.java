@@ -0,0 +1,100 @@
+package com.email.writer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("GeminiResponseReader unit tests")
+class GeminiResponseReaderTest {
+
+    private final GeminiResponseReader reader = new GeminiResponseReader(new ObjectMapper());
+
+    private GeminiResponse read(String json) throws IOException {
+        return reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("read — extracts text, finishReason and usage, skipping everything else")
+    void read_fullResponse() throws IOException {
+        GeminiResponse response = read("""
+                {
+                  "candidates": [{
+                    "content": {"role": "model", "parts": [{"text": "SUMMARY: hi\\nREPLY 1: ok"}, {"text": "ignored"}]},
+                    "safetyRatings": [{"category": "HARM_CATEGORY_HARASSMENT", "probability": "NEGLIGIBLE"}],
+                    "citationMetadata": {"citationSources": [{"startIndex": 1, "uri": "https://example.com"}]},
+                    "finishReason": "STOP",
+                    "index": 0
+                  }, {
+                    "content": {"parts": [{"text": "second candidate"}]}
+                  }],
+                  "usageMetadata": {
+                    "promptTokenCount": 120,
+                    "candidatesTokenCount": 80,
+                    "totalTokenCount": 200,
+                    "promptTokensDetails": [{"modality": "TEXT", "tokenCount": 120}]
+                  },
+                  "modelVersion": "gemini-2.0-flash"
+                }""");
+
+        assertThat(response.text()).isEqualTo("SUMMARY: hi\nREPLY 1: ok");
+        assertThat(response.finishReason()).isEqualTo("STOP");
+        assertThat(response.truncated()).isFalse();
+        assertThat(response.promptTokens()).isEqualTo(120);
+        assertThat(response.candidatesTokens()).isEqualTo(80);
+        assertThat(response.totalTokens()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("read — usageMetadata before candidates and a missing text are handled")
+    void read_blockedResponse() throws IOException {
+        GeminiResponse response = read("""
+                {"usageMetadata": {"promptTokenCount": 7},
+                 "candidates": [{"finishReason": "SAFETY", "content": {"parts": []}}]}""");
+
+        assertThat(response.text()).isEmpty();
+        assertThat(response.finishReason()).isEqualTo("SAFETY");
+        assertThat(response.truncated()).isTrue();
+        assertThat(response.promptTokens()).isEqualTo(7);
+        assertThat(response.totalTokens()).isZero();
+    }
+
+    @Test
+    @DisplayName("read — later candidates are alternatives only when they finished normally")
+    void read_alternatives() throws IOException {
+        GeminiResponse response = read("""
+                {"candidates": [
+                  {"content": {"parts": [{"text": "first"}]}, "finishReason": "STOP"},
+                  {"content": {"parts": [{"text": "second"}]}, "finishReason": "STOP"},
+                  {"content": {"parts": [{"text": "cut off"}]}, "finishReason": "MAX_TOKENS"},
+                  {"content": {"parts": []}, "finishReason": "STOP"},
+                  {"content": {"parts": [{"text": "third"}]}}
+                ]}""");
+
+        assertThat(response.text()).isEqualTo("first");
+        assertThat(response.alternatives()).containsExactly("second", "third");
+        assertThat(read("{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"only\"}]}}]}")
+                .alternatives()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("read — legacy output shape and an SSE data payload")
+    void read_outputShapeAndString() throws IOException {
+        assertThat(read("{\"output\": \"SUMMARY: legacy\"}").text()).isEqualTo("SUMMARY: legacy");
+        assertThat(reader.read("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"chunk\"}]}}]}").text())
+                .isEqualTo("chunk");
+    }
+
+    @Test
+    @DisplayName("read — a body that is not a JSON object is rejected")
+    void read_notAnObject() {
+        assertThatThrownBy(() -> read("[1, 2]")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> read("<html>Bad Gateway</html>")).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,161 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.GeminiApiException;
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("GeminiRetryPolicy unit tests")
+class GeminiRetryPolicyTest {
+
+    private ThreadPoolTaskExecutor executor;
+    private SimpleMeterRegistry registry;
+    private GeminiRetryPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        registry = new SimpleMeterRegistry();
+        policy = new GeminiRetryPolicy(executor, registry);
+        ReflectionTestUtils.setField(policy, "baseDelayMs", 1L);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", 5L);
+        policy.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("execute — retries transient failures until an attempt succeeds")
+    void execute_retriesTransientFailures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute("multi", () -> {
+            if (calls.incrementAndGet() == 1) throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            if (calls.get() == 2) throw new ResourceAccessException("Connection reset");
+            return "ok";
+        }, true);
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+        assertThat(registry.counter("gemini.retry.attempts", "kind", "retry").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("execute — 400, read timeouts and guard rejections are not retried")
+    void execute_doesNotRetryPermanentFailures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("multi", () -> {
+            calls.incrementAndGet();
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        }, true)).isInstanceOf(HttpClientErrorException.class);
+        assertThatThrownBy(() -> policy.execute("multi", () -> {
+            calls.incrementAndGet();
+            throw new ResourceAccessException("Read timed out", new SocketTimeoutException("Read timed out"));
+        }, true)).isInstanceOf(ResourceAccessException.class);
+        assertThatThrownBy(() -> policy.execute("multi", () -> {
+            calls.incrementAndGet();
+            throw new UpstreamUnavailableException("circuit_open", "unavailable", 5);
+        }, true)).isInstanceOf(UpstreamUnavailableException.class);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("execute — a Retry-After longer than max-delay ends retrying")
+    void execute_honoursLongRetryAfter() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "60");
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("multi", () -> {
+            calls.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests",
+                    headers, new byte[0], null);
+        }, true)).isInstanceOf(HttpClientErrorException.class);
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("execute — stops retrying once the retry budget is spent")
+    void execute_budgetCapsRetries() {
+        ReflectionTestUtils.setField(policy, "budgetPercent", 0);
+        ReflectionTestUtils.setField(policy, "budgetMinPerSecond", 0);
+        policy.init();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("multi", () -> {
+            calls.incrementAndGet();
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        }, true)).isInstanceOf(HttpServerErrorException.class);
+
+        assertThat(calls).hasValue(1);
+        assertThat(registry.counter("gemini.retry.rejected", "reason", "budget").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("execute — a slow first attempt is hedged and the faster second attempt wins")
+    void execute_hedgesSlowAttempt() throws InterruptedException {
+        ReflectionTestUtils.setField(policy, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(policy, "hedgeMinSamples", 1);
+        ReflectionTestUtils.setField(policy, "hedgeMinDelayMs", 20L);
+        policy.execute("multi", () -> "warm-up", true);
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        String result = policy.execute("multi", () -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }
+            return "hedge";
+        }, true);
+        release.countDown();
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(registry.counter("gemini.hedge.won").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("toApiException — keeps the status and transient flag, never the upstream message")
+    void toApiException_classifies() {
+        GeminiApiException unavailable = GeminiRetryPolicy.toApiException(
+                new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE, "secret upstream detail"));
+        GeminiApiException badRequest = GeminiRetryPolicy.toApiException(
+                new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+
+        assertThat(unavailable.getStatus()).isEqualTo(503);
+        assertThat(unavailable.isTransient()).isTrue();
+        assertThat(unavailable.getMessage()).isEqualTo(GeminiRetryPolicy.FAILURE_MESSAGE);
+        assertThat(badRequest.isTransient()).isFalse();
+    }
+}
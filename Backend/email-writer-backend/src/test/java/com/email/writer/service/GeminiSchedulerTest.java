@@ -0,0 +1,151 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("GeminiScheduler unit tests")
+class GeminiSchedulerTest {
+
+    private static final GeminiResponse OK = new GeminiResponse("ok", "STOP", 10, 10, 20);
+
+    private SimpleMeterRegistry registry;
+    private GeminiScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        scheduler = new GeminiScheduler(registry);
+    }
+
+    /** 10 requests a second, a burst of 10. */
+    private void limitTo600PerMinute() {
+        ReflectionTestUtils.setField(scheduler, "requestsPerMinute", 600);
+        ReflectionTestUtils.setField(scheduler, "burstSeconds", 1);
+    }
+
+    private void drainBurst() {
+        for (int i = 0; i < 10; i++) scheduler.call("warmup", 100, () -> OK);
+    }
+
+    /** Start one waiting call per name, in order, each queued before the next starts. */
+    private List<Thread> enqueue(List<String> dispatched, String... users) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (String user : users) {
+            int before = scheduler.queued();
+            Thread thread = new Thread(() -> scheduler.call(user, 100, () -> {
+                dispatched.add(user);
+                return OK;
+            }));
+            thread.start();
+            threads.add(thread);
+            while (scheduler.queued() == before && thread.isAlive()) Thread.sleep(1);
+        }
+        return threads;
+    }
+
+    @Test
+    @DisplayName("call — without key limits every call passes straight through")
+    void call_passesThroughWithoutLimits() {
+        scheduler.init();
+
+        for (int i = 0; i < 1000; i++) assertThat(scheduler.call("alice", 5000, () -> OK)).isSameAs(OK);
+        assertThat(registry.get("gemini.scheduler.wait").tag("tier", "standard").timer().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("call — waiting longer than max-wait-ms for the quota fails with 503 queue_timeout")
+    @SuppressWarnings("unchecked")
+    void call_timesOutWhenQuotaIsSpent() {
+        // 1 request a second, a burst of 10 — a cold JVM can take longer than
+        // the 100 ms refill at 600/min just to drain the burst
+        ReflectionTestUtils.setField(scheduler, "requestsPerMinute", 60);
+        ReflectionTestUtils.setField(scheduler, "burstSeconds", 10);
+        ReflectionTestUtils.setField(scheduler, "maxWaitMs", 20L);
+        scheduler.init();
+        drainBurst();
+
+        // The 11th call needs ~1 s of refill
+        assertThatThrownBy(() -> scheduler.call("alice", 100, () -> OK))
+                .isInstanceOfSatisfying(UpstreamUnavailableException.class,
+                        ex -> assertThat(ex.getReason()).isEqualTo("queue_timeout"));
+        assertThat(registry.get("gemini.scheduler.rejected").tag("reason", "queue_timeout").counter().count())
+                .isEqualTo(1);
+        assertThat(scheduler.queued()).isZero();
+        // The abandoned call's share is taken back off alice's tag
+        assertThat((Map<String, Double>) ReflectionTestUtils.getField(scheduler, "lastFinish")).doesNotContainKey("alice");
+    }
+
+    @Test
+    @DisplayName("call — a failed call gets its tokens back, and its request when it never left the process")
+    void call_refundsFailedCalls() {
+        limitTo600PerMinute();
+        ReflectionTestUtils.setField(scheduler, "tokensPerMinute", 60_000L);
+        scheduler.init();
+
+        assertThatThrownBy(() -> scheduler.call("alice", 500, () -> {
+            throw new UpstreamUnavailableException("circuit_open", "down", 2);
+        })).isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(available("requests")).isCloseTo(10, within(0.5));
+        assertThat(available("tokens")).isCloseTo(1000, within(5.0));
+
+        assertThatThrownBy(() -> scheduler.call("alice", 500, () -> {
+            throw new IllegalStateException("read timed out");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(available("requests")).isCloseTo(9, within(0.5));
+        assertThat(available("tokens")).isCloseTo(1000, within(5.0));
+
+        assertThatThrownBy(() -> scheduler.call("alice", 500, () -> {
+            throw new OutOfMemoryError("Java heap space");
+        })).isInstanceOf(OutOfMemoryError.class);
+        assertThat(available("tokens")).isCloseTo(1000, within(5.0));
+    }
+
+    private double available(String bucket) {
+        return registry.get("gemini.scheduler.available").tag("bucket", bucket).gauge().value();
+    }
+
+    @Test
+    @DisplayName("call — a user arriving behind a heavy user's queue is served after one of their calls")
+    void call_sharesFairlyBetweenUsers() throws InterruptedException {
+        limitTo600PerMinute();
+        scheduler.init();
+        drainBurst();
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+
+        for (Thread thread : enqueue(dispatched, "bob", "bob", "bob", "alice")) thread.join();
+
+        assertThat(dispatched).containsExactly("bob", "alice", "bob", "bob");
+        assertThat(registry.get("gemini.scheduler.wait").tag("tier", "standard").timer().count()).isEqualTo(14);
+    }
+
+    @Test
+    @DisplayName("call — priority users get a larger share and go ahead of an equal backlog")
+    void call_priorityTierGoesFirst() throws InterruptedException {
+        limitTo600PerMinute();
+        ReflectionTestUtils.setField(scheduler, "priorityUserList", "alice, carol");
+        scheduler.init();
+        drainBurst();
+        List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+
+        for (Thread thread : enqueue(dispatched, "bob", "bob", "alice", "alice")) thread.join();
+
+        // alice's tags advance by a quarter of bob's — both are served before bob's second call
+        assertThat(dispatched.subList(0, 3)).containsOnlyOnce("bob").contains("alice");
+        assertThat(dispatched.get(3)).isEqualTo("bob");
+        assertThat(scheduler.tierOf("carol")).isEqualTo(GeminiScheduler.PRIORITY);
+        assertThat(registry.get("gemini.scheduler.wait").tag("tier", "priority").timer().count()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,101 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("GenerationCacheService unit tests")
+class GenerationCacheServiceTest {
+
+    private GenerationCacheService cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new GenerationCacheService();
+    }
+
+    private EmailRequest request(String subject, String content, String tone) {
+        EmailRequest req = new EmailRequest();
+        req.setSubject(subject);
+        req.setEmailContent(content);
+        req.setTone(tone);
+        return req;
+    }
+
+    @Test
+    @DisplayName("key — whitespace and tone case do not change the key")
+    void key_normalizesWhitespaceAndToneCase() {
+        String a = GenerationCacheService.key("multi", "v1",
+                request("Invoice", "Hello,\n\n  please pay.  ", "Professional"), "en");
+        String b = GenerationCacheService.key("multi", "v1",
+                request(" Invoice ", "Hello, please pay.", "professional"), "EN");
+        assertThat(a).isEqualTo(b);
+    }
+
+    @Test
+    @DisplayName("key — mode, prompt version and content all change the key")
+    void key_differsByModeVersionAndContent() {
+        EmailRequest req = request("Invoice", "Please pay.", "professional");
+        String base = GenerationCacheService.key("multi", "v1", req, "en");
+
+        assertThat(GenerationCacheService.key("single", "v1", req, "en")).isNotEqualTo(base);
+        assertThat(GenerationCacheService.key("multi", "v2", req, "en")).isNotEqualTo(base);
+        assertThat(GenerationCacheService.key("multi", "v1", req, "hi")).isNotEqualTo(base);
+        assertThat(GenerationCacheService.key("multi", "v1",
+                request("Invoice", "Please pay now.", "professional"), "en")).isNotEqualTo(base);
+    }
+
+    @Test
+    @DisplayName("get — counts a miss, then a hit after put")
+    void get_countsMissThenHit() {
+        assertThat((Object) cache.get("k")).isNull();
+        cache.put("k", Map.of("summary", "s"));
+        Map<String, String> hit = cache.get("k");
+
+        assertThat(hit).containsEntry("summary", "s");
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("put — evicts the least recently used entry beyond max-entries")
+    void put_evictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");          // touch a — b becomes eldest
+        cache.put("c", "C");
+
+        assertThat((Object) cache.get("b")).isNull();
+        assertThat((Object) cache.get("a")).isEqualTo("A");
+        assertThat((Object) cache.get("c")).isEqualTo("C");
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get — expired entries are removed and counted as misses")
+    void get_expiredEntryIsMiss() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+        cache.put("k", "V");
+
+        assertThat((Object) cache.get("k")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get/put — disabled cache never stores or returns values")
+    void disabledCache_isNoOp() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        cache.put("k", "V");
+
+        assertThat((Object) cache.get("k")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,217 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.entity.GenerationJob;
+import com.email.writer.entity.GenerationJob.Status;
+import com.email.writer.repository.GenerationJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GenerationJobService unit tests")
+class GenerationJobServiceTest {
+
+    @Mock
+    private GenerationJobRepository repo;
+
+    private GenerationJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        jobService = new GenerationJobService(repo, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    private GenerationJob job(Status status, int attempts) {
+        GenerationJob job = new GenerationJob();
+        job.setId(UUID.randomUUID());
+        job.setUsername("alice");
+        job.setMode("multi");
+        job.setStatus(status);
+        job.setAttempts(attempts);
+        job.setCreatedAt(Instant.now().minusSeconds(5));
+        job.setRunAfter(Instant.now());
+        return job;
+    }
+
+    @Test
+    @DisplayName("submit — stores the request as a QUEUED job runnable immediately")
+    void submit_queuesJob() {
+        when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        EmailRequest request = new EmailRequest();
+        request.setSubject("Invoice");
+        request.setEmailContent("Please pay.");
+
+        GenerationJob job = jobService.submit("alice", request, "single");
+
+        assertThat(job.getStatus()).isEqualTo(Status.QUEUED);
+        assertThat(job.getMode()).isEqualTo("single");
+        assertThat(job.getEmailContent()).isEqualTo("Please pay.");
+        assertThat(job.getRunAfter()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("get — another user's job is reported as not found")
+    void get_otherUsersJobIsNotFound() {
+        GenerationJob job = job(Status.QUEUED, 0);
+        when(repo.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThatThrownBy(() -> jobService.get("mallory", job.getId()))
+                .hasMessageContaining("Job not found");
+        assertThat(jobService.get("alice", job.getId())).isSameAs(job);
+    }
+
+    @Test
+    @DisplayName("claim — marks locked jobs RUNNING with a lease and counts the attempt")
+    void claim_marksRunning() {
+        GenerationJob job = job(Status.QUEUED, 0);
+        when(repo.lockNextQueued(any(), eq(2))).thenReturn(List.of(job));
+
+        List<GenerationJob> claimed = jobService.claim(2);
+
+        assertThat(claimed).containsExactly(job);
+        assertThat(job.getStatus()).isEqualTo(Status.RUNNING);
+        assertThat(job.getAttempts()).isEqualTo(1);
+        assertThat(job.getLeaseUntil()).isAfter(Instant.now());
+    }
+
+    /**
+     * Back the conditional completion queries with {@code job}, applying
+     * the same WHERE clause as the JPQL: status RUNNING and the claimed attempt.
+     */
+    private void conditionalUpdatesOn(GenerationJob job) {
+        lenient().when(repo.finishRunning(eq(job.getId()), anyInt(), any(), any(), any(), any(), any(), eq(Status.RUNNING)))
+                .thenAnswer(inv -> {
+                    if (job.getStatus() != Status.RUNNING || job.getAttempts() != (int) inv.getArgument(1)) return 0;
+                    job.setStatus(inv.getArgument(2));
+                    job.setResult(inv.getArgument(3));
+                    job.setErrorCode(inv.getArgument(4));
+                    job.setErrorMessage(inv.getArgument(5));
+                    job.setFinishedAt(inv.getArgument(6));
+                    job.setLeaseUntil(null);
+                    return 1;
+                });
+        lenient().when(repo.requeueRunning(eq(job.getId()), anyInt(), any(), anyInt(), eq(Status.QUEUED), eq(Status.RUNNING)))
+                .thenAnswer(inv -> {
+                    if (job.getStatus() != Status.RUNNING || job.getAttempts() != (int) inv.getArgument(1)) return 0;
+                    job.setStatus(Status.QUEUED);
+                    job.setRunAfter(inv.getArgument(2));
+                    job.setAttempts(job.getAttempts() - (int) inv.getArgument(3));
+                    job.setLeaseUntil(null);
+                    return 1;
+                });
+    }
+
+    @Test
+    @DisplayName("retryLater — requeues with a delay until attempts run out, then fails")
+    void retryLater_requeuesThenFails() {
+        GenerationJob job = job(Status.RUNNING, 1);
+        conditionalUpdatesOn(job);
+
+        assertThat(jobService.retryLater(job.getId(), 1, 5, "upstream_unavailable", "busy")).isFalse();
+        assertThat(job.getStatus()).isEqualTo(Status.QUEUED);
+        assertThat(job.getAttempts()).isEqualTo(1);
+        assertThat(job.getRunAfter()).isAfter(Instant.now());
+
+        job.setStatus(Status.RUNNING);
+        job.setAttempts(3);
+        assertThat(jobService.retryLater(job.getId(), 3, 5, "upstream_unavailable", "busy")).isTrue();
+        assertThat(job.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(job.getErrorCode()).isEqualTo("upstream_unavailable");
+    }
+
+    @Test
+    @DisplayName("deferUnstarted — a call refused by the user's own cap is requeued without using an attempt")
+    void deferUnstarted_refundsAttempt() {
+        GenerationJob job = job(Status.QUEUED, 2);
+        conditionalUpdatesOn(job);
+        when(repo.lockNextQueued(any(), eq(1))).thenReturn(List.of(job));
+
+        // More refusals than max-attempts: the job must still be queued, not FAILED
+        for (int i = 0; i < 5; i++) {
+            int attempt = jobService.claim(1).get(0).getAttempts();
+            assertThat(attempt).isEqualTo(3);
+            jobService.deferUnstarted(job.getId(), attempt, 2, "too_many_in_flight");
+            assertThat(job.getStatus()).isEqualTo(Status.QUEUED);
+            assertThat(job.getAttempts()).isEqualTo(2);
+        }
+        assertThat(job.getRunAfter()).isAfter(Instant.now());
+    }
+
+    @Test
+    @DisplayName("succeed/view — the stored result is returned with the finished job, and waiters are woken")
+    void succeed_storesResultAndWakesWaiters() {
+        GenerationJob job = job(Status.RUNNING, 1);
+        conditionalUpdatesOn(job);
+        boolean[] woken = {false};
+        jobService.onFinished(job.getId(), () -> woken[0] = true);
+
+        assertThat(jobService.succeed(job.getId(), 1, Map.of("summary", "S", "replies", List.of("a", "b", "c")))).isTrue();
+        jobService.finished(job.getId());
+
+        Map<String, Object> view = jobService.view(job);
+        assertThat(view).containsEntry("status", "succeeded");
+        assertThat(view.get("result")).isEqualTo(Map.of("summary", "S", "replies", List.of("a", "b", "c")));
+        assertThat(woken[0]).isTrue();
+    }
+
+    @Test
+    @DisplayName("succeed — a worker whose lease was reaped cannot overwrite the requeued run")
+    void succeed_afterReaperRequeue_isDropped() {
+        GenerationJob job = job(Status.QUEUED, 0);
+        conditionalUpdatesOn(job);
+        when(repo.lockNextQueued(any(), eq(1))).thenReturn(List.of(job));
+        when(repo.requeueExpired(any(), eq(3), eq(Status.QUEUED), eq(Status.RUNNING))).thenAnswer(inv -> {
+            job.setStatus(Status.QUEUED);
+            job.setLeaseUntil(null);
+            return 1;
+        });
+
+        int staleAttempt = jobService.claim(1).get(0).getAttempts();
+        jobService.reap();                                   // lease expired: back to QUEUED
+
+        // Late result while the job is queued again
+        assertThat(jobService.succeed(job.getId(), staleAttempt, Map.of("summary", "old"))).isFalse();
+        assertThat(job.getStatus()).isEqualTo(Status.QUEUED);
+
+        // ...and while the next worker is running it
+        int currentAttempt = jobService.claim(1).get(0).getAttempts();
+        assertThat(jobService.succeed(job.getId(), staleAttempt, Map.of("summary", "old"))).isFalse();
+        assertThat(jobService.retryLater(job.getId(), staleAttempt, 5, "upstream_unavailable", "busy")).isFalse();
+        assertThat(job.getStatus()).isEqualTo(Status.RUNNING);
+        assertThat(job.getResult()).isNull();
+
+        assertThat(jobService.succeed(job.getId(), currentAttempt, Map.of("summary", "new"))).isTrue();
+        assertThat(job.getStatus()).isEqualTo(Status.SUCCEEDED);
+        assertThat(job.getResult()).contains("new");
+    }
+
+    @Test
+    @DisplayName("fail — a late failure cannot reopen or overwrite a job the reaper marked worker_lost")
+    void fail_afterWorkerLost_isDropped() {
+        GenerationJob job = job(Status.FAILED, 3);
+        job.setErrorCode("worker_lost");
+        conditionalUpdatesOn(job);
+
+        assertThat(jobService.succeed(job.getId(), 3, Map.of("summary", "late"))).isFalse();
+        assertThat(jobService.retryLater(job.getId(), 2, 5, "upstream_unavailable", "busy")).isFalse();
+        assertThat(job.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(job.getErrorCode()).isEqualTo("worker_lost");
+    }
+}
@@ -0,0 +1,109 @@
+package com.email.writer.service;
+
+import com.email.writer.exception.UpstreamUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("InFlightRequestCoalescer unit tests")
+class InFlightRequestCoalescerTest {
+
+    private InFlightRequestCoalescer coalescer;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new InFlightRequestCoalescer();
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @Test
+    @DisplayName("execute — concurrent callers with the same key share one upstream call")
+    void execute_sameKey_sharesOneCall() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release       = new CountDownLatch(1);
+
+        Future<String> leader = pool.submit(() -> coalescer.execute("k", () -> {
+            upstreamCalls.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<String> follower = pool.submit(() -> coalescer.execute("k", () -> {
+            upstreamCalls.incrementAndGet();
+            return "other";
+        }));
+        // Wait until the follower has joined before letting the leader finish
+        while (coalescer.coalescedCount() == 0) Thread.onSpinWait();
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(upstreamCalls.get()).isEqualTo(1);
+        assertThat(coalescer.inFlightCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("execute — leader failure is propagated and the key is released")
+    void execute_leaderFailure_releasesKey() {
+        assertThatThrownBy(() -> coalescer.execute("k", () -> {
+            throw new RuntimeException("Gemini down");
+        })).hasMessage("Gemini down");
+
+        assertThat(coalescer.inFlightCount()).isZero();
+        assertThat(coalescer.<String>execute("k", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    @DisplayName("execute — a follower gives up after max-wait-ms with 503 coalesce_timeout")
+    void execute_followerTimesOut() throws Exception {
+        ReflectionTestUtils.setField(coalescer, "maxWaitMs", 20L);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release       = new CountDownLatch(1);
+
+        Future<String> leader = pool.submit(() -> coalescer.execute("k", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> coalescer.execute("k", () -> "other"))
+                .isInstanceOfSatisfying(UpstreamUnavailableException.class,
+                        ex -> assertThat(ex.getReason()).isEqualTo("coalesce_timeout"));
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    @Test
+    @DisplayName("execute — null key never coalesces")
+    void execute_nullKey_runsEveryCall() {
+        AtomicInteger calls = new AtomicInteger();
+        coalescer.execute(null, calls::incrementAndGet);
+        coalescer.execute(null, calls::incrementAndGet);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(coalescer.coalescedCount()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
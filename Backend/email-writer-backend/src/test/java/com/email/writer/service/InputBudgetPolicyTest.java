@@ -0,0 +1,99 @@
+package com.email.writer.service;
+
+import com.email.writer.service.GeminiRequestWriter.GenerationConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("InputBudgetPolicy unit tests")
+class InputBudgetPolicyTest {
+
+    private static final String NEWEST = """
+            Hi Sam,
+
+            Following up below — can you confirm the new delivery date for order 48213 by Friday?
+
+            Thanks,
+            Priya""";
+
+    private InputBudgetPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new InputBudgetPolicy(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(policy, "maxInputTokens", 200);
+    }
+
+    private static String thread() {
+        StringBuilder older = new StringBuilder(NEWEST).append("\n\n");
+        older.append("From: Sam Lee <sam@example.com>\nSent: Monday, 3 June 2024 09:12\nSubject: Re: Delivery\n\n");
+        for (int i = 0; i < 30; i++) {
+            older.append("We are still waiting for the carrier to confirm the pallet count and the loading dock slot.\n\n");
+        }
+        older.append("Is the warehouse open on Saturday?\n\n");
+        older.append("On Fri, 31 May 2024 at 16:02, Priya <priya@example.com> wrote:\n");
+        older.append("> Please ship the remaining items as soon as possible.\n".repeat(40));
+        return older.toString();
+    }
+
+    @Test
+    @DisplayName("fit — content within budget is passed through untouched")
+    void fit_withinBudget() {
+        InputBudgetPolicy.FittedInput input = policy.fit(NEWEST);
+
+        assertThat(input.trimmed()).isFalse();
+        assertThat(input.content()).isSameAs(NEWEST);
+    }
+
+    @Test
+    @DisplayName("fit — over budget keeps the newest message, headers and questions, marks omissions")
+    void fit_condensesThread() {
+        String thread = thread();
+
+        InputBudgetPolicy.FittedInput input = policy.fit(thread);
+
+        assertThat(input.trimmed()).isTrue();
+        assertThat(input.originalTokens()).isGreaterThan(200);
+        assertThat(input.tokens()).isLessThanOrEqualTo(220);
+        assertThat(input.content())
+                .startsWith(NEWEST)
+                .contains("From: Sam Lee <sam@example.com>")
+                .contains("Is the warehouse open on Saturday?")
+                .contains("paragraphs omitted")
+                .doesNotContain("> Please ship");
+        // Thread order is preserved
+        assertThat(input.content().indexOf("From: Sam Lee"))
+                .isLessThan(input.content().indexOf("Is the warehouse open"));
+    }
+
+    @Test
+    @DisplayName("fit — a single oversized message is cut on a word boundary")
+    void fit_cutsOversizedNewestMessage() {
+        String huge = "Please review the attached contract carefully before the call. ".repeat(200);
+
+        InputBudgetPolicy.FittedInput input = policy.fit(huge);
+
+        assertThat(input.trimmed()).isTrue();
+        assertThat(input.content()).startsWith("Please review").endsWith(" […]");
+        assertThat(input.tokens()).isLessThanOrEqualTo(205);
+    }
+
+    @Test
+    @DisplayName("sizeOutput — output shrinks with the prompt, within floor and mode maximum")
+    void sizeOutput_followsRemainingBudget() {
+        ReflectionTestUtils.setField(policy, "requestTokens", 3000);
+
+        assertThat(policy.sizeOutput(GenerationConfig.MULTI, "short prompt")).isSameAs(GenerationConfig.MULTI);
+
+        GenerationConfig sized = policy.sizeOutput(GenerationConfig.MULTI, "word ".repeat(1500));
+        assertThat(sized.maxOutputTokens()).isEqualTo(1408);
+        assertThat(sized.temperature()).isEqualTo(GenerationConfig.MULTI.temperature());
+
+        assertThat(policy.sizeOutput(GenerationConfig.MULTI, "word ".repeat(5000)).maxOutputTokens()).isEqualTo(1024);
+        assertThat(policy.sizeOutput(GenerationConfig.SINGLE, "word ".repeat(5000)).maxOutputTokens()).isEqualTo(1024);
+    }
+}
@@ -0,0 +1,56 @@
+package com.email.writer.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verbatim copy of the regex-based parser EmailGeneratorService used before
+ * ReplySectionParser — the reference for equivalence tests and benchmarks.
+ * Do not "fix" it; it is supposed to behave exactly like the old code.
+ */
+final class LegacyReplyParser {
+
+    private LegacyReplyParser() {}
+
+    static Map<String, Object> parse(String content) {
+        String summary = "";
+        List<String> replies = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String mode = "none";
+
+        for (String line : content.split("\n")) {
+            line = line.trim();
+            if (line.toLowerCase().startsWith("summary:")) {
+                if (current.length() > 0 && mode.startsWith("reply")) {
+                    replies.add(current.toString().trim()); current.setLength(0);
+                }
+                summary = line.replaceFirst("(?i)summary:\\s*", "").trim();
+                mode = "summary";
+            } else if (line.toLowerCase().matches("reply\\s*[123]:.*")) {
+                if (current.length() > 0 && mode.startsWith("reply")) {
+                    replies.add(current.toString().trim()); current.setLength(0);
+                }
+                mode = "reply";
+                String text = line.replaceFirst("(?i)reply\\s*[123]:\\s*", "").trim();
+                if (!text.isEmpty()) current.append(text);
+            } else if (!line.isEmpty()) {
+                if (mode.equals("summary")) {
+                    if (!summary.isEmpty()) summary += " ";
+                    summary += line;
+                } else if (mode.startsWith("reply")) {
+                    if (current.length() > 0) current.append(" ");
+                    current.append(line);
+                }
+            }
+        }
+
+        if (current.length() > 0 && mode.startsWith("reply")) replies.add(current.toString().trim());
+        while (replies.size() < 3) replies.add("Thank you for your message. I will review and respond shortly.");
+        if (replies.size() > 3)  replies = replies.subList(0, 3);
+        if (summary.isEmpty())   summary = "Generated professional email responses based on the provided content.";
+        summary = summary.trim();
+
+        return Map.of("replies", replies, "summary", summary);
+    }
+}
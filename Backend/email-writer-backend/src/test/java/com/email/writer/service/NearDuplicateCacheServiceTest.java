@@ -0,0 +1,144 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.service.NearDuplicateCacheService.Fingerprint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("NearDuplicateCacheService unit tests")
+class NearDuplicateCacheServiceTest {
+
+    private static final String TEMPLATE = """
+            Hello %s,
+
+            Thank you for shopping with us. Your order %s has been packed and handed over to the carrier \
+            today. You can expect delivery within three to five business days. If you are not at home, the \
+            carrier will leave a note with instructions for collecting the parcel from the nearest pickup \
+            point. Please reply to this email if you need to change the delivery address before dispatch.
+
+            Kind regards,
+            Customer Service""";
+
+    private static final Map<String, Object> ANSWER = Map.of(
+            "summary", "The store confirms the order was shipped and explains the delivery window.",
+            "replies", List.of("Thanks for the update, I will keep an eye out for the parcel.",
+                    "Thank you. Could you send the tracking link as well?",
+                    "Great, thanks. The address on file is correct."));
+
+    private SimpleMeterRegistry registry;
+    private NearDuplicateCacheService index;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        index = new NearDuplicateCacheService();
+        index.bindTo(registry);
+    }
+
+    private Fingerprint fingerprint(String content, String tone) {
+        EmailRequest request = new EmailRequest();
+        request.setSubject("Your order has shipped");
+        request.setEmailContent(content);
+        request.setTone(tone);
+        return index.fingerprint("multi", "v1", request, "en");
+    }
+
+    private double requests(String result) {
+        return registry.get("gemini.similar_cache.requests").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("get — a templated email with another name and order id is served from the index")
+    void get_servesNearDuplicate() {
+        index.put(fingerprint(TEMPLATE.formatted("Priya", "48213"), "professional"), ANSWER);
+
+        Map<String, Object> hit = index.get(fingerprint(TEMPLATE.formatted("Sam", "51977"), "Professional"));
+
+        assertThat(hit).isSameAs(ANSWER);
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(registry.get("gemini.similar_cache.lookup").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get — refused when the cached answer mentions a detail that changed")
+    void get_refusesAnswerWithOldDetails() {
+        Map<String, Object> personal = Map.of("summary", "Order 48213 for Priya has shipped.",
+                "replies", List.of("Thanks!"));
+        index.put(fingerprint(TEMPLATE.formatted("Priya", "48213"), "professional"), personal);
+
+        assertThat((Object) index.get(fingerprint(TEMPLATE.formatted("Sam", "51977"), "professional"))).isNull();
+        assertThat(requests("unsafe")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("get — refused when the new email adds or drops a negation or inserts words")
+    void get_refusesChangedMeaning() {
+        index.put(fingerprint(TEMPLATE.formatted("Priya", "48213"), "professional"), ANSWER);
+
+        // "not" is already in the template, so the word sets are identical
+        assertThat((Object) index.get(fingerprint(TEMPLATE.formatted("Priya", "48213")
+                .replace("carrier will leave", "carrier will not leave"), "professional"))).isNull();
+        assertThat((Object) index.get(fingerprint(TEMPLATE.formatted("Priya", "48213")
+                .replace("You can expect", "You cannot expect"), "professional"))).isNull();
+        assertThat((Object) index.get(fingerprint(TEMPLATE.formatted("Priya", "48213")
+                .replace("packed and handed", "packed, damaged and handed"), "professional"))).isNull();
+        assertThat(requests("unsafe")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("get — refused when the same words are in another order (swapped roles)")
+    void get_refusesSwappedRoles() {
+        String refund = TEMPLATE.formatted("Priya", "48213")
+                + " Please refund Alice, not Bob. Alice owes Bob 500 dollars for the second parcel.";
+        index.put(fingerprint(refund, "professional"), ANSWER);
+
+        // Identical word sets and negation counts — only the order differs
+        assertThat((Object) index.get(fingerprint(refund.replace("refund Alice, not Bob", "refund Bob, not Alice"),
+                "professional"))).isNull();
+        assertThat((Object) index.get(fingerprint(refund.replace("Alice owes Bob", "Bob owes Alice"),
+                "professional"))).isNull();
+        assertThat(requests("unsafe")).isEqualTo(2);
+
+        // A substituted name elsewhere keeps the shared words in order and is still served
+        assertThat((Object) index.get(fingerprint(refund.replace("Hello Priya", "Hello Sam"), "professional")))
+                .isSameAs(ANSWER);
+    }
+
+    @Test
+    @DisplayName("get — different tone, unrelated content and short emails do not match")
+    void get_missesOutsidePartitionOrThreshold() {
+        index.put(fingerprint(TEMPLATE.formatted("Priya", "48213"), "professional"), ANSWER);
+
+        assertThat((Object) index.get(fingerprint(TEMPLATE.formatted("Sam", "51977"), "friendly"))).isNull();
+        assertThat((Object) index.get(fingerprint("""
+                Hi team, the quarterly planning offsite moves to the lake house this year. Bring walking \
+                shoes, a laptop and the draft roadmap for your area; we will spend the first morning on \
+                hiring plans and the afternoon on the platform migration and the budget for next year.""",
+                "professional"))).isNull();
+        assertThat(fingerprint("Order 48213 shipped.", "professional")).isNull();
+        assertThat(requests("miss")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("put — least recently used entries are evicted past max-entries")
+    void put_evictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(index, "maxEntries", 2);
+        Fingerprint first = fingerprint(TEMPLATE.formatted("Priya", "1"), "professional");
+        index.put(first, ANSWER);
+        index.put(fingerprint(TEMPLATE.formatted("Sam", "2") + " Extra words change nothing.", "formal"), ANSWER);
+        index.put(fingerprint(TEMPLATE.formatted("Alex", "3"), "friendly"), ANSWER);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat((Object) index.get(first)).isNull();
+        assertThat(registry.get("gemini.similar_cache.evictions").tag("cause", "size").functionCounter().count())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.email.writer.service;
+
+import com.email.writer.dto.EmailRequest;
+import com.email.writer.service.PromptLibrary.PromptSet;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("PromptLibrary unit tests")
+class PromptLibraryTest {
+
+    private static EmailRequest request(String subject, String content, String tone) {
+        EmailRequest request = new EmailRequest();
+        request.setSubject(subject);
+        request.setEmailContent(content);
+        request.setTone(tone);
+        return request;
+    }
+
+    private static Map<String, String> values(EmailRequest request, String language) {
+        Map<String, String> values = new HashMap<>();
+        values.put("language", language);
+        values.put("tone",     request.getTone());
+        values.put("subject",  request.getSubject());
+        values.put("content",  request.getEmailContent());
+        return values;
+    }
+
+    @Test
+    @DisplayName("v1 — renders exactly the prompts the hard-coded builders produced")
+    void v1_matchesLegacyBuilders() {
+        PromptSet v1 = new PromptLibrary("v1", "", 0).select("any");
+
+        for (EmailRequest request : new EmailRequest[] {
+                request("Q3 review", "Can we move it to Friday?\nThanks", "friendly"),
+                request("Hello", "Body", null),
+                request("Hello", "Body", "  ")}) {
+            assertThat(v1.multi().render(values(request, "English")))
+                    .isEqualTo(legacyMultiPrompt(request, "English", null));
+            assertThat(v1.single().render(values(request, "Hindi")))
+                    .isEqualTo(legacySinglePrompt(request, "Hindi"));
+        }
+
+        EmailRequest request = request("Q3", "Body", "formal");
+        Map<String, String> regenerate = values(request, "English");
+        regenerate.put("regenerate", "true");
+        regenerate.put("timestamp", "2026-01-01T00:00:00Z");
+        assertThat(v1.multi().render(regenerate))
+                .isEqualTo(legacyMultiPrompt(request, "English", "2026-01-01T00:00:00Z"));
+    }
+
+    @Test
+    @DisplayName("v2 — loads and is shorter than v1")
+    void v2_isShorter() {
+        PromptSet v1 = new PromptLibrary("v1", "", 0).select(null);
+        PromptSet v2 = new PromptLibrary("v2", "", 0).select(null);
+        Map<String, String> values = values(request("Q3", "Body", "formal"), "English");
+
+        assertThat(v2.version()).isEqualTo("v2");
+        assertThat(v2.multi().render(values).length()).isLessThan(v1.multi().render(values).length());
+        assertThat(v2.single().render(values)).contains("Body").contains("formal");
+    }
+
+    @Test
+    @DisplayName("select — candidate share is sticky per key and roughly the configured percent")
+    void select_abSplit() {
+        PromptLibrary library = new PromptLibrary("v1", "v2", 30);
+
+        int candidate = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String key = "email body " + i;
+            String version = library.select(key).version();
+            assertThat(library.select(key).version()).isEqualTo(version);
+            if (version.equals("v2")) candidate++;
+        }
+        assertThat(candidate).isBetween(2_500, 3_500);
+        assertThat(library.select(null).version()).isEqualTo("v1");
+    }
+
+    @Test
+    @DisplayName("constructor — an unknown version fails at startup")
+    void unknownVersion_fails() {
+        assertThatThrownBy(() -> new PromptLibrary("v404", "", 0))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("prompts/multi-v404.txt");
+    }
+
+    /* Copies of the builders EmailGeneratorService used before templates (null subject → "" instead of "null"). */
+
+    private static String legacyMultiPrompt(EmailRequest request, String language, String timestamp) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("You are an expert email assistant. You must generate exactly 3 different professional email replies and 1 summary.\n");
+        prompt.append("IMPORTANT: Generate the reply in ").append(language).append(" language.\n\n");
+        if (request.getTone() != null && !request.getTone().isBlank()) {
+            prompt.append("Use a ").append(request.getTone()).append(" tone for all replies.\n\n");
+        }
+        if (timestamp != null) {
+            prompt.append("IMPORTANT: Generate completely new variations different from previous ones. Timestamp: ")
+                    .append(timestamp).append("\n\n");
+        }
+        prompt.append("Original Email Subject: ").append(request.getSubject()).append("\n");
+        prompt.append("Original Email Content:\n").append(request.getEmailContent()).append("\n\n");
+        prompt.append("You MUST follow this EXACT format:\n\n");
+        prompt.append("SUMMARY: [Brief 1-2 sentence summary]\n\n");
+        prompt.append("REPLY 1: [First variation - 3-5 sentences]\n\n");
+        prompt.append("REPLY 2: [Second variation - 3-5 sentences]\n\n");
+        prompt.append("REPLY 3: [Third variation - 3-5 sentences]\n\n");
+        prompt.append("CRITICAL RULES:\n");
+        prompt.append("- Start each section with exact labels: SUMMARY:, REPLY 1:, REPLY 2:, REPLY 3:\n");
+        prompt.append("- Make each reply distinctly different in approach or style\n");
+        prompt.append("- Do not include email signatures or greetings — just body content\n");
+        return prompt.toString();
+    }
+
+    private static String legacySinglePrompt(EmailRequest request, String language) {
+        return String.format(
+                "You are a professional email assistant. Provide a short Summary and a single Reply body in %s.\n"
+                        + "Summary: (1-2 sentences)\nReply: (3-5 sentences, body only)\n\n"
+                        + "EMAIL:\nSubject: %s\nContent: %s\nTone: %s\n",
+                language,
+                request.getSubject()      == null ? "" : request.getSubject(),
+                request.getEmailContent() == null ? "" : request.getEmailContent(),
+                request.getTone() == null || request.getTone().isBlank() ? "professional" : request.getTone()
+        );
+    }
+}
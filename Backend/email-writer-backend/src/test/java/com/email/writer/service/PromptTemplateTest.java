@@ -0,0 +1,54 @@
+package com.email.writer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("PromptTemplate unit tests")
+class PromptTemplateTest {
+
+    @Test
+    @DisplayName("render — fills slots and treats null values as empty")
+    void render_slots() {
+        PromptTemplate template = PromptTemplate.compile("t", "v1", "Hello {{ name }}, re: {{subject}}!");
+
+        Map<String, String> values = new HashMap<>();
+        values.put("name", "Ana");
+        values.put("subject", null);
+
+        assertThat(template.render(values)).isEqualTo("Hello Ana, re: !");
+        assertThat(template.slots()).containsExactly("name", "subject");
+    }
+
+    @Test
+    @DisplayName("render — sections render on non-blank values, inverted sections on blank ones")
+    void render_sections() {
+        PromptTemplate template = PromptTemplate.compile("t", "v1",
+                "A{{#tone}} tone={{tone}}{{#extra}}+{{extra}}{{/extra}}{{/tone}}{{^tone}} default{{/tone}}.");
+
+        assertThat(template.render(Map.of("tone", "warm", "extra", "x"))).isEqualTo("A tone=warm+x.");
+        assertThat(template.render(Map.of("tone", "warm"))).isEqualTo("A tone=warm.");
+        assertThat(template.render(Map.of("tone", "  "))).isEqualTo("A default.");
+        assertThat(template.render(Map.of())).isEqualTo("A default.");
+    }
+
+    @Test
+    @DisplayName("compile — malformed templates are rejected with the template name")
+    void compile_rejectsMalformed() {
+        assertThatThrownBy(() -> PromptTemplate.compile("multi", "v9", "a {{slot"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("multi-v9");
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "v1", "{{#a}}never closed"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "v1", "{{#a}}x{{/b}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "v1", "stray {{/a}}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PromptTemplate.compile("t", "v1", "empty {{ }}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
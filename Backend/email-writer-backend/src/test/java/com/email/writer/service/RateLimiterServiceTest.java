@@ -1,5 +1,6 @@
 package com.email.writer.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -70,4 +71,33 @@ class RateLimiterServiceTest {
         }
         assertThat(rateLimiter.remainingMinute(user)).isEqualTo(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("reserve — grants only the remaining quota and records what it grants")
+    void reserve_grantsRemainingQuota() {
+        String user = "batchuser";
+        rateLimiter.recordRequest(user);
+        rateLimiter.recordRequest(user);
+
+        assertThat(rateLimiter.reserve(user, 10)).isEqualTo(6);
+        assertThat(rateLimiter.remainingMinute(user)).isEqualTo(0);
+        assertThat(rateLimiter.reserve(user, 1)).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("bindTo — refused requests are counted under the window that was full")
+    void rejectionsCounted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        rateLimiter.bindTo(registry);
+        String user = "counted";
+        for (int i = 0; i < 8; i++) rateLimiter.recordRequest(user);
+
+        assertThat(rateLimiter.canMakeRequest(user)).isFalse();
+        assertThat(rateLimiter.reserve(user, 3)).isZero();
+
+        assertThat(registry.get("ratelimit.rejected").tag("window", "minute").functionCounter().count())
+                .isEqualTo(4.0);
+        assertThat(registry.get("ratelimit.rejected").tag("window", "day").functionCounter().count())
+                .isZero();
+    }
+}
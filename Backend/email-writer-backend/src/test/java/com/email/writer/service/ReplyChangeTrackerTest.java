@@ -0,0 +1,51 @@
+package com.email.writer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ReplyChangeTracker unit tests")
+class ReplyChangeTrackerTest {
+
+    private final ReplyChangeTracker tracker = new ReplyChangeTracker();
+
+    @Test
+    @DisplayName("etag — stable until the user's replies change, independent of other users")
+    void etag_changesWithVersion() {
+        String before = tracker.etag(1L, null);
+        assertThat(tracker.etag(1L, null)).isEqualTo(before).startsWith("\"").endsWith("\"");
+
+        tracker.changed(2L);
+        assertThat(tracker.etag(1L, null)).isEqualTo(before);
+
+        tracker.changed(1L);
+        assertThat(tracker.version(1L)).isEqualTo(1);
+        assertThat(tracker.etag(1L, null)).isNotEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("etag — the variant distinguishes representations of the same version")
+    void etag_includesVariant() {
+        assertThat(tracker.etag(1L, "page=0&size=20")).isNotEqualTo(tracker.etag(1L, "page=1&size=20"))
+                .isNotEqualTo(tracker.etag(1L, null));
+        assertThat(tracker.etag(1L, "page=0&size=20")).isEqualTo(tracker.etag(1L, "page=0&size=20"));
+    }
+
+    @Test
+    @DisplayName("changed — inside a transaction the version moves only after commit")
+    void changed_waitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tracker.changed(1L);
+            assertThat(tracker.version(1L)).isZero();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertThat(tracker.version(1L)).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
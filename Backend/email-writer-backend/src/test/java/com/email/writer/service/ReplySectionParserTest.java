@@ -0,0 +1,180 @@
+package com.email.writer.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ReplySectionParser unit tests")
+class ReplySectionParserTest {
+
+    private List<String> events;
+    private ReplySectionParser parser;
+
+    @BeforeEach
+    void setUp() {
+        events = new ArrayList<>();
+        parser = new ReplySectionParser(new ReplySectionParser.Listener() {
+            @Override
+            public void onSummary(String summary) {
+                events.add("summary:" + summary);
+            }
+
+            @Override
+            public void onReply(int index, String text) {
+                events.add("reply" + index + ":" + text);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("accept — a reply is reported as soon as the next label arrives")
+    void accept_replyReportedWhenNextLabelStarts() {
+        parser.accept("SUMMARY: Asks for a meeting\nREPLY 1: Sure, ");
+        assertThat(events).isEmpty();
+
+        parser.accept("Tuesday works.\nREP");
+        assertThat(events).containsExactly("summary:Asks for a meeting");
+
+        parser.accept("LY 2: Sorry, I can't.\n");
+        assertThat(events).containsExactly("summary:Asks for a meeting", "reply1:Sure, Tuesday works.");
+    }
+
+    @Test
+    @DisplayName("accept — labels split across arbitrary chunk boundaries are recognised")
+    void accept_labelSplitAcrossChunks() {
+        String text = "summary: S\nReply1: one\nreply 2:\ntwo\nthree lines\nREPLY 3: three";
+        for (char c : text.toCharArray()) parser.accept(String.valueOf(c));
+
+        Map<String, Object> result = parser.finish();
+
+        assertThat(result.get("summary")).isEqualTo("S");
+        assertThat(result.get("replies")).isEqualTo(List.of("one", "two three lines", "three"));
+        assertThat(events).containsExactly("summary:S", "reply1:one", "reply2:two three lines", "reply3:three");
+    }
+
+    @Test
+    @DisplayName("finish — pads to three replies and supplies a default summary, reporting both")
+    void finish_padsMissingSections() {
+        parser.accept("REPLY 1: Only one");
+
+        Map<String, Object> result = parser.finish();
+
+        assertThat(result.get("replies")).isEqualTo(List.of("Only one",
+                ReplySectionParser.FALLBACK_REPLY, ReplySectionParser.FALLBACK_REPLY));
+        assertThat(result.get("summary")).isEqualTo(ReplySectionParser.FALLBACK_SUMMARY);
+        assertThat(events).containsExactly("reply1:Only one",
+                "reply2:" + ReplySectionParser.FALLBACK_REPLY,
+                "reply3:" + ReplySectionParser.FALLBACK_REPLY,
+                "summary:" + ReplySectionParser.FALLBACK_SUMMARY);
+    }
+
+    @Test
+    @DisplayName("finish — keeps only the first three replies and the last summary")
+    void finish_capsRepliesAndKeepsLastSummary() {
+        parser.accept("SUMMARY: first\nREPLY 1: a\nREPLY 2: b\nREPLY 3: c\nREPLY 3: d\nSUMMARY: second\n");
+
+        Map<String, Object> result = parser.finish();
+
+        assertThat(result.get("replies")).isEqualTo(List.of("a", "b", "c"));
+        assertThat(result.get("summary")).isEqualTo("second");
+        assertThat(events).containsExactly("summary:first", "reply1:a", "reply2:b", "reply3:c", "summary:second");
+    }
+
+    @Test
+    @DisplayName("accept — text before the first label and empty reply labels are ignored")
+    void accept_ignoresPreambleAndEmptyReplies() {
+        parser.accept("Here you go:\r\n\r\nREPLY 1:\r\nREPLY 2: real\r\nREPLY 4: not a label\r\n");
+
+        Map<String, Object> result = parser.finish();
+
+        assertThat(result.get("replies")).isEqualTo(List.of("real REPLY 4: not a label",
+                ReplySectionParser.FALLBACK_REPLY, ReplySectionParser.FALLBACK_REPLY));
+    }
+
+    @Test
+    @DisplayName("paddedReplies — counts the replies filled in with the fallback text")
+    void paddedReplies_countsFallbacks() {
+        ReplySectionParser complete = new ReplySectionParser(null);
+        complete.parseComplete("SUMMARY: S\nREPLY 1: a\nREPLY 2: b\nREPLY 3: c");
+        ReplySectionParser partial = new ReplySectionParser(null);
+        partial.parseComplete("SUMMARY: S\nREPLY 1: only one");
+
+        assertThat(complete.paddedReplies()).isZero();
+        assertThat(partial.paddedReplies()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("finish — repeated calls return the same result without reporting again")
+    void finish_isIdempotent() {
+        parser.accept("SUMMARY: s\nREPLY 1: a\nREPLY 2: b\nREPLY 3: c");
+
+        Map<String, Object> first = parser.finish();
+        int reported = events.size();
+
+        assertThat(parser.finish()).isEqualTo(first);
+        assertThat(events).hasSize(reported);
+    }
+
+    @Test
+    @DisplayName("parse — matches the legacy regex parser on hand-picked edge cases")
+    void parse_matchesLegacyParser_edgeCases() {
+        List<String> inputs = List.of(
+                "",
+                "   \n\n  ",
+                "no labels at all\njust text",
+                "SUMMARY: s\nREPLY 1: a\nREPLY 2: b\nREPLY 3: c",
+                "Summary:   spaced   \n  more summary \nreply1:x\nReply\t2:   y\nRePlY  3:z",
+                "REPLY 1:\nREPLY 2:\nREPLY 3:",
+                "REPLY 1: a\nREPLY 2: b\nREPLY 3: c\nREPLY 1: d\nREPLY 2: e",
+                "SUMMARY: first\nSUMMARY: second\nSUMMARY:",
+                "REPLY 4: nope\nREPLY 0: nope\nREPLY 12: nope\nREPLY: nope",
+                "REPLY 1: has\u2028separator\nREPLY 2: has\u0085nel\nREPLY 3: has\rcr inside",
+                "\u017Fummary: long s\nREPLY\u00A01: nbsp\nREPLY\u000B2: vt\n\u0130 dotted",
+                "summary:no space\r\nreply 1:crlf\r\n\r\ncontinued\r\n",
+                "REPLY 1: Dear Sam, SUMMARY: inline\nsummaryish line\nreply 2 : spaced colon");
+
+        for (String input : inputs) {
+            assertThat(ReplySectionParser.parse(input))
+                    .as("input %s", input)
+                    .isEqualTo(LegacyReplyParser.parse(input));
+        }
+    }
+
+    @Test
+    @DisplayName("parse/accept — match the legacy regex parser on randomised model output")
+    void parseAndAccept_matchLegacyParser_randomised() {
+        String[] tokens = {
+                "SUMMARY:", "summary:", "Summary: ", "REPLY 1:", "reply2:", "Reply  3: ", "REPLY 4:",
+                "REPLY\t1:", "reply 1", "word", "Dear Alex,", " ", "\t", "\n", "\n", "\r\n", "\n\n",
+                "\u2028", "\u00A0", "\u017F", ":", "1", "Thanks!"};
+        Random random = new Random(42);
+
+        for (int run = 0; run < 2_000; run++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(40);
+            for (int i = 0; i < n; i++) sb.append(tokens[random.nextInt(tokens.length)]);
+            String input = sb.toString();
+            Map<String, Object> expected = LegacyReplyParser.parse(input);
+
+            assertThat(ReplySectionParser.parse(input)).as("parse %s", input).isEqualTo(expected);
+
+            ReplySectionParser streaming = new ReplySectionParser(new ReplySectionParser.Listener() {
+                @Override public void onSummary(String summary) {}
+                @Override public void onReply(int index, String text) {}
+            });
+            for (int i = 0; i < input.length(); ) {
+                int end = Math.min(input.length(), i + 1 + random.nextInt(8));
+                streaming.accept(input.substring(i, end));
+                i = end;
+            }
+            assertThat(streaming.finish()).as("accept %s", input).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.email.writer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RetryBudget unit tests")
+class RetryBudgetTest {
+
+    private long now = 1_000_000L;
+
+    @Test
+    @DisplayName("tryWithdraw — allows the reserve plus the configured share of requests")
+    void tryWithdraw_reservePlusPercentOfRequests() {
+        RetryBudget budget = new RetryBudget(20, 0, 10, () -> now);
+        for (int i = 0; i < 10; i++) budget.recordRequest();
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    @DisplayName("tryWithdraw — requests and withdrawals older than the window stop counting")
+    void tryWithdraw_windowSlides() {
+        RetryBudget budget = new RetryBudget(0, 1, 2, () -> now);
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        now += 2_000;
+        assertThat(budget.available()).isEqualTo(2.0);
+        assertThat(budget.tryWithdraw()).isTrue();
+    }
+}
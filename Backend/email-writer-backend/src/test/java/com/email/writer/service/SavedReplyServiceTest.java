@@ -28,6 +28,7 @@ import static org.mockito.Mockito.*;
 class SavedReplyServiceTest {
 
     @Mock private SavedReplyRepository repo;
+    @Mock private ReplyChangeTracker   changes;
 
     @InjectMocks
     private SavedReplyService service;
@@ -79,6 +80,7 @@ class SavedReplyServiceTest {
 
         assertThat(saved.getId()).isNotNull();
         verify(repo).save(argThat(sr -> "hi".equals(sr.getLanguage())));
+        verify(changes).changed(1L);
     }
 
     // ── getUserStatistics ─────────────────────────────────────────────────
@@ -137,6 +139,7 @@ class SavedReplyServiceTest {
 
         assertThat(result.getIsFavorite()).isTrue();
         verify(repo).save(testReply);
+        verify(changes).changed(1L);
     }
 
     @Test
@@ -174,5 +177,6 @@ class SavedReplyServiceTest {
                 .hasMessageContaining("Access denied");
 
         verify(repo, never()).save(any());
+        verifyNoInteractions(changes);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.email.writer.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TokenEstimator unit tests")
+class TokenEstimatorTest {
+
+    @Test
+    @DisplayName("estimate — English prose lands near four characters per token")
+    void estimate_englishProse() {
+        String text = "Hi Priya, thanks for the update. Could we move the budget review to Friday at 2pm? "
+                + "I have a conflict on Thursday and would like the whole team to be there.";
+
+        int tokens = TokenEstimator.estimate(text);
+
+        assertThat(tokens).isBetween(text.length() / 5, text.length() / 3);
+    }
+
+    @Test
+    @DisplayName("estimate — CJK costs a token per character, whitespace is free")
+    void estimate_cjkAndWhitespace() {
+        assertThat(TokenEstimator.estimate("会議を金曜日に移動できますか")).isEqualTo(14);
+        assertThat(TokenEstimator.estimate("   \n\t  ")).isZero();
+        assertThat(TokenEstimator.estimate(null)).isZero();
+    }
+
+    @Test
+    @DisplayName("prefixLength — longest prefix within the budget, cut inside an oversized run")
+    void prefixLength_respectsBudget() {
+        String text = "word ".repeat(100);
+
+        int cut = TokenEstimator.prefixLength(text, 10);
+
+        assertThat(TokenEstimator.estimate(text.substring(0, cut))).isEqualTo(10);
+        assertThat(TokenEstimator.prefixLength(text, 1_000)).isEqualTo(text.length());
+        assertThat(TokenEstimator.prefixLength("x".repeat(400), 10)).isEqualTo(40);
+    }
+}
@@ -0,0 +1,160 @@
+package com.email.writer.service;
+
+import com.email.writer.entity.TokenUsage;
+import com.email.writer.exception.TokenQuotaExceededException;
+import com.email.writer.repository.TokenUsageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TokenUsageService unit tests")
+class TokenUsageServiceTest {
+
+    @Mock
+    private TokenUsageRepository repo;
+
+    private TokenUsageService usage;
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        usage = new TokenUsageService(repo);
+        ReflectionTestUtils.setField(usage, "tokensPerMinute", 1_000L);
+        ReflectionTestUtils.setField(usage, "tokensPerDay", 5_000L);
+    }
+
+    private static GeminiResponse response(int prompt, int output) {
+        return new GeminiResponse("text", "STOP", prompt, output, prompt + output);
+    }
+
+    @Test
+    @DisplayName("record — aggregates in memory, one database write per user-day on flush")
+    void record_aggregatesUntilFlush() {
+        usage.record("alice", response(300, 100));
+        usage.record("alice", response(200, 50));
+        verify(repo, never()).addUsage(any(), any(), anyLong(), anyLong(), anyLong(), any());
+
+        when(repo.addUsage(eq("alice"), eq(today), anyLong(), anyLong(), anyLong(), any())).thenReturn(1);
+        usage.flush();
+        usage.flush();
+
+        verify(repo, times(1)).addUsage(eq("alice"), eq(today), eq(500L), eq(150L), eq(2L), any());
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("flush — inserts the row when the user has none for the day")
+    void flush_insertsFirstRow() {
+        usage.record("alice", response(300, 100));
+        when(repo.addUsage(any(), any(), anyLong(), anyLong(), anyLong(), any())).thenReturn(0);
+
+        usage.flush();
+
+        ArgumentCaptor<TokenUsage> saved = ArgumentCaptor.forClass(TokenUsage.class);
+        verify(repo).save(saved.capture());
+        assertThat(saved.getValue().getUsername()).isEqualTo("alice");
+        assertThat(saved.getValue().getTotalTokens()).isEqualTo(400);
+        assertThat(saved.getValue().getRequests()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("flush — a failed write is kept and retried on the next flush")
+    void flush_failureKeepsDelta() {
+        usage.record("alice", response(300, 100));
+        when(repo.addUsage(any(), any(), anyLong(), anyLong(), anyLong(), any()))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(1);
+
+        usage.flush();
+        usage.flush();
+
+        verify(repo, times(2)).addUsage(eq("alice"), eq(today), eq(300L), eq(100L), eq(1L), any());
+    }
+
+    @Test
+    @DisplayName("checkQuota — minute window refuses once used up, other users unaffected")
+    void checkQuota_minuteWindow() {
+        usage.checkQuota("alice");
+        usage.record("alice", response(800, 250));
+
+        assertThatThrownBy(() -> usage.checkQuota("alice"))
+                .isInstanceOf(TokenQuotaExceededException.class)
+                .satisfies(ex -> {
+                    TokenQuotaExceededException quota = (TokenQuotaExceededException) ex;
+                    assertThat(quota.getWindow()).isEqualTo("minute");
+                    assertThat(quota.getRetryAfterSeconds()).isBetween(1L, 60L);
+                });
+        usage.checkQuota("bob");
+    }
+
+    @Test
+    @DisplayName("checkQuota — day window starts from the persisted total")
+    void checkQuota_dayWindowIncludesPersistedUsage() {
+        TokenUsage row = new TokenUsage("alice", today, 4_000, 900, 30);
+        when(repo.findByUsernameAndUsageDate("alice", today)).thenReturn(Optional.of(row));
+
+        usage.checkQuota("alice");
+        usage.record("alice", response(80, 20));
+
+        assertThatThrownBy(() -> usage.checkQuota("alice"))
+                .isInstanceOf(TokenQuotaExceededException.class)
+                .extracting("window").isEqualTo("day");
+    }
+
+    @Test
+    @DisplayName("checkQuota — the persisted total is read without holding the user's window")
+    @SuppressWarnings("unchecked")
+    void checkQuota_readsPersistedTotalOutsideWindowLock() {
+        Map<String, Object> windows = (Map<String, Object>) ReflectionTestUtils.getField(usage, "windows");
+        boolean[] heldLock = {false};
+        when(repo.findByUsernameAndUsageDate("alice", today)).thenAnswer(inv -> {
+            windows.values().forEach(window -> heldLock[0] |= Thread.holdsLock(window));
+            return Optional.of(new TokenUsage("alice", today, 4_000, 900, 30));
+        });
+
+        usage.checkQuota("alice");
+        usage.record("alice", response(80, 20));
+
+        assertThat(heldLock[0]).isFalse();
+        verify(repo, times(1)).findByUsernameAndUsageDate("alice", today);
+        assertThatThrownBy(() -> usage.checkQuota("alice"))
+                .isInstanceOf(TokenQuotaExceededException.class)
+                .extracting("window").isEqualTo("day");
+    }
+
+    @Test
+    @DisplayName("usage — merges persisted history with deltas not yet flushed")
+    @SuppressWarnings("unchecked")
+    void usage_mergesPending() {
+        when(repo.findByUsernameAndUsageDateGreaterThanEqualOrderByUsageDateDesc(eq("alice"), any()))
+                .thenReturn(List.of(new TokenUsage("alice", today, 1_000, 200, 3),
+                        new TokenUsage("alice", today.minusDays(1), 500, 100, 2)));
+        usage.record("alice", response(300, 100));
+
+        Map<String, Object> body = usage.usage("alice", 7);
+
+        Map<String, Object> todayView = (Map<String, Object>) body.get("today");
+        assertThat(todayView.get("totalTokens")).isEqualTo(1_600L);
+        assertThat(todayView.get("requests")).isEqualTo(4L);
+        assertThat((List<Map<String, Object>>) body.get("history")).hasSize(2)
+                .first().extracting(m -> m.get("date")).isEqualTo(today.toString());
+        assertThat(((Map<String, Object>) body.get("remaining")).get("tokensThisMinute")).isEqualTo(600L);
+    }
+}
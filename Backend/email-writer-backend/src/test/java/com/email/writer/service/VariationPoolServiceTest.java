@@ -0,0 +1,83 @@
+package com.email.writer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("VariationPoolService unit tests")
+class VariationPoolServiceTest {
+
+    private static final Map<String, Object> FIRST  = Map.of("summary", "s", "replies", List.of("a", "b", "c"));
+    private static final Map<String, Object> SECOND = Map.of("summary", "s", "replies", List.of("d", "e", "f"));
+
+    private SimpleMeterRegistry registry;
+    private VariationPoolService pool;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        pool = new VariationPoolService();
+        pool.bindTo(registry);
+    }
+
+    private double counter(String name, String tag, String value) {
+        return registry.get(name).tag(tag, value).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("take — serves each pooled variant once, then misses")
+    void take_servesEachVariantOnce() {
+        pool.offer("alice", "k1", List.of(FIRST, SECOND));
+
+        assertThat(pool.take("alice", "k1")).isSameAs(FIRST);
+        assertThat(pool.take("alice", "k1")).isSameAs(SECOND);
+        assertThat(pool.take("alice", "k1")).isNull();
+        assertThat(pool.size()).isZero();
+        assertThat(counter("gemini.variation_pool.requests", "result", "hit")).isEqualTo(2);
+        assertThat(counter("gemini.variation_pool.requests", "result", "miss")).isEqualTo(1);
+        assertThat(counter("gemini.variation_pool.variants", "outcome", "pooled")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("take — another email or another user misses")
+    void take_missesOtherKeyOrUser() {
+        pool.offer("alice", "k1", List.of(FIRST));
+
+        assertThat(pool.take("alice", "k2")).isNull();
+        assertThat(pool.take("bob", "k1")).isNull();
+        assertThat(pool.take(null, "k1")).isNull();
+        assertThat(pool.take("alice", "k1")).isSameAs(FIRST);
+    }
+
+    @Test
+    @DisplayName("offer — a new email replaces the user's pool and counts the unseen variants as discarded")
+    void offer_replacesPreviousEmail() {
+        pool.offer("alice", "k1", List.of(FIRST, SECOND));
+        pool.offer("alice", "k2", List.of(SECOND));
+
+        assertThat(pool.take("alice", "k1")).isNull();
+        assertThat(pool.take("alice", "k2")).isSameAs(SECOND);
+        assertThat(counter("gemini.variation_pool.variants", "outcome", "discarded")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("take — expired pools and a disabled pool serve nothing")
+    void take_expiredOrDisabled() {
+        ReflectionTestUtils.setField(pool, "ttlSeconds", 0L);
+        pool.offer("alice", "k1", List.of(FIRST));
+        assertThat(pool.take("alice", "k1")).isNull();
+        assertThat(counter("gemini.variation_pool.variants", "outcome", "discarded")).isEqualTo(1);
+
+        ReflectionTestUtils.setField(pool, "enabled", false);
+        assertThat(pool.extraCandidates()).isZero();
+        pool.offer("alice", "k1", List.of(FIRST));
+        assertThat(pool.size()).isZero();
+    }
+}